@@ -4,12 +4,15 @@ import static org.cytoscape.work.ServiceProperties.ID;
 import static org.cytoscape.work.ServiceProperties.INSERT_SEPARATOR_AFTER;
 import static org.cytoscape.work.ServiceProperties.INSERT_SEPARATOR_BEFORE;
 import static org.cytoscape.work.ServiceProperties.MENU_GRAVITY;
+import static org.cytoscape.work.ServiceProperties.PREFERRED_MENU;
 import static org.cytoscape.work.ServiceProperties.TITLE;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Properties;
 
 
+import org.cytoscape.application.CyApplicationConfiguration;
 import org.cytoscape.application.NetworkViewRenderer;
 import org.cytoscape.application.swing.CySwingApplication;
 import org.cytoscape.service.util.AbstractCyActivator;
@@ -31,12 +34,20 @@ import org.osgi.framework.BundleContext;
 
 import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRVisualLexicon;
 import com.boofisher.app.cySimpleRenderer.internal.eventbus.EventBusProvider;
+import com.boofisher.app.cySimpleRenderer.internal.export.ExportImageTaskFactory;
+import com.boofisher.app.cySimpleRenderer.internal.export.ExportTilePyramidTaskFactory;
 import com.boofisher.app.cySimpleRenderer.internal.graphics.GraphicsConfigurationFactory;
 import com.boofisher.app.cySimpleRenderer.internal.layouts.FlattenLayoutAlgorithm;
+import com.boofisher.app.cySimpleRenderer.internal.layouts.ForceDirectedLayoutAlgorithm;
 import com.boofisher.app.cySimpleRenderer.internal.task.TaskFactoryListener;
 import com.boofisher.app.cySimpleRenderer.internal.layouts.BoxLayoutAlgorithm;
 import com.boofisher.app.cySimpleRenderer.internal.layouts.CenterLayoutAlgorithm;
 import com.boofisher.app.cySimpleRenderer.internal.layouts.GridLayoutAlgorithm;
+import com.boofisher.app.cySimpleRenderer.internal.layouts.IncrementalLayoutAlgorithm;
+import com.boofisher.app.cySimpleRenderer.internal.layouts.LayoutCache;
+import com.boofisher.app.cySimpleRenderer.internal.layouts.MultilevelLayoutAlgorithm;
+import com.boofisher.app.cySimpleRenderer.internal.layouts.PivotMdsLayoutAlgorithm;
+import com.boofisher.app.cySimpleRenderer.internal.layouts.PositionHistory;
 import com.boofisher.app.cySimpleRenderer.internal.layouts.SphericalLayoutAlgorithm;
 
 /*Main entry point into cytoscape
@@ -69,6 +80,9 @@ public class CyActivator extends AbstractCyActivator {
 		/*A simple interface that posts edits to the Cytoscape undo stack.*/
 		UndoSupport undoSupport = getService(context, UndoSupport.class);
 		
+		/*Provides the directories Cytoscape and its apps keep their files in.*/
+		CyApplicationConfiguration applicationConfiguration = getService(context, CyApplicationConfiguration.class);
+		
 		/*A task factory specifically for layout algorithms.*/
 		CyLayoutAlgorithmManager layoutAlgorithmManager =  getService(context, CyLayoutAlgorithmManager.class);
 		TunableSetter tunableSetter = getService(context, TunableSetter.class);
@@ -143,17 +157,41 @@ public class CyActivator extends AbstractCyActivator {
 		renderingEngineProps.setProperty(ID, CySRNetworkViewRenderer.ID);
 		registerAllServices(context, cySRMainRenderingEngineFactory, renderingEngineProps);
 		
-		/*// Layout algorithms, A task factory specifically for layout algorithms.
-		CyLayoutAlgorithm frAlgorithm = layoutAlgorithmManager.getLayout("fruchterman-rheingold");	
+		// Memory kept per network view to undo layouts, can be set with -D in Cytoscape.vmoptions
+		PositionHistory.setMemoryBudget(getMegabytes(PositionHistory.MEMORY_BUDGET_PROPERTY, PositionHistory.DEFAULT_MEMORY_BUDGET));
+		
+		// Results of recent layouts, spilled to the app's configuration directory once they take too much memory
+		LayoutCache.setMemoryBudget(getMegabytes(LayoutCache.MEMORY_BUDGET_PROPERTY, LayoutCache.DEFAULT_MEMORY_BUDGET));
+		LayoutCache.setSpillBudget(getMegabytes(LayoutCache.SPILL_BUDGET_PROPERTY, LayoutCache.DEFAULT_SPILL_BUDGET));
+		if(!"false".equalsIgnoreCase(System.getProperty(LayoutCache.SPILL_PROPERTY))) {
+			File configurationDirectory = applicationConfiguration.getAppConfigurationDirectoryLocation(CyActivator.class);
+			LayoutCache.setSpillDirectory(new File(configurationDirectory, "layout-cache"));
+		}
 		
+		// Layout algorithms, A task factory specifically for layout algorithms.
 		registerLayoutAlgorithms(context,
-				frAlgorithm,
+				new ForceDirectedLayoutAlgorithm(undoSupport),
+				new MultilevelLayoutAlgorithm(undoSupport),
+				new PivotMdsLayoutAlgorithm(undoSupport),
+				new IncrementalLayoutAlgorithm(undoSupport),
 				new SphericalLayoutAlgorithm(undoSupport),
 				new GridLayoutAlgorithm(undoSupport),
 				new BoxLayoutAlgorithm(undoSupport),
 				new FlattenLayoutAlgorithm(undoSupport),
 				new CenterLayoutAlgorithm(undoSupport)
-		);*/
+		);
+		
+		// Tile pyramid export, only offered for CySR network views
+		Properties exportTilePyramidProps = new Properties();
+		exportTilePyramidProps.setProperty(PREFERRED_MENU, "Apps.CySR");
+		exportTilePyramidProps.setProperty(TITLE, "Export Tile Pyramid...");
+		registerService(context, new ExportTilePyramidTaskFactory(), NetworkViewTaskFactory.class, exportTilePyramidProps);
+		
+		// Large image export, streamed to disk so it is not limited by the heap
+		Properties exportImageProps = new Properties();
+		exportImageProps.setProperty(PREFERRED_MENU, "Apps.CySR");
+		exportImageProps.setProperty(TITLE, "Export Large Network Image (PNG)...");
+		registerService(context, new ExportImageTaskFactory(), NetworkViewTaskFactory.class, exportImageProps);
 		
 		// About dialog
 		AboutDialogAction aboutDialogAction = new AboutDialogAction(application, openBrowser);
@@ -163,6 +201,19 @@ public class CyActivator extends AbstractCyActivator {
 	}
 
 	
+	// A system property in megabytes, as bytes, or the default if it is not set or not a number
+	private static long getMegabytes(String name, long defaultBytes) {
+		String value = System.getProperty(name);
+		if(value == null) {
+			return defaultBytes;
+		}
+		try {
+			return Long.parseLong(value.trim()) * 1024 * 1024;
+		} catch(NumberFormatException e) {
+			return defaultBytes;
+		}
+	}
+	
 	private void registerLayoutAlgorithms(BundleContext context, CyLayoutAlgorithm... algorithms) {
 		for(int i = 0; i < algorithms.length; i++) {
 			Properties props = new Properties();
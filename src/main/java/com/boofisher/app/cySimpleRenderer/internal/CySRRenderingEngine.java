@@ -2,10 +2,13 @@ package com.boofisher.app.cySimpleRenderer.internal;
 
 import java.awt.BorderLayout;
 import java.awt.Container;
-import java.awt.Dimension;
+import java.awt.Graphics2D;
 import java.awt.Image;
-import java.awt.image.BufferedImage;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 import java.awt.print.Printable;
+import java.io.IOException;
 import java.util.Properties;
 
 import javax.swing.Icon;
@@ -13,9 +16,14 @@ import javax.swing.JComponent;
 import javax.swing.RootPaneContainer;
 
 import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNetworkView;
+import com.boofisher.app.cySimpleRenderer.internal.data.GraphicsData;
 import com.boofisher.app.cySimpleRenderer.internal.eventbus.EventBusProvider;
+import com.boofisher.app.cySimpleRenderer.internal.export.ExportImageTask;
+import com.boofisher.app.cySimpleRenderer.internal.export.NetworkPrintable;
+import com.boofisher.app.cySimpleRenderer.internal.export.TiledImageExporter;
 import com.boofisher.app.cySimpleRenderer.internal.graphics.GraphicsConfiguration;
 import com.boofisher.app.cySimpleRenderer.internal.graphics.RenderingPanel;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.ScenePainter;
 import com.boofisher.app.cySimpleRenderer.internal.task.TaskFactoryListener;
 
 import org.apache.log4j.Logger;
@@ -108,22 +116,35 @@ public class CySRRenderingEngine implements RenderingEngine<CyNetwork> {
 		return null;
 	}
 	
+	/**
+	 * Prints the whole network as it is now, scaled to fit one page.
+	 */
 	@Override
 	public Printable createPrintable() {
-		return null;
+		return new NetworkPrintable(networkView.getSceneSnapshot());
 	}
 
+	/**
+	 * Renders what the panel currently shows into an image of the given size. The image
+	 * is rendered off screen in tiles, the on-screen panel is left alone. The caller gets
+	 * the whole image, so very large sizes should go through the streaming
+	 * {@link ExportImageTask} instead.
+	 */
 	@Override
 	public Image createImage(int width, int height) {
-		Image image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);		
+		TiledImageExporter exporter = new TiledImageExporter(networkView.getSceneSnapshot());
 
-		Dimension panelSize = panel.getSize();
-		
-		panel.setSize(width, height);
-		panel.paint(image.getGraphics());
-		panel.setSize(panelSize);
-		
-		return image;
+		// A panel that was never shown has no view yet, then the whole network is drawn
+		Rectangle2D visible = panel.getGraphicsData().getCamera().getVisibleBounds();
+		AffineTransform worldToImage = visible.isEmpty()
+				? exporter.getWorldToImage(width, height)
+				: ScenePainter.fitTransform(visible, width, height, 0);
+		try {
+			return exporter.render(width, height, worldToImage);
+		} catch (IOException e) {
+			logger.error("Could not create image of the network view", e);
+			return null;
+		}
 	}
 
 	@Override
@@ -131,8 +152,24 @@ public class CySRRenderingEngine implements RenderingEngine<CyNetwork> {
 		return null;
 	}
 
+	/**
+	 * Draws what the panel currently shows onto the given graphics, as shapes
+	 * rather than as a copy of the screen.
+	 */
 	@Override
 	public void printCanvas(java.awt.Graphics printCanvas) {
+		GraphicsData graphicsData = panel.getGraphicsData();
+		Rectangle bounds = new Rectangle(0, 0, panel.getWidth(), panel.getHeight());
+		if(bounds.isEmpty()) {
+			return;
+		}
+		
+		Graphics2D g = (Graphics2D) printCanvas.create();
+		try {
+			new ScenePainter().paint(g, networkView.getSceneSnapshot(), graphicsData.getCamera().getTransform(), bounds);
+		} finally {
+			g.dispose();
+		}
 	}
 	
 	@Override
@@ -142,6 +179,7 @@ public class CySRRenderingEngine implements RenderingEngine<CyNetwork> {
 	
 	@Override
 	public void dispose() {
+		panel.dispose();
 	}
 }
 
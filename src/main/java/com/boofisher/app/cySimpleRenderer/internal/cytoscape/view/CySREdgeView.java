@@ -7,8 +7,8 @@ public class CySREdgeView extends CySRView<CyEdge> {
 	private final CyEdge edge;
 	private String name;
 	
-	public CySREdgeView(DefaultValueVault defaultValueVault, CyEdge edge) {
-		super(defaultValueVault);
+	public CySREdgeView(DefaultValueVault defaultValueVault, ViewChangeTracker changeTracker, CyEdge edge) {
+		super(defaultValueVault, changeTracker);
 		this.edge = edge;
 	}
 	
@@ -17,6 +17,11 @@ public class CySREdgeView extends CySRView<CyEdge> {
 		return edge;
 	}
 	
+	@Override
+	protected void notifyChanged() {
+		changeTracker.elementChanged(edge.getSUID());
+	}
+	
 	public void setName(String name){
 		this.name = name;
 	}
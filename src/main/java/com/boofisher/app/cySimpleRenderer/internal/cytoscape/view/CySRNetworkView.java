@@ -1,13 +1,14 @@
 package com.boofisher.app.cySimpleRenderer.internal.cytoscape.view;
 
 import java.awt.Component;
+import java.awt.Paint;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.boofisher.app.cySimpleRenderer.internal.CySRNetworkViewRenderer;
 import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySREdgeView;
@@ -16,6 +17,8 @@ import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRView;
 import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.DefaultValueVault;
 import com.boofisher.app.cySimpleRenderer.internal.eventbus.EventBusProvider;
 import com.boofisher.app.cySimpleRenderer.internal.eventbus.FitInViewEvent;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.ImagePool;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SceneSnapshot;
 import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyIdentifiable;
 import org.cytoscape.model.CyNetwork;
@@ -32,6 +35,11 @@ import com.google.common.eventbus.EventBus;
 
 public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkView {
 
+	private static final VisualProperty<?>[] SIZE_PROPERTIES = {
+		BasicVisualLexicon.NODE_WIDTH, BasicVisualLexicon.NODE_HEIGHT };
+	private static final VisualProperty<?>[] COLOR_PROPERTIES = {
+		BasicVisualLexicon.NODE_FILL_COLOR };
+
 	private final CyNetwork network;
 	
 	private final VisualLexicon visualLexicon;
@@ -42,15 +50,26 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 	 * The camera associated with the main network viewing window used to
 	 * perform operations such as fitting all nodes onto the screen
 	 */
-	private List<Component> canvases = new ArrayList<>(2);
+	private List<Component> canvases = new CopyOnWriteArrayList<>();
+	
+	// Assumes indices of nodes are unique. Safe for concurrent use, since layout and style
+	// tasks look up views from several threads while updateView() may add or remove some
+	private SuidIndex<View<CyNode>> nodeViews;
+	private SuidIndex<View<CyEdge>> edgeViews;
+	
+	// Nodes whose views were added after the view was created, dropped once their location is set
+	private final Set<Long> unplacedNodes = ConcurrentHashMap.newKeySet();
 	
-	// Assumes indices of nodes are unique
-	private Map<Long, View<CyNode>> nodeViews;
-	private Map<Long, View<CyEdge>> edgeViews;
+	// Shared by every renderer of this view, rebuilt when the view model has changed
+	private SceneSnapshot sceneSnapshot;
+	private long sceneSnapshotVersion = -1;
+	
+	// Back buffers and cached layers, shared by the main and birds-eye renderers
+	private final ImagePool imagePool = new ImagePool();
 	
 	
 	public CySRNetworkView(CyNetwork network, VisualLexicon visualLexicon, VisualMappingManager visualMappingManager, EventBusProvider eventBusProvider) {
-		super(new DefaultValueVault(visualLexicon));
+		super(new DefaultValueVault(visualLexicon), new ViewChangeTracker());
 		
 		this.network = network;
 		this.visualLexicon = visualLexicon;
@@ -58,17 +77,17 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 		
 		this.eventBus = eventBusProvider.getEventBus(this);
 		
-		nodeViews = new HashMap<>();
-		edgeViews = new HashMap<>();
+		nodeViews = new SuidIndex<>(network.getNodeCount());
+		edgeViews = new SuidIndex<>(network.getEdgeCount());
 		
 		for (CyNode node : network.getNodeList()) {
-			CySRNodeView nodeView = new CySRNodeView(defaultValues, node);
-			nodeViews.put(node.getSUID(), nodeView);
+			CySRNodeView nodeView = new CySRNodeView(defaultValues, changeTracker, node);
+			nodeViews.putIfAbsent(node.getSUID(), nodeView);
 		}
 		
 		for (CyEdge edge : network.getEdgeList()) {
-			CySREdgeView edgeView = new CySREdgeView(defaultValues, edge);
-			edgeViews.put(edge.getSUID(), edgeView);
+			CySREdgeView edgeView = new CySREdgeView(defaultValues, changeTracker, edge);
+			edgeViews.putIfAbsent(edge.getSUID(), edgeView);
 		}
 	}
 	
@@ -82,6 +101,13 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 		return nodeViews.get(node.getSUID());
 	}
 
+	/**
+	 * The view of the node with the given SUID, without looking up the node first.
+	 */
+	public View<CyNode> getNodeView(long suid) {
+		return nodeViews.get(suid);
+	}
+
 	@Override
 	public Collection<View<CyNode>> getNodeViews() {
 		return nodeViews.values();
@@ -92,6 +118,13 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 		return edgeViews.get(edge.getSUID());
 	}
 
+	/**
+	 * The view of the edge with the given SUID, without looking up the edge first.
+	 */
+	public View<CyEdge> getEdgeView(long suid) {
+		return edgeViews.get(suid);
+	}
+
 	@Override
 	public Collection<View<CyEdge>> getEdgeViews() {
 		return edgeViews.values();
@@ -106,6 +139,83 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 		return views;
 	}
 
+	/**
+	 * Move many nodes at once. The locations are written straight into the primitive
+	 * fields of the node views, and all of them are reported as a single bulk move that
+	 * the scene snapshot applies without reading any other values again. SUIDs without
+	 * a node view are skipped.
+	 * 
+	 * @param suids Kept by the change tracker, must not be changed afterwards
+	 * @param xyz The x, y and z location of each node, three values per SUID
+	 */
+	public void setNodePositions(long[] suids, double[] xyz) {
+		for (int i = 0; i < suids.length; i++) {
+			View<CyNode> nodeView = nodeViews.get(suids[i]);
+			if (nodeView instanceof CySRNodeView) {
+				((CySRNodeView) nodeView).setLocation(xyz[i * 3], xyz[i * 3 + 1], xyz[i * 3 + 2]);
+			}
+		}
+		changeTracker.nodesMoved(suids);
+	}
+	
+	/**
+	 * The SUIDs of the nodes added to the network since this view was created whose
+	 * location has not been set since, in bulk or one property at a time, in other words
+	 * the nodes that neither a layout nor the user has placed yet.
+	 */
+	public long[] getUnplacedNodes() {
+		List<Long> nodes = new ArrayList<Long>();
+		for (Long suid : unplacedNodes) {
+			View<CyNode> nodeView = nodeViews.get(suid);
+			if (nodeView instanceof CySRNodeView && ((CySRNodeView) nodeView).isLocated()) {
+				unplacedNodes.remove(suid);
+			} else {
+				nodes.add(suid);
+			}
+		}
+		long[] suids = new long[nodes.size()];
+		for (int i = 0; i < suids.length; i++) {
+			suids[i] = nodes.get(i);
+		}
+		return suids;
+	}
+
+	/**
+	 * Resize many nodes at once, see {@link #setNodePositions(long[], double[])}.
+	 * 
+	 * @param sizes The width and height of each node, two values per SUID
+	 */
+	public void setNodeSizes(long[] suids, double[] sizes) {
+		Object[] values = new Object[2];
+		for (int i = 0; i < suids.length; i++) {
+			values[0] = sizes[i * 2];
+			values[1] = sizes[i * 2 + 1];
+			putNodeValues(suids[i], SIZE_PROPERTIES, values);
+		}
+		changeTracker.elementsChanged(suids);
+	}
+
+	/**
+	 * Set the fill color of many nodes at once, see {@link #setNodePositions(long[], double[])}.
+	 * 
+	 * @param colors The fill color of each node, one per SUID
+	 */
+	public void setNodeColors(long[] suids, Paint[] colors) {
+		Object[] values = new Object[1];
+		for (int i = 0; i < suids.length; i++) {
+			values[0] = colors[i];
+			putNodeValues(suids[i], COLOR_PROPERTIES, values);
+		}
+		changeTracker.elementsChanged(suids);
+	}
+
+	private void putNodeValues(long suid, VisualProperty<?>[] visualProperties, Object[] values) {
+		View<CyNode> nodeView = nodeViews.get(suid);
+		if (nodeView != null) {
+			((CySRView<CyNode>) nodeView).putVisualProperties(visualProperties, values);
+		}
+	}
+
 	/**
 	 * Center the network
 	 */
@@ -163,9 +273,13 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 				// Found a node without a view?
 				if (nodeViews.get(node.getSUID()) == null) {
 					
-					CySRNodeView nodeView = new CySRNodeView(defaultValues, node);
+					CySRNodeView nodeView = new CySRNodeView(defaultValues, changeTracker, node);
 					
-					nodeViews.put(node.getSUID(), nodeView);
+					// another thread may be matching too
+					if (nodeViews.putIfAbsent(node.getSUID(), nodeView) == null) {
+						unplacedNodes.add(node.getSUID());
+						changeTracker.topologyChanged();
+					}
 					
 					nodeCountDifference--;
 				}
@@ -194,7 +308,9 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 			
 			for (Long index : toBeRemovedIndices) {
 				nodeViews.remove(index);
+				unplacedNodes.remove(index);
 			}
+			changeTracker.topologyChanged();
 		}
 	}
 	
@@ -208,9 +324,11 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 				// Found a edge without a view?
 				if (edgeViews.get(edge.getSUID()) == null) {
 					
-					CySREdgeView edgeView = new CySREdgeView(defaultValues, edge);
+					CySREdgeView edgeView = new CySREdgeView(defaultValues, changeTracker, edge);
 					
-					edgeViews.put(edge.getSUID(), edgeView);
+					if (edgeViews.putIfAbsent(edge.getSUID(), edgeView) == null) {
+						changeTracker.topologyChanged();
+					}
 					
 					edgeCountDifference--;
 				}
@@ -240,6 +358,7 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 			for (Long index : toBeRemovedIndices) {
 				edgeViews.remove(index);
 			}
+			changeTracker.topologyChanged();
 		}
 	}
 
@@ -273,6 +392,7 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 	@Override
 	public <T, V extends T> void setViewDefault(VisualProperty<? extends T> visualProperty, V defaultValue) {
 		defaultValues.modifyDefaultValue(visualProperty, defaultValue);
+		changeTracker.viewChanged();
 	}
 
 	
@@ -290,6 +410,40 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 	}
 
 
+	public ViewChangeTracker getChangeTracker() {
+		return changeTracker;
+	}
+	
+	/**
+	 * A snapshot of the current view model. The same snapshot is returned until
+	 * the view model changes, so the main view, the birds-eye view and exporters
+	 * all share one copy. If only a few nodes and edges changed since the last
+	 * snapshot, or nodes were moved in bulk, the new one is derived from it instead of
+	 * built from scratch.
+	 *
+	 * Writers may keep changing the view while a snapshot is taken. The version is
+	 * read before any view, and a writer only moves the version on after its value is
+	 * in place, so a value that was missed is always logged as changed since then and
+	 * read by the next snapshot.
+	 */
+	public synchronized SceneSnapshot getSceneSnapshot() {
+		long version = changeTracker.getVersion();
+		if(sceneSnapshot == null) {
+			sceneSnapshot = SceneSnapshot.create(this);
+		} else if(sceneSnapshotVersion != version) {
+			ViewChangeTracker.Changes changes = changeTracker.getChangesSince(sceneSnapshotVersion, version);
+			sceneSnapshot = (changes != null)
+					? sceneSnapshot.update(this, changes.getElements(), changes.getMovedNodes())
+					: SceneSnapshot.create(this);
+		}
+		sceneSnapshotVersion = version;
+		return sceneSnapshot;
+	}
+
+	public ImagePool getImagePool() {
+		return imagePool;
+	}
+
 	public void addContainer(Component container) {
 		canvases.add(container);
 	}
@@ -312,6 +466,7 @@ public class CySRNetworkView extends CySRView<CyNetwork> implements CyNetworkVie
 
 	@Override
 	public void dispose() {
+		imagePool.clear();
 	}
 
 	@Override
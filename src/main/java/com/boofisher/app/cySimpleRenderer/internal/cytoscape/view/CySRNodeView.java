@@ -5,12 +5,22 @@ import org.cytoscape.model.CyNode;
 import org.cytoscape.view.model.VisualProperty;
 import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 
+/**
+ * The view of one node. Its location is kept as one immutable triple apart from the
+ * other visual properties, so bulk moves such as layout animation frames write it
+ * without boxing, and readers always see x, y and z of the same write. The location is
+ * taken from the other values the first time any part of it is set, until then it
+ * follows the defaults.
+ */
 public class CySRNodeView extends CySRView<CyNode> {
 
 	private final CyNode node;
 	
-	public CySRNodeView(DefaultValueVault defaultValueVault, CyNode node) {
-		super(defaultValueVault);
+	// Null until the location is first set, written only while holding this view's lock
+	private volatile Location location = null;
+	
+	public CySRNodeView(DefaultValueVault defaultValueVault, ViewChangeTracker changeTracker, CyNode node) {
+		super(defaultValueVault, changeTracker);
 		this.node = node;
 	}
 	
@@ -18,9 +28,99 @@ public class CySRNodeView extends CySRView<CyNode> {
 	public CyNode getModel() {
 		return node;
 	}
+	
+	@Override
+	protected void notifyChanged() {
+		changeTracker.elementChanged(node.getSUID());
+	}
+	
+	public double getX() {
+		Location current = location;
+		return current != null ? current.x : super.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+	}
+	
+	public double getY() {
+		Location current = location;
+		return current != null ? current.y : super.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+	}
+	
+	public double getZ() {
+		Location current = location;
+		return current != null ? current.z : super.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION);
+	}
+	
+	/**
+	 * x, y and z of the same write, unlike separate calls to {@link #getX()} and {@link #getY()}.
+	 */
+	public Location getLocation() {
+		Location current = location;
+		return current != null ? current : new Location(getX(), getY(), getZ());
+	}
+	
+	/**
+	 * Whether any part of the location was set, by a bulk move or a single property.
+	 */
+	boolean isLocated() {
+		return location != null;
+	}
+	
+	/**
+	 * Move the node without reporting the change, for bulk moves that report all their
+	 * nodes at once.
+	 */
+	synchronized void setLocation(double x, double y, double z) {
+		location = new Location(x, y, z);
+	}
+	
+	@Override
+	public <T, V extends T> void setVisualProperty(VisualProperty<? extends T> visualProperty, V value) {
+		if (setLocation(visualProperty, value)) {
+			notifyChanged();
+		} else {
+			super.setVisualProperty(visualProperty, value);
+		}
+	}
+	
+	@Override
+	public <T, V extends T> void setLockedValue(VisualProperty<? extends T> visualProperty, V value) {
+		setLocation(visualProperty, value);
+		super.setLockedValue(visualProperty, value);
+	}
+	
+	// Sets one part of the location if the property is one, the other parts keep their values
+	private synchronized boolean setLocation(VisualProperty<?> visualProperty, Object value) {
+		if (!(value instanceof Number) || (visualProperty != BasicVisualLexicon.NODE_X_LOCATION
+				&& visualProperty != BasicVisualLexicon.NODE_Y_LOCATION && visualProperty != BasicVisualLexicon.NODE_Z_LOCATION)) {
+			return false;
+		}
+		
+		double newX = getX(), newY = getY(), newZ = getZ();
+		double v = ((Number) value).doubleValue();
+		if (visualProperty == BasicVisualLexicon.NODE_X_LOCATION) {
+			newX = v;
+		} else if (visualProperty == BasicVisualLexicon.NODE_Y_LOCATION) {
+			newY = v;
+		} else {
+			newZ = v;
+		}
+		setLocation(newX, newY, newZ);
+		return true;
+	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public <T> T getVisualProperty(VisualProperty<T> visualProperty) {
+		Location current = location;
+		if (current != null) {
+			if (visualProperty == BasicVisualLexicon.NODE_X_LOCATION) {
+				return (T) Double.valueOf(current.x);
+			} else if (visualProperty == BasicVisualLexicon.NODE_Y_LOCATION) {
+				return (T) Double.valueOf(current.y);
+			} else if (visualProperty == BasicVisualLexicon.NODE_Z_LOCATION) {
+				return (T) Double.valueOf(current.z);
+			}
+		}
+		
 		T value = super.getVisualProperty(visualProperty);
 		
 		/*
@@ -36,4 +136,25 @@ public class CySRNodeView extends CySRView<CyNode> {
 		return value;
 	}
 	
-}
\ No newline at end of file
+	public static final class Location {
+		private final double x, y, z;
+		
+		Location(double x, double y, double z) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+		
+		public double getX() {
+			return x;
+		}
+		
+		public double getY() {
+			return y;
+		}
+		
+		public double getZ() {
+			return z;
+		}
+	}
+}
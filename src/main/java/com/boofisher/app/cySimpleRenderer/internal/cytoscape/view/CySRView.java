@@ -1,7 +1,7 @@
 package com.boofisher.app.cySimpleRenderer.internal.cytoscape.view;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.cytoscape.model.SUIDFactory;
 import org.cytoscape.view.model.View;
@@ -15,17 +15,22 @@ import org.cytoscape.view.model.VisualProperty;
  * for nodes, edges, and networks.
  *
  * Think of it as a row in the view-model table.
+ *
+ * Safe to read and write from any thread. Each value is seen either before or after it
+ * was written, a bulk write of several values is not atomic.
  */
 public abstract class CySRView<S> implements View<S> {
 	
 	private final Map<String, VisualPropertyValue<?>> valueHolders;
 	private final Long suid;
 	protected final DefaultValueVault defaultValues;
+	protected final ViewChangeTracker changeTracker;
 		
-	public CySRView(DefaultValueVault defaultValues) {
+	public CySRView(DefaultValueVault defaultValues, ViewChangeTracker changeTracker) {
 		this.suid = SUIDFactory.getNextSUID();
-		this.valueHolders = new HashMap<String, VisualPropertyValue<?>>();
+		this.valueHolders = new ConcurrentHashMap<String, VisualPropertyValue<?>>(16, 0.75f, 1);
 		this.defaultValues = defaultValues;
+		this.changeTracker = changeTracker;
 	}
 	
 	@Override
@@ -53,26 +58,50 @@ public abstract class CySRView<S> implements View<S> {
 		VisualPropertyValue<V> valueHolder = new VisualPropertyValue<V>(value);
 		
 		valueHolders.put(visualProperty.getIdString(), valueHolder);
+		notifyChanged();
 	}
 	
 	public <V> void setVisualProperty(String propertyID, V value) {
 		VisualPropertyValue<V> valueHolder = new VisualPropertyValue<V>(value);
 		
 		valueHolders.put(propertyID, valueHolder);
+		notifyChanged();
+	}
+	
+	/**
+	 * Set several visual properties without reporting the change, for bulk updates that
+	 * report all their views at once.
+	 * 
+	 * @param values The value of each of the given visual properties, in the same order
+	 */
+	void putVisualProperties(VisualProperty<?>[] visualProperties, Object[] values) {
+		for(int i = 0; i < visualProperties.length; i++) {
+			valueHolders.put(visualProperties[i].getIdString(), new VisualPropertyValue<Object>(values[i]));
+		}
+	}
+	
+	/**
+	 * Called after a visual property of this view was set. Views of single
+	 * elements report just themselves, anything else the whole view.
+	 */
+	protected void notifyChanged() {
+		changeTracker.viewChanged();
 	}
 
 	@Override
 	public <T, V extends T> void setLockedValue(VisualProperty<? extends T> visualProperty,
 			V value) {
-		setVisualProperty(visualProperty, value);
+		VisualPropertyValue<V> valueHolder = new VisualPropertyValue<V>(value);
+		valueHolder.setValueLocked(true);
 		
-		valueHolders.get(visualProperty.getIdString()).setValueLocked(true);
+		valueHolders.put(visualProperty.getIdString(), valueHolder);
+		notifyChanged();
 	}
 
 	@Override
 	public boolean isValueLocked(VisualProperty<?> visualProperty) {
-		if (valueHolders.get(visualProperty.getIdString()) != null
-				&& valueHolders.get(visualProperty.getIdString()).isValueLocked()) {
+		VisualPropertyValue<?> valueHolder = valueHolders.get(visualProperty.getIdString());
+		if (valueHolder != null && valueHolder.isValueLocked()) {
 			
 			return true;
 		} else {
@@ -84,9 +113,10 @@ public abstract class CySRView<S> implements View<S> {
 	@Override
 	public void clearValueLock(VisualProperty<?> visualProperty) {
 		// TODO: Doesn't throw an exception if visualProperty not found
-		if (valueHolders.get(visualProperty.getIdString()) != null) {
+		VisualPropertyValue<?> valueHolder = valueHolders.get(visualProperty.getIdString());
+		if (valueHolder != null) {
 			
-			valueHolders.get(visualProperty.getIdString()).setValueLocked(false);
+			valueHolder.setValueLocked(false);
 		}
 	}
 	
@@ -2,6 +2,7 @@ package com.boofisher.app.cySimpleRenderer.internal.cytoscape.view;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.VisualPropertyValue;
 import org.cytoscape.model.CyEdge;
@@ -11,12 +12,17 @@ import org.cytoscape.model.CyNode;
 import org.cytoscape.view.model.VisualLexicon;
 import org.cytoscape.view.model.VisualProperty;
 
+/**
+ * Default visual property values for nodes, edges and the network. Safe to read and
+ * modify from several threads, the set of maps is fixed once constructed and each
+ * map is concurrent.
+ */
 public class DefaultValueVault {// Assumes VisualProperty ID names are unique
-	private Map<String, VisualPropertyValue<?>> nodeDefaultValues;
-	private Map<String, VisualPropertyValue<?>> edgeDefaultValues;
-	private Map<String, VisualPropertyValue<?>> networkDefaultValues;
+	private final Map<String, VisualPropertyValue<?>> nodeDefaultValues;
+	private final Map<String, VisualPropertyValue<?>> edgeDefaultValues;
+	private final Map<String, VisualPropertyValue<?>> networkDefaultValues;
 	
-	private Map<Class<? extends CyIdentifiable>,
+	private final Map<Class<? extends CyIdentifiable>,
 		Map<String, VisualPropertyValue<?>>> defaultValueSets;
 	
 	private VisualLexicon visualLexicon;
@@ -24,9 +30,9 @@ public class DefaultValueVault {// Assumes VisualProperty ID names are unique
 	public DefaultValueVault(VisualLexicon visualLexicon) {
 		this.visualLexicon = visualLexicon;
 		
-		nodeDefaultValues = new HashMap<String, VisualPropertyValue<?>>();
-		edgeDefaultValues = new HashMap<String, VisualPropertyValue<?>>();
-		networkDefaultValues = new HashMap<String, VisualPropertyValue<?>>();
+		nodeDefaultValues = new ConcurrentHashMap<String, VisualPropertyValue<?>>();
+		edgeDefaultValues = new ConcurrentHashMap<String, VisualPropertyValue<?>>();
+		networkDefaultValues = new ConcurrentHashMap<String, VisualPropertyValue<?>>();
 		
 		defaultValueSets = new HashMap<Class<? extends CyIdentifiable>, Map<String, VisualPropertyValue<?>>>();
 		defaultValueSets.put(CyNode.class, nodeDefaultValues);
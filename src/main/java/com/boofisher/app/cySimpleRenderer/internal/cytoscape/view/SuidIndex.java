@@ -0,0 +1,267 @@
+package com.boofisher.app.cySimpleRenderer.internal.cytoscape.view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Maps SUIDs to values without boxing, for the node and edge views of a network view.
+ *
+ * Values live in a dense array of slots. An open addressing hash table with linear
+ * probing maps each SUID to its slot, and removal shifts the following entries back
+ * instead of leaving markers, so lookups never slow down after many removals. The
+ * slots of removed values are handed out again before the array grows.
+ *
+ * Lookups start as optimistic reads of a {@link StampedLock} and only take the read
+ * lock if a write got in between, so the usual lookup neither locks nor allocates.
+ * Writes take the write lock.
+ *
+ * The list of all values is built on first use and kept until a value is added or
+ * removed, so listing an unchanged index again costs nothing.
+ */
+public class SuidIndex<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	// Keys and slot + 1 of each table entry, 0 marks an empty entry
+	private long[] keys;
+	private int[] entries;
+
+	// The values by slot, and the free slots below slotCount
+	private Object[] values;
+	private int slotCount;
+	private int[] freeSlots;
+	private int freeCount;
+
+	private int size;
+
+	// All values as of the last change, null until listed again
+	private volatile List<V> valueList;
+
+	private final StampedLock lock = new StampedLock();
+
+
+	public SuidIndex() {
+		this(MIN_CAPACITY);
+	}
+
+	public SuidIndex(int expectedSize) {
+		int tableSize = tableSizeFor(expectedSize);
+		keys = new long[tableSize];
+		entries = new int[tableSize];
+		values = new Object[Math.max(expectedSize, MIN_CAPACITY)];
+		freeSlots = new int[MIN_CAPACITY];
+	}
+
+
+	/**
+	 * The value for the given SUID, or null if there is none.
+	 */
+	public V get(long suid) {
+		long stamp = lock.tryOptimisticRead();
+		if(stamp != 0) {
+			Object value = find(keys, entries, values, suid);
+			if(lock.validate(stamp)) {
+				return cast(value);
+			}
+		}
+
+		stamp = lock.readLock();
+		try {
+			return cast(find(keys, entries, values, suid));
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Add the value for the given SUID unless there already is one.
+	 *
+	 * @return The value that was there before, or null if the given one was added
+	 */
+	public V putIfAbsent(long suid, V value) {
+		long stamp = lock.writeLock();
+		try {
+			int mask = keys.length - 1;
+			int i = hash(suid) & mask;
+			while(entries[i] != 0) {
+				if(keys[i] == suid) {
+					return cast(values[entries[i] - 1]);
+				}
+				i = (i + 1) & mask;
+			}
+
+			int slot = takeSlot();
+			values[slot] = value;
+			valueList = null;
+			keys[i] = suid;
+			entries[i] = slot + 1;
+
+			if(++size * 2 > keys.length) {
+				rehash(keys.length * 2);
+			}
+			return null;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Remove the value for the given SUID, its slot is reused by a later put.
+	 *
+	 * @return The removed value, or null if there was none
+	 */
+	public V remove(long suid) {
+		long stamp = lock.writeLock();
+		try {
+			int mask = keys.length - 1;
+			int i = hash(suid) & mask;
+			while(entries[i] != 0 && keys[i] != suid) {
+				i = (i + 1) & mask;
+			}
+			if(entries[i] == 0) {
+				return null;
+			}
+
+			int slot = entries[i] - 1;
+			V removed = cast(values[slot]);
+			values[slot] = null;
+			valueList = null;
+			releaseSlot(slot);
+			size--;
+
+			// shift back every following entry that would not be found past the gap
+			int gap = i;
+			for(int j = (gap + 1) & mask; entries[j] != 0; j = (j + 1) & mask) {
+				int home = hash(keys[j]) & mask;
+				if(((j - home) & mask) >= ((j - gap) & mask)) {
+					keys[gap] = keys[j];
+					entries[gap] = entries[j];
+					gap = j;
+				}
+			}
+			keys[gap] = 0;
+			entries[gap] = 0;
+			return removed;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			return size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * All values in slot order, as a read-only list that later changes do not affect.
+	 * The same list is returned until a value is added or removed.
+	 */
+	public List<V> values() {
+		List<V> result = valueList;
+		if(result != null) {
+			return result;
+		}
+
+		long stamp = lock.readLock();
+		try {
+			result = valueList;
+			if(result == null) {
+				List<V> list = new ArrayList<V>(size);
+				for(int slot = 0; slot < slotCount; slot++) {
+					if(values[slot] != null) {
+						list.add(SuidIndex.<V>cast(values[slot]));
+					}
+				}
+				valueList = result = Collections.unmodifiableList(list);
+			}
+			return result;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+
+	// May run without a lock, so it must survive arrays that are being changed
+	private static Object find(long[] keys, int[] entries, Object[] values, long suid) {
+		if(entries.length != keys.length) {
+			return null;
+		}
+		int mask = keys.length - 1;
+		int i = hash(suid) & mask;
+		for(int probes = 0; probes < keys.length; probes++) {
+			int entry = entries[i];
+			if(entry == 0) {
+				return null;
+			}
+			if(keys[i] == suid) {
+				return entry - 1 < values.length ? values[entry - 1] : null;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	private int takeSlot() {
+		if(freeCount > 0) {
+			return freeSlots[--freeCount];
+		}
+		if(slotCount == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		return slotCount++;
+	}
+
+	private void releaseSlot(int slot) {
+		if(freeCount == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+		}
+		freeSlots[freeCount++] = slot;
+	}
+
+	private void rehash(int tableSize) {
+		long[] oldKeys = keys;
+		int[] oldEntries = entries;
+		long[] newKeys = new long[tableSize];
+		int[] newEntries = new int[tableSize];
+		int mask = tableSize - 1;
+
+		for(int j = 0; j < oldKeys.length; j++) {
+			if(oldEntries[j] != 0) {
+				int i = hash(oldKeys[j]) & mask;
+				while(newEntries[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				newKeys[i] = oldKeys[j];
+				newEntries[i] = oldEntries[j];
+			}
+		}
+		keys = newKeys;
+		entries = newEntries;
+	}
+
+	// SUIDs are mostly consecutive, so spread them over the whole table
+	private static int hash(long suid) {
+		long h = suid * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static int tableSizeFor(int expectedSize) {
+		int size = MIN_CAPACITY;
+		while(size < expectedSize * 2) {
+			size <<= 1;
+		}
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> V cast(Object value) {
+		return (V) value;
+	}
+}
@@ -0,0 +1,203 @@
+package com.boofisher.app.cySimpleRenderer.internal.cytoscape.view;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counts changes to the view model of one network view. Every visual property
+ * write, default value change or added / removed view moves the version forward,
+ * so anything derived from the view model (such as a scene snapshot or a cached
+ * overview image) only needs to remember the version it was built from to know
+ * whether it is stale.
+ *
+ * Changes to a single node or edge view are also remembered by SUID for the last
+ * {@link #LOG_SIZE} versions, so something that is only slightly stale can ask
+ * which elements to update instead of rebuilding everything. A bulk move of any
+ * number of nodes is logged as one change that holds their SUIDs, so an animation
+ * frame that moves every node does not overflow the log.
+ *
+ * Camera changes are not part of the view model and do not change the version.
+ *
+ * Views being added or removed also move a separate topology version, for things
+ * derived from the structure of the network alone, such as its connected components.
+ *
+ * Any number of threads may report changes at the same time without locking. Every
+ * version owns one slot of the log, a reader that finds a slot already reused or not
+ * yet filled in simply gets no answer and rebuilds.
+ */
+public class ViewChangeTracker {
+
+	public static final int LOG_SIZE = 1024;
+
+	// Logged in place of a SUID for changes that are not limited to one element
+	private static final long VIEW_CHANGE = Long.MIN_VALUE;
+
+	// Logged in place of a SUID for a bulk move, the moved nodes are in the same slot of the move log
+	private static final long NODES_MOVED = Long.MIN_VALUE + 1;
+
+	private final AtomicLong version = new AtomicLong();
+	private final AtomicLong topologyVersion = new AtomicLong();
+
+	// The slot of version v is v % LOG_SIZE, it holds v once the SUID next to it is in place
+	private final AtomicLongArray loggedVersions = new AtomicLongArray(LOG_SIZE);
+	private final AtomicLongArray loggedSuids = new AtomicLongArray(LOG_SIZE);
+	private final AtomicReferenceArray<long[]> loggedMoves = new AtomicReferenceArray<long[]>(LOG_SIZE);
+
+
+	/**
+	 * Something changed that may affect any element, such as a default value
+	 * or views being added or removed.
+	 */
+	public void viewChanged() {
+		log(VIEW_CHANGE);
+	}
+
+	/**
+	 * Node or edge views were added or removed, which also changes the view.
+	 */
+	public void topologyChanged() {
+		topologyVersion.incrementAndGet();
+		viewChanged();
+	}
+
+	/**
+	 * A visual property of the node or edge with the given SUID changed.
+	 */
+	public void elementChanged(long suid) {
+		log(suid);
+	}
+
+	/**
+	 * Visual properties of the nodes or edges with the given SUIDs changed, all
+	 * reported with a single move of the version. A batch larger than the log
+	 * is reported as a change to the whole view.
+	 */
+	public void elementsChanged(long[] suids) {
+		if(suids.length == 0) {
+			return;
+		}
+		if(suids.length > LOG_SIZE) {
+			viewChanged();
+			return;
+		}
+
+		long first = version.addAndGet(suids.length) - suids.length + 1;
+		for(int i = 0; i < suids.length; i++) {
+			log(first + i, suids[i]);
+		}
+	}
+
+	/**
+	 * Only the locations of the nodes with the given SUIDs changed, all of them with one
+	 * bulk update. Reported with a single move of the version however many nodes moved.
+	 * The array is kept in the log and must not be changed afterwards.
+	 */
+	public void nodesMoved(long[] suids) {
+		if(suids.length == 0) {
+			return;
+		}
+		log(version.incrementAndGet(), NODES_MOVED, suids);
+	}
+
+	private void log(long suid) {
+		log(version.incrementAndGet(), suid);
+	}
+
+	private void log(long v, long suid) {
+		log(v, suid, null);
+	}
+
+	private void log(long v, long suid, long[] moved) {
+		int slot = (int) (v % LOG_SIZE);
+		// readers ignore the slot until the new version is back in it
+		loggedVersions.set(slot, 0);
+		loggedMoves.set(slot, moved);
+		loggedSuids.set(slot, suid);
+		loggedVersions.set(slot, v);
+	}
+
+	public long getVersion() {
+		return version.get();
+	}
+
+	public long getTopologyVersion() {
+		return topologyVersion.get();
+	}
+
+	/**
+	 * The SUIDs of the elements that changed after version <code>from</code>
+	 * up to and including version <code>to</code>.
+	 *
+	 * @return The changed SUIDs, or null if something other than single elements
+	 * changed in between, nodes were moved in bulk or there were too many changes
+	 * to remember
+	 */
+	public Set<Long> getChangedSince(long from, long to) {
+		Changes changes = getChangesSince(from, to);
+		return changes == null || !changes.getMovedNodes().isEmpty() ? null : changes.getElements();
+	}
+
+	/**
+	 * The elements that changed and the nodes that were moved in bulk after version
+	 * <code>from</code> up to and including version <code>to</code>.
+	 *
+	 * @return The changes, or null if something other than single elements or bulk
+	 * moves changed in between or there were too many changes to remember
+	 */
+	public Changes getChangesSince(long from, long to) {
+		if(to - from > LOG_SIZE) {
+			return null;
+		}
+
+		Set<Long> changed = new HashSet<Long>();
+		List<long[]> moved = new ArrayList<long[]>();
+		for(long v = from + 1; v <= to; v++) {
+			int slot = (int) (v % LOG_SIZE);
+			long before = loggedVersions.get(slot);
+			long suid = loggedSuids.get(slot);
+			long[] suids = loggedMoves.get(slot);
+
+			// a different version in the slot means it was reused or is still being written,
+			// also while the SUID was read
+			if(before != v || loggedVersions.get(slot) != v || suid == VIEW_CHANGE) {
+				return null;
+			}
+			if(suid == NODES_MOVED) {
+				moved.add(suids);
+			} else {
+				changed.add(suid);
+			}
+		}
+		return new Changes(changed, moved);
+	}
+
+
+	/**
+	 * What changed between two versions, see {@link #getChangesSince(long, long)}.
+	 */
+	public static class Changes {
+		private final Set<Long> elements;
+		private final List<long[]> movedNodes;
+
+		Changes(Set<Long> elements, List<long[]> movedNodes) {
+			this.elements = Collections.unmodifiableSet(elements);
+			this.movedNodes = Collections.unmodifiableList(movedNodes);
+		}
+
+		/** The SUIDs of the nodes and edges with any changed visual property. */
+		public Set<Long> getElements() {
+			return elements;
+		}
+
+		/** The SUIDs of the nodes moved by each bulk move, oldest first. The arrays must not be changed. */
+		public List<long[]> getMovedNodes() {
+			return movedNodes;
+		}
+	}
+}
@@ -3,7 +3,7 @@ package com.boofisher.app.cySimpleRenderer.internal.cytoscape.view;
 public class VisualPropertyValue<V> {
 	
 	private final V value;
-	private boolean isValueLocked;
+	private volatile boolean isValueLocked;
 	
 	public VisualPropertyValue(V value) {
 		this.value = value;
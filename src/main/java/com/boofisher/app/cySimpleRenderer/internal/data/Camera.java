@@ -0,0 +1,180 @@
+package com.boofisher.app.cySimpleRenderer.internal.data;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * The 2D camera of a renderer. Maps world (view model) coordinates to screen pixels as
+ * <code>screen = world * scale + translation</code>, so everything the renderer draws
+ * goes through the single {@link AffineTransform} returned by {@link #getTransform()}.
+ *
+ * The camera also knows the size of the viewport it looks through. A fit requested
+ * before the viewport has a size is remembered and applied once it gets one.
+ */
+public class Camera {
+
+	public static final double MIN_SCALE = 1e-4;
+	public static final double MAX_SCALE = 1e3;
+
+	/** Blank border left around the network by a fit, in pixels */
+	public static final int FIT_MARGIN = 10;
+
+	private double scale = 1.0;
+	private double translateX = 0.0;
+	private double translateY = 0.0;
+
+	private int viewportWidth = 0;
+	private int viewportHeight = 0;
+
+	private Rectangle2D pendingFit;
+	private int pendingFitMargin;
+
+	// Changes every time the mapping from world to screen changes
+	private long version = 0;
+
+
+	/** Screen pixels per world unit. */
+	public double getScale() {
+		return scale;
+	}
+
+	public double getTranslateX() {
+		return translateX;
+	}
+
+	public double getTranslateY() {
+		return translateY;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * A new transform from world to screen coordinates.
+	 */
+	public AffineTransform getTransform() {
+		return new AffineTransform(scale, 0, 0, scale, translateX, translateY);
+	}
+
+	public Point2D toWorld(double screenX, double screenY) {
+		return new Point2D.Double((screenX - translateX) / scale, (screenY - translateY) / scale);
+	}
+
+	public Point2D toScreen(double worldX, double worldY) {
+		return new Point2D.Double(worldX * scale + translateX, worldY * scale + translateY);
+	}
+
+	/**
+	 * Maps a screen rectangle to the world space rectangle it shows.
+	 */
+	public Rectangle2D toWorld(Rectangle2D screen) {
+		try {
+			return getTransform().createInverse().createTransformedShape(screen).getBounds2D();
+		} catch (NoninvertibleTransformException e) {
+			return new Rectangle2D.Double();
+		}
+	}
+
+	/**
+	 * The part of the world visible in the viewport.
+	 */
+	public Rectangle2D getVisibleBounds() {
+		Point2D topLeft = toWorld(0, 0);
+		return new Rectangle2D.Double(topLeft.getX(), topLeft.getY(), viewportWidth / scale, viewportHeight / scale);
+	}
+
+
+	/**
+	 * Tell the camera how large its viewport is. When the size changes the world point
+	 * in the middle of the viewport stays in the middle.
+	 */
+	public void setViewportSize(int width, int height) {
+		if(width == viewportWidth && height == viewportHeight) {
+			return;
+		}
+
+		if(viewportWidth > 0 && viewportHeight > 0) {
+			translateX += (width - viewportWidth) / 2.0;
+			translateY += (height - viewportHeight) / 2.0;
+			version++;
+		}
+		viewportWidth = width;
+		viewportHeight = height;
+
+		if(pendingFit != null && width > 0 && height > 0) {
+			Rectangle2D bounds = pendingFit;
+			pendingFit = null;
+			fit(bounds, pendingFitMargin);
+		}
+	}
+
+	public int getViewportWidth() {
+		return viewportWidth;
+	}
+
+	public int getViewportHeight() {
+		return viewportHeight;
+	}
+
+
+	/**
+	 * Move the camera so that the content moves by the given number of screen pixels.
+	 */
+	public void pan(double dx, double dy) {
+		if(dx == 0 && dy == 0) {
+			return;
+		}
+		translateX += dx;
+		translateY += dy;
+		version++;
+	}
+
+	/**
+	 * Multiply the scale by <code>factor</code> while keeping the world point under
+	 * the given screen location in place.
+	 */
+	public void zoomAt(double factor, double screenX, double screenY) {
+		double newScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+		if(newScale == scale) {
+			return;
+		}
+
+		double ratio = newScale / scale;
+		translateX = screenX - (screenX - translateX) * ratio;
+		translateY = screenY - (screenY - translateY) * ratio;
+		scale = newScale;
+		version++;
+	}
+
+	/**
+	 * Zoom about the middle of the viewport.
+	 */
+	public void zoom(double factor) {
+		zoomAt(factor, viewportWidth / 2.0, viewportHeight / 2.0);
+	}
+
+	/**
+	 * Scale and center the camera so that the given world rectangle fills the viewport,
+	 * leaving <code>margin</code> pixels on every side.
+	 */
+	public void fit(Rectangle2D worldBounds, int margin) {
+		if(viewportWidth <= 0 || viewportHeight <= 0) {
+			pendingFit = (Rectangle2D) worldBounds.clone();
+			pendingFitMargin = margin;
+			return;
+		}
+
+		double usableWidth = Math.max(1, viewportWidth - 2 * margin);
+		double usableHeight = Math.max(1, viewportHeight - 2 * margin);
+		double worldWidth = Math.max(worldBounds.getWidth(), 1);
+		double worldHeight = Math.max(worldBounds.getHeight(), 1);
+
+		scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, Math.min(usableWidth / worldWidth, usableHeight / worldHeight)));
+		translateX = viewportWidth / 2.0 - worldBounds.getCenterX() * scale;
+		translateY = viewportHeight / 2.0 - worldBounds.getCenterY() * scale;
+		version++;
+	}
+}
@@ -1,7 +1,6 @@
 package com.boofisher.app.cySimpleRenderer.internal.data;
 import java.awt.Graphics;
-import java.awt.Shape;
-import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 
 import javax.swing.JComponent;
@@ -9,6 +8,10 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 
 import com.boofisher.app.cySimpleRenderer.internal.cytoscape.edges.EdgeAnalyser;
+import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNetworkView;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.QualityController;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.ImagePool;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SceneSnapshot;
 import com.boofisher.app.cySimpleRenderer.internal.task.TaskFactoryListener;
 
 import org.apache.log4j.Logger;
@@ -47,7 +50,9 @@ public class GraphicsData {
 	private final CyNetworkView networkView;
 	private final EventBus eventBus;
 	private final VisualLexicon visualLexicon;	
-	private final int MAX_ZOOM = 100;
+	private final Camera camera;
+	private final QualityController qualityController;
+	private final ImagePool imagePool;
 	
 	private int mouseCurrentX;
 	private int mouseCurrentY;
@@ -64,13 +69,9 @@ public class GraphicsData {
 	private EdgeAnalyser edgeAnalyser;
 	private PickingData pickingData;
 	private GraphicsSelectionData selectionData;
-	private AffineTransform aTransform;
-	private Shape shape;
 	
 	private boolean showLabels = false;
 	
-	private int zoom;	
-	
 	private JPanel surface;
 	private BufferedImage bufferedImage;	
 	
@@ -79,6 +80,9 @@ public class GraphicsData {
 	
 	private Graphics myGraphics;
 	
+	// Birds-eye only, the part of the network visible in the main view
+	private Rectangle2D mainViewBounds;
+	
 	public GraphicsData(CyNetworkView networkView, VisualLexicon visualLexicon, EventBus eventBus,
 			JComponent container, JComponent inputComponent, JScrollPane scrollPane) {
 		this.networkView = networkView;
@@ -87,22 +91,31 @@ public class GraphicsData {
 		this.container = container;
 		this.inputComponent = inputComponent;
 		this.scrollPane = scrollPane;
-		this.aTransform = new AffineTransform();
 		this.isMain = false;
 				
-		zoom = 0;
+		camera = new Camera();
+		qualityController = new QualityController(container);
+		imagePool = (networkView instanceof CySRNetworkView) ? ((CySRNetworkView) networkView).getImagePool() : new ImagePool();
 		selectionData = new GraphicsSelectionData();
 		pickingData = new PickingData();
 		edgeAnalyser = new EdgeAnalyser();
 		bufferedImage = null;	
 	}
 	
-	public void setATransform(AffineTransform aTransform) {
-		this.aTransform = aTransform;
+	public Camera getCamera() {
+		return camera;
 	}
-
-	public AffineTransform getATransform() {
-		return aTransform;
+	
+	public QualityController getQualityController() {
+		return qualityController;
+	}
+	
+	/**
+	 * Images for back buffers and cached layers, shared with every other renderer
+	 * of the view when the view is one of ours.
+	 */
+	public ImagePool getImagePool() {
+		return imagePool;
 	}
 	
 	public GraphicsSelectionData getSelectionData() {
@@ -142,21 +155,6 @@ public class GraphicsData {
 		this.screenWidth = screenWidth;
 	}	
 	
-	public void setZoomFactor(int scroll){
-		this.zoom = scroll;
-	}
-
-	public void changeZoomFactor(int scroll) {
-		int temp = this.zoom;		
-		
-		if(scroll >= 0  && (temp + scroll) < MAX_ZOOM){
-			this.zoom += scroll;
-		}else if(scroll < 0  && (temp + scroll) > 0){
-			this.zoom += scroll;			
-		}
-
-	}
-
 	public int getScreenWidth() {
 		return screenWidth;
 	}
@@ -219,10 +217,6 @@ public class GraphicsData {
 		return showLabels;
 	}
 	
-	public int getZoomFactor() {
-		return zoom;
-	}
-
 	public BufferedImage getBufferedImage() {
 		return bufferedImage;
 	}
@@ -267,12 +261,30 @@ public class GraphicsData {
 		this.myGraphics = graphics;
 	}
 	
-	public Shape getMyShape() {
-		return shape;
+	/**
+	 * The part of the network that is visible in this renderer's container, in world coordinates.
+	 */
+	public Rectangle2D getVisibleWorldBounds() {
+		return camera.getVisibleBounds();
+	}
+	
+	/**
+	 * The current snapshot of the network, shared with every other user of the view when
+	 * the view is one of ours.
+	 */
+	public SceneSnapshot getSceneSnapshot() {
+		if(networkView instanceof CySRNetworkView) {
+			return ((CySRNetworkView) networkView).getSceneSnapshot();
+		}
+		return SceneSnapshot.create(networkView);
+	}
+	
+	public Rectangle2D getMainViewBounds() {
+		return mainViewBounds;
 	}
 	
-	public void setMyShape(Shape shape) {
-		this.shape = shape;
+	public void setMainViewBounds(Rectangle2D mainViewBounds) {
+		this.mainViewBounds = mainViewBounds;
 	}
 }
 
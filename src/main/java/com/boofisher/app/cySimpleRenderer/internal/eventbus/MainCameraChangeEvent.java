@@ -0,0 +1,22 @@
+package com.boofisher.app.cySimpleRenderer.internal.eventbus;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Posted by the main view whenever its camera may have moved,
+ * so the birds-eye view can redraw its viewport rectangle.
+ */
+public class MainCameraChangeEvent {
+
+	private final Rectangle2D visibleBounds;
+	
+	public MainCameraChangeEvent(Rectangle2D visibleBounds) {
+		this.visibleBounds = visibleBounds;
+	}
+	
+	/** The part of the network visible in the main view, in world coordinates. */
+	public Rectangle2D getVisibleBounds() {
+		return visibleBounds;
+	}
+	
+}
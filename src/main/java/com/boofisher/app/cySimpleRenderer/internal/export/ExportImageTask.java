@@ -0,0 +1,122 @@
+package com.boofisher.app.cySimpleRenderer.internal.export;
+
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+
+import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNetworkView;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SceneSnapshot;
+
+/**
+ * Exports the whole network view as one PNG, streamed to the file band by band by the
+ * {@link TiledImageExporter}, so images far larger than the heap can be written.
+ */
+public class ExportImageTask extends AbstractTask {
+
+	@Tunable(description="Output file (.png)", params="input=false", gravity="1.0")
+	public File outputFile;
+
+	@Tunable(description="Longest side of the image (pixels)", gravity="2.0")
+	public int fullSize = 16384;
+
+	private final CyNetworkView networkView;
+	private volatile TiledImageExporter exporter;
+
+
+	public ExportImageTask(CyNetworkView networkView) {
+		this.networkView = networkView;
+	}
+
+	@Override
+	public void run(final TaskMonitor taskMonitor) throws Exception {
+		if(outputFile == null) {
+			throw new IllegalArgumentException("No output file was chosen");
+		}
+		if(fullSize <= 0) {
+			throw new IllegalArgumentException("The image size must be positive");
+		}
+
+		taskMonitor.setTitle("Exporting network image");
+		taskMonitor.setStatusMessage("Copying network view");
+
+		File output = outputFile;
+		if(!output.getName().toLowerCase().endsWith(".png")) {
+			output = new File(output.getParentFile(), output.getName() + ".png");
+		}
+
+		SceneSnapshot scene = (networkView instanceof CySRNetworkView)
+				? ((CySRNetworkView) networkView).getSceneSnapshot()
+				: SceneSnapshot.create(networkView);
+
+		// The longest side gets the full size, the other one follows the shape of the network
+		Rectangle2D bounds = scene.getBounds();
+		double worldWidth = Math.max(bounds.getWidth(), 1);
+		double worldHeight = Math.max(bounds.getHeight(), 1);
+		int width = fullSize, height = fullSize;
+		if(worldWidth > worldHeight) {
+			height = (int) Math.max(1, Math.round(fullSize * worldHeight / worldWidth));
+		} else {
+			width = (int) Math.max(1, Math.round(fullSize * worldWidth / worldHeight));
+		}
+
+		exporter = new TiledImageExporter(scene);
+		exporter.setProgressListener(new TiledImageExporter.ProgressListener() {
+			@Override
+			public void progressChanged(int rowsDone, int rowCount) {
+				taskMonitor.setProgress((double) rowsDone / rowCount);
+			}
+		});
+
+		if(cancelled) {
+			return;
+		}
+
+		taskMonitor.setStatusMessage("Rendering " + width + " x " + height + " pixels to " + output);
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+		boolean done = false;
+		try {
+			exporter.writePng(out, width, height);
+			done = true;
+		} catch (InterruptedIOException e) {
+			// Only a cancel ends quietly, the finally block removes what was written so far
+			if(!cancelled) {
+				throw e;
+			}
+		} finally {
+			if(done) {
+				out.close();
+			} else {
+				// An incomplete image is worse than none
+				closeQuietly(out);
+				output.delete();
+			}
+		}
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+
+		TiledImageExporter current = exporter;
+		if(current != null) {
+			current.cancel();
+		}
+	}
+
+	private static void closeQuietly(OutputStream out) {
+		try {
+			out.close();
+		} catch (IOException e) {
+			// Nothing useful to do, the export already failed or is done
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package com.boofisher.app.cySimpleRenderer.internal.export;
+
+import org.cytoscape.task.AbstractNetworkViewTaskFactory;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.TaskIterator;
+
+import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNetworkView;
+
+public class ExportImageTaskFactory extends AbstractNetworkViewTaskFactory {
+
+	@Override
+	public TaskIterator createTaskIterator(CyNetworkView networkView) {
+		return new TaskIterator(new ExportImageTask(networkView));
+	}
+
+	@Override
+	public boolean isReady(CyNetworkView networkView) {
+		return networkView instanceof CySRNetworkView;
+	}
+}
@@ -0,0 +1,96 @@
+package com.boofisher.app.cySimpleRenderer.internal.export;
+
+import java.io.File;
+
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+import org.cytoscape.work.util.ListSingleSelection;
+
+import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNetworkView;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SceneSnapshot;
+
+/**
+ * Exports a network view as a tile pyramid, see {@link TilePyramidExporter}.
+ */
+public class ExportTilePyramidTask extends AbstractTask {
+
+	@Tunable(description="Output file (.dzi descriptor, or directory name for XYZ tiles)", params="input=false", gravity="1.0")
+	public File outputFile;
+
+	@Tunable(description="Tile layout", gravity="2.0")
+	public ListSingleSelection<TilePyramidExporter.Layout> layout =
+		new ListSingleSelection<TilePyramidExporter.Layout>(TilePyramidExporter.Layout.DEEP_ZOOM, TilePyramidExporter.Layout.XYZ);
+
+	@Tunable(description="Tile size (pixels)", gravity="3.0")
+	public int tileSize = TilePyramidExporter.DEFAULT_TILE_SIZE;
+
+	@Tunable(description="Longest side of the full resolution level (pixels)", gravity="4.0")
+	public int fullSize = 16384;
+
+	@Tunable(description="Write tiles that only contain background", gravity="5.0")
+	public boolean writeEmptyTiles = true;
+
+	private final CyNetworkView networkView;
+	private volatile TilePyramidExporter exporter;
+
+
+	public ExportTilePyramidTask(CyNetworkView networkView) {
+		this.networkView = networkView;
+	}
+
+	@Override
+	public void run(final TaskMonitor taskMonitor) throws Exception {
+		if(outputFile == null) {
+			throw new IllegalArgumentException("No output file was chosen");
+		}
+		if(tileSize <= 0 || fullSize <= 0) {
+			throw new IllegalArgumentException("Tile size and full resolution size must be positive");
+		}
+
+		taskMonitor.setTitle("Exporting tile pyramid");
+		taskMonitor.setStatusMessage("Copying network view");
+
+		TilePyramidExporter.Layout selectedLayout = layout.getSelectedValue();
+		if(selectedLayout == null) {
+			selectedLayout = TilePyramidExporter.Layout.DEEP_ZOOM;
+		}
+
+		File output = outputFile;
+		if(selectedLayout == TilePyramidExporter.Layout.DEEP_ZOOM && !output.getName().toLowerCase().endsWith(".dzi")) {
+			output = new File(output.getParentFile(), output.getName() + ".dzi");
+		}
+
+		SceneSnapshot scene = (networkView instanceof CySRNetworkView)
+				? ((CySRNetworkView) networkView).getSceneSnapshot()
+				: SceneSnapshot.create(networkView);
+		
+		exporter = new TilePyramidExporter(scene, selectedLayout,
+				tileSize, Runtime.getRuntime().availableProcessors());
+		exporter.setWriteEmptyTiles(writeEmptyTiles);
+		exporter.setProgressListener(new TilePyramidExporter.ProgressListener() {
+			@Override
+			public void progressChanged(int tilesDone, int tileCount) {
+				taskMonitor.setProgress((double) tilesDone / tileCount);
+			}
+		});
+
+		if(cancelled) {
+			return;
+		}
+
+		taskMonitor.setStatusMessage("Rendering tiles to " + output);
+		exporter.export(output, fullSize);
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+
+		TilePyramidExporter current = exporter;
+		if(current != null) {
+			current.cancel();
+		}
+	}
+}
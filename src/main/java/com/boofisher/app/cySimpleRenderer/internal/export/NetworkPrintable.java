@@ -0,0 +1,49 @@
+package com.boofisher.app.cySimpleRenderer.internal.export;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.print.PageFormat;
+import java.awt.print.Printable;
+
+import com.boofisher.app.cySimpleRenderer.internal.rendering.ScenePainter;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SceneSnapshot;
+
+/**
+ * Prints the whole network on one page, scaled to fit the imageable area.
+ *
+ * Drawing goes through the printer's {@link Graphics2D} as shapes rather than a
+ * bitmap, so the output stays sharp at any printer resolution. The network is
+ * printed as it was when the printable was created.
+ */
+public class NetworkPrintable implements Printable {
+
+	private final SceneSnapshot scene;
+
+
+	public NetworkPrintable(SceneSnapshot scene) {
+		this.scene = scene;
+	}
+
+
+	@Override
+	public int print(Graphics graphics, PageFormat pageFormat, int pageIndex) {
+		if(pageIndex > 0) {
+			return NO_SUCH_PAGE;
+		}
+
+		int width = (int) pageFormat.getImageableWidth();
+		int height = (int) pageFormat.getImageableHeight();
+
+		Graphics2D g = (Graphics2D) graphics.create();
+		try {
+			g.translate(pageFormat.getImageableX(), pageFormat.getImageableY());
+			AffineTransform worldToPage = ScenePainter.fitTransform(scene.getBounds(), width, height, TiledImageExporter.MARGIN);
+			new ScenePainter().paint(g, scene, worldToPage, new Rectangle(0, 0, width, height));
+		} finally {
+			g.dispose();
+		}
+		return PAGE_EXISTS;
+	}
+}
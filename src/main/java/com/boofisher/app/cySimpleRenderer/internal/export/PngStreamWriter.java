@@ -0,0 +1,202 @@
+package com.boofisher.app.cySimpleRenderer.internal.export;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a truecolor PNG one band of rows at a time.
+ *
+ * Unlike {@link javax.imageio.ImageIO}, the writer never needs the whole image, only
+ * the rows being written right now. Compressed data is flushed to the underlying
+ * stream in fixed-size IDAT chunks, so memory use does not grow with the image.
+ *
+ * Rows must be written top to bottom and the image is complete once exactly
+ * <code>height</code> rows have been written and {@link #close()} was called.
+ */
+public class PngStreamWriter implements Closeable {
+
+	private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+	private static final int IDAT_CHUNK_SIZE = 1 << 16;
+
+	private static final byte COLOR_TYPE_RGB = 2;
+	private static final byte FILTER_SUB = 1;
+
+	private final DataOutputStream out;
+	private final int width;
+	private final int height;
+
+	private final IdatOutputStream idat;
+	private final DeflaterOutputStream compressor;
+	private final Deflater deflater;
+	private final byte[] scanline;
+
+	private int rowsWritten = 0;
+	private boolean closed = false;
+
+
+	public PngStreamWriter(OutputStream out, int width, int height) throws IOException {
+		if(width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Image size must be positive: " + width + "x" + height);
+		}
+
+		this.out = new DataOutputStream(out);
+		this.width = width;
+		this.height = height;
+		this.scanline = new byte[1 + width * 3];
+		this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		this.idat = new IdatOutputStream();
+		this.compressor = new DeflaterOutputStream(idat, deflater, IDAT_CHUNK_SIZE);
+
+		this.out.write(SIGNATURE);
+		writeHeader();
+	}
+
+
+	/**
+	 * Append rows to the image.
+	 *
+	 * @param rgb Packed pixels, only the low 24 bits of each pixel are used
+	 * @param offset Index of the first pixel of the first row
+	 * @param scanlineStride Distance in the array between the start of two rows
+	 * @param rowCount The number of rows to write
+	 */
+	public void writeRows(int[] rgb, int offset, int scanlineStride, int rowCount) throws IOException {
+		if(rowsWritten + rowCount > height) {
+			throw new IllegalStateException("Writing " + rowCount + " rows would exceed the image height of " + height);
+		}
+
+		for(int row = 0; row < rowCount; row++) {
+			encodeRow(rgb, offset + row * scanlineStride);
+			compressor.write(scanline);
+		}
+		rowsWritten += rowCount;
+	}
+
+	public int getRowsWritten() {
+		return rowsWritten;
+	}
+
+	/**
+	 * Finish the compressed stream and write the trailing chunk. The underlying stream is not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+
+		if(rowsWritten != height) {
+			deflater.end();
+			throw new IOException("Only " + rowsWritten + " of " + height + " rows were written");
+		}
+
+		compressor.finish();
+		idat.flush();
+		deflater.end();
+		writeChunk("IEND", new byte[0], 0, 0);
+		out.flush();
+	}
+
+
+	// Uses the Sub filter, it is cheap and removes most of the redundancy of flat backgrounds
+	private void encodeRow(int[] rgb, int offset) {
+		scanline[0] = FILTER_SUB;
+
+		int previous = 0;
+		for(int x = 0, i = 1; x < width; x++, i += 3) {
+			int pixel = rgb[offset + x];
+			scanline[i]     = (byte) ((pixel >> 16) - (previous >> 16));
+			scanline[i + 1] = (byte) ((pixel >> 8) - (previous >> 8));
+			scanline[i + 2] = (byte) (pixel - previous);
+			previous = pixel;
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8; // bit depth
+		header[9] = COLOR_TYPE_RGB;
+		header[10] = 0; // deflate
+		header[11] = 0; // adaptive filtering
+		header[12] = 0; // no interlace
+		writeChunk("IHDR", header, 0, header.length);
+	}
+
+	private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, offset, length);
+
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, offset, length);
+		out.writeInt((int) crc.getValue());
+	}
+
+	private static void putInt(byte[] buffer, int offset, int value) {
+		buffer[offset]     = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+
+	/**
+	 * Collects compressed bytes and emits them as IDAT chunks.
+	 */
+	private class IdatOutputStream extends OutputStream {
+
+		private final byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+		private int count = 0;
+
+		@Override
+		public void write(int b) throws IOException {
+			if(count == buffer.length) {
+				flushChunk();
+			}
+			buffer[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while(len > 0) {
+				if(count == buffer.length) {
+					flushChunk();
+				}
+				int n = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			flushChunk();
+		}
+
+		@Override
+		public void close() throws IOException {
+			flushChunk();
+		}
+
+		private void flushChunk() throws IOException {
+			if(count > 0) {
+				writeChunk("IDAT", buffer, 0, count);
+				count = 0;
+			}
+		}
+	}
+}
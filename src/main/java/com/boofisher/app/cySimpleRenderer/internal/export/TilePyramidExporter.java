@@ -0,0 +1,322 @@
+package com.boofisher.app.cySimpleRenderer.internal.export;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.boofisher.app.cySimpleRenderer.internal.rendering.ScenePainter;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SceneSnapshot;
+
+/**
+ * Renders a {@link SceneSnapshot} into a multi-level pyramid of PNG tiles for use
+ * with tiled image viewers.
+ *
+ * Two layouts are supported:
+ * <ul>
+ * <li>{@link Layout#DEEP_ZOOM}: a <code>.dzi</code> descriptor with tiles in
+ * <code>name_files/level/column_row.png</code>. Level 0 is a single pixel and the
+ * last level is the full resolution image.</li>
+ * <li>{@link Layout#XYZ}: square tiles in <code>z/x/y.png</code>. Zoom 0 is a single
+ * tile and every zoom doubles the number of tiles along each axis.</li>
+ * </ul>
+ *
+ * Every level is drawn with the full resolution transform scaled by a power of two,
+ * so tiles line up exactly from one level to the next. Tiles are rendered in parallel
+ * but only a few are queued at a time, and a tile whose area holds no node or edge,
+ * according to the scene's spatial index, is never rendered.
+ */
+public class TilePyramidExporter {
+
+	public enum Layout {
+		DEEP_ZOOM("Deep Zoom (.dzi)"),
+		XYZ("XYZ tiles (z/x/y.png)");
+
+		private final String title;
+
+		private Layout(String title) {
+			this.title = title;
+		}
+
+		@Override
+		public String toString() {
+			return title;
+		}
+	}
+
+	/** Notified from worker threads as tiles are finished. */
+	public interface ProgressListener {
+		void progressChanged(int tilesDone, int tileCount);
+	}
+
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	private final SceneSnapshot scene;
+	private final Layout layout;
+	private final int tileSize;
+	private final int threadCount;
+
+	private boolean writeEmptyTiles = true;
+	private ProgressListener progressListener;
+	private volatile boolean cancelled = false;
+
+	// Encoded background-only tiles, keyed by tile dimensions
+	private final Map<Long, byte[]> emptyTiles = new ConcurrentHashMap<Long, byte[]>();
+
+
+	public TilePyramidExporter(SceneSnapshot scene, Layout layout, int tileSize, int threadCount) {
+		if(tileSize <= 0) {
+			throw new IllegalArgumentException("tileSize must be positive");
+		}
+		this.scene = scene;
+		this.layout = layout;
+		this.tileSize = tileSize;
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+
+	/**
+	 * Whether tiles holding only background are written. When false they are left out
+	 * entirely, which saves a lot of files for sparse networks but makes viewers request
+	 * tiles that do not exist.
+	 */
+	public void setWriteEmptyTiles(boolean writeEmptyTiles) {
+		this.writeEmptyTiles = writeEmptyTiles;
+	}
+
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/** Stop the export as soon as the tiles being rendered right now are done. */
+	public void cancel() {
+		cancelled = true;
+	}
+
+
+	/**
+	 * Write the pyramid.
+	 *
+	 * @param output For Deep Zoom the descriptor file, its tiles go into a sibling
+	 * <code>_files</code> directory. For XYZ the directory that receives the tiles.
+	 * @param fullSize The length in pixels of the longest side of the full resolution level.
+	 * For XYZ this is rounded up so the full level is a whole power of two tiles across.
+	 */
+	public void export(File output, int fullSize) throws IOException {
+		if(fullSize <= 0) {
+			throw new IllegalArgumentException("fullSize must be positive");
+		}
+
+		final int fullWidth, fullHeight, levelCount;
+		final File tileRoot;
+
+		if(layout == Layout.XYZ) {
+			int maxZoom = ceilLog2((fullSize + tileSize - 1) / tileSize);
+			fullWidth = fullHeight = tileSize << maxZoom;
+			levelCount = maxZoom + 1;
+			tileRoot = output;
+		} else {
+			double aspect = Math.max(scene.getBounds().getWidth(), 1) / Math.max(scene.getBounds().getHeight(), 1);
+			fullWidth  = aspect >= 1 ? fullSize : Math.max(1, (int) Math.round(fullSize * aspect));
+			fullHeight = aspect >= 1 ? Math.max(1, (int) Math.round(fullSize / aspect)) : fullSize;
+			levelCount = ceilLog2(Math.max(fullWidth, fullHeight)) + 1;
+			tileRoot = new File(output.getParentFile(), baseName(output) + "_files");
+			writeDescriptor(output, fullWidth, fullHeight);
+		}
+
+		AffineTransform fullTransform = ScenePainter.fitTransform(scene.getBounds(), fullWidth, fullHeight, TiledImageExporter.MARGIN);
+
+		int tileCount = 0;
+		for(int level = 0; level < levelCount; level++) {
+			int shift = levelCount - 1 - level;
+			tileCount += tilesAcross(levelSize(fullWidth, shift)) * tilesAcross(levelSize(fullHeight, shift));
+		}
+
+		renderLevels(tileRoot, fullTransform, fullWidth, fullHeight, levelCount, tileCount);
+	}
+
+
+	private void renderLevels(final File tileRoot, AffineTransform fullTransform, int fullWidth, int fullHeight,
+			                  int levelCount, final int tileCount) throws IOException {
+
+		final BlockingQueue<TileRenderer> renderers = new ArrayBlockingQueue<TileRenderer>(threadCount);
+		for(int i = 0; i < threadCount; i++) {
+			renderers.add(new TileRenderer(scene, tileSize));
+		}
+
+		// Keeps the queue short, a huge pyramid would otherwise queue millions of tiles up front
+		final Semaphore queued = new Semaphore(threadCount * 2);
+		final AtomicInteger tilesDone = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			for(int level = 0; level < levelCount; level++) {
+				final int shift = levelCount - 1 - level;
+				final int levelWidth = levelSize(fullWidth, shift);
+				final int levelHeight = levelSize(fullHeight, shift);
+				final File levelDir = new File(tileRoot, Integer.toString(level));
+
+				final AffineTransform levelTransform = AffineTransform.getScaleInstance(1.0 / (1 << shift), 1.0 / (1 << shift));
+				levelTransform.concatenate(fullTransform);
+
+				for(int row = 0; row < tilesAcross(levelHeight); row++) {
+					for(int column = 0; column < tilesAcross(levelWidth); column++) {
+						if(cancelled || failure.get() != null) {
+							return;
+						}
+
+						final Rectangle tile = new Rectangle(column * tileSize, row * tileSize,
+								Math.min(tileSize, levelWidth - column * tileSize), Math.min(tileSize, levelHeight - row * tileSize));
+						final File file = tileFile(levelDir, column, row);
+
+						queued.acquire();
+						executor.execute(new Runnable() {
+							@Override
+							public void run() {
+								try {
+									TileRenderer renderer = renderers.take();
+									try {
+										writeTile(renderer, tile, levelTransform, file);
+									} finally {
+										renderers.put(renderer);
+									}
+									if(progressListener != null) {
+										progressListener.progressChanged(tilesDone.incrementAndGet(), tileCount);
+									}
+								} catch (Throwable t) {
+									failure.compareAndSet(null, t);
+								} finally {
+									queued.release();
+								}
+							}
+						});
+					}
+				}
+			}
+
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Tile export was interrupted", e);
+		} finally {
+			executor.shutdownNow();
+
+			Throwable t = failure.get();
+			if(t instanceof IOException) {
+				throw (IOException) t;
+			} else if(t != null) {
+				throw new IOException("Failed to render a tile", t);
+			}
+		}
+	}
+
+	private void writeTile(TileRenderer renderer, Rectangle tile, AffineTransform levelTransform, File file) throws IOException {
+		byte[] encoded = null;
+
+		if(renderer.isEmpty(tile, levelTransform)) {
+			if(!writeEmptyTiles) {
+				return;
+			}
+			encoded = emptyTile(tile.width, tile.height);
+		}
+
+		File dir = file.getParentFile();
+		if(!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+			throw new IOException("Could not create directory " + dir);
+		}
+
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			if(encoded != null) {
+				out.write(encoded);
+			} else {
+				renderer.render(tile, levelTransform);
+				encodeTile(renderer, tile.width, tile.height, out);
+			}
+		}
+	}
+
+	private byte[] emptyTile(int width, int height) throws IOException {
+		Long key = ((long) width << 32) | height;
+		byte[] encoded = emptyTiles.get(key);
+
+		if(encoded == null) {
+			int[] pixels = new int[width * height];
+			Arrays.fill(pixels, scene.getBackground().getRGB());
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (PngStreamWriter writer = new PngStreamWriter(out, width, height)) {
+				writer.writeRows(pixels, 0, width, height);
+			}
+			encoded = out.toByteArray();
+			emptyTiles.put(key, encoded);
+		}
+		return encoded;
+	}
+
+	private static void encodeTile(TileRenderer renderer, int width, int height, OutputStream out) throws IOException {
+		try (PngStreamWriter writer = new PngStreamWriter(out, width, height)) {
+			writer.writeRows(renderer.pixels(), 0, renderer.getScanlineStride(), height);
+		}
+	}
+
+	private File tileFile(File levelDir, int column, int row) {
+		if(layout == Layout.XYZ) {
+			return new File(new File(levelDir, Integer.toString(column)), row + ".png");
+		}
+		return new File(levelDir, column + "_" + row + ".png");
+	}
+
+	private void writeDescriptor(File output, int width, int height) throws IOException {
+		File dir = output.getAbsoluteFile().getParentFile();
+		if(dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create directory " + dir);
+		}
+
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" Format=\"png\" Overlap=\"0\" TileSize=\"" + tileSize + "\">\n");
+			writer.write("  <Size Width=\"" + width + "\" Height=\"" + height + "\"/>\n");
+			writer.write("</Image>\n");
+		}
+	}
+
+
+	private int tilesAcross(int size) {
+		return (size + tileSize - 1) / tileSize;
+	}
+
+	// Size of a level that is 2^shift times smaller than the full level, rounded up as Deep Zoom does
+	private static int levelSize(int fullSize, int shift) {
+		return Math.max(1, (int) Math.ceil(fullSize / (double) (1 << shift)));
+	}
+
+	private static int ceilLog2(int value) {
+		return value <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(value - 1);
+	}
+
+	private static String baseName(File file) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+}
@@ -0,0 +1,66 @@
+package com.boofisher.app.cySimpleRenderer.internal.export;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import com.boofisher.app.cySimpleRenderer.internal.rendering.ScenePainter;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SceneSnapshot;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SpatialGridIndex;
+
+/**
+ * Owns one tile-sized image and the painter used to fill it.
+ * Only ever used by one thread at a time.
+ */
+class TileRenderer {
+
+	private final SceneSnapshot scene;
+	private final int tileSize;
+	private final BufferedImage tileImage;
+	private final ScenePainter painter = new ScenePainter();
+	private final SpatialGridIndex.Query query;
+
+
+	TileRenderer(SceneSnapshot scene, int tileSize) {
+		this.scene = scene;
+		this.tileSize = tileSize;
+		this.tileImage = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+		this.query = scene.getSpatialIndex().newQuery();
+	}
+
+	/**
+	 * Whether nothing but background would be drawn on the given part of the image.
+	 */
+	boolean isEmpty(Rectangle tile, AffineTransform worldToImage) {
+		Rectangle2D world = ScenePainter.toWorld(worldToImage, tile);
+		return world == null || !query.intersectsAny(world);
+	}
+
+	/**
+	 * Render the given part of the image into the top-left corner of the tile image.
+	 */
+	void render(Rectangle tile, AffineTransform worldToImage) {
+		AffineTransform worldToTile = AffineTransform.getTranslateInstance(-tile.x, -tile.y);
+		worldToTile.concatenate(worldToImage);
+
+		painter.paint(tileImage, scene, worldToTile, new Rectangle(0, 0, tile.width, tile.height));
+	}
+
+	/** The pixels of the tile image, rows are <code>getScanlineStride()</code> apart. */
+	int[] pixels() {
+		return ((DataBufferInt) tileImage.getRaster().getDataBuffer()).getData();
+	}
+
+	int getScanlineStride() {
+		return tileSize;
+	}
+
+	void copyInto(int[] band, int bandWidth, int x, int width, int height) {
+		int[] pixels = pixels();
+		for(int row = 0; row < height; row++) {
+			System.arraycopy(pixels, row * tileSize, band, row * bandWidth + x, width);
+		}
+	}
+}
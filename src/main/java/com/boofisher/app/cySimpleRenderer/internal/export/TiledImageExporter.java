@@ -0,0 +1,212 @@
+package com.boofisher.app.cySimpleRenderer.internal.export;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.boofisher.app.cySimpleRenderer.internal.rendering.ScenePainter;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SceneSnapshot;
+
+/**
+ * Renders a {@link SceneSnapshot} at an arbitrary output size without ever holding
+ * the whole image in memory and without touching any on-screen component.
+ *
+ * The output is cut into bands one tile high. The tiles of a band are rendered in
+ * parallel, each one only drawing the elements that overlap it, and the finished band
+ * is handed to a {@link PngStreamWriter} before the next band starts. Peak memory is
+ * one band plus one tile per worker thread, no matter how large the output is.
+ */
+public class TiledImageExporter {
+
+	/** Notified after every band of tiles is written. */
+	public interface ProgressListener {
+		void progressChanged(int rowsDone, int rowCount);
+	}
+
+	public static final int DEFAULT_TILE_SIZE = 512;
+
+	/** Blank border left around the network, in output pixels */
+	public static final int MARGIN = 10;
+
+	private final SceneSnapshot scene;
+	private final int tileSize;
+	private final int threadCount;
+
+	private ProgressListener progressListener;
+	private volatile boolean cancelled = false;
+
+
+	public TiledImageExporter(SceneSnapshot scene) {
+		this(scene, DEFAULT_TILE_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	public TiledImageExporter(SceneSnapshot scene, int tileSize, int threadCount) {
+		if(tileSize <= 0) {
+			throw new IllegalArgumentException("tileSize must be positive");
+		}
+		this.scene = scene;
+		this.tileSize = tileSize;
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/** Stop streaming after the band being rendered right now. */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * The transform used for an output of the given size, the whole network
+	 * is scaled to fit and centered.
+	 */
+	public AffineTransform getWorldToImage(int width, int height) {
+		return ScenePainter.fitTransform(scene.getBounds(), width, height, MARGIN);
+	}
+
+
+	/**
+	 * Stream a PNG of the given size showing the whole network to the output stream.
+	 * The stream is not closed.
+	 */
+	public void writePng(OutputStream out, int width, int height) throws IOException {
+		writePng(out, width, height, getWorldToImage(width, height));
+	}
+
+	/**
+	 * Stream a PNG of the given size to the output stream, drawn with the given transform
+	 * from world to image coordinates. The stream is not closed.
+	 *
+	 * @throws InterruptedIOException If the export was cancelled, the output is then incomplete
+	 */
+	public void writePng(OutputStream out, int width, int height, AffineTransform worldToImage) throws IOException {
+		final int[] band = new int[width * Math.min(tileSize, height)];
+		final BlockingQueue<TileRenderer> renderers = createRenderers();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try (PngStreamWriter writer = new PngStreamWriter(out, width, height)) {
+
+			for(int bandY = 0; bandY < height; bandY += tileSize) {
+				if(cancelled) {
+					throw new InterruptedIOException("Image export was cancelled");
+				}
+				final int bandHeight = Math.min(tileSize, height - bandY);
+				List<Future<?>> tiles = new ArrayList<Future<?>>();
+
+				for(int tileX = 0; tileX < width; tileX += tileSize) {
+					final Rectangle tile = new Rectangle(tileX, bandY, Math.min(tileSize, width - tileX), bandHeight);
+
+					tiles.add(executor.submit(new Callable<Void>() {
+						@Override
+						public Void call() throws InterruptedException {
+							TileRenderer renderer = renderers.take();
+							try {
+								renderer.render(tile, worldToImage);
+								renderer.copyInto(band, width, tile.x, tile.width, tile.height);
+							} finally {
+								renderers.put(renderer);
+							}
+							return null;
+						}
+					}));
+				}
+
+				awaitAll(tiles);
+				writer.writeRows(band, 0, width, bandHeight);
+
+				if(progressListener != null) {
+					progressListener.progressChanged(bandY + bandHeight, height);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	/**
+	 * Render the whole network into memory, see {@link #render(int, int, AffineTransform)}.
+	 */
+	public BufferedImage render(int width, int height) throws IOException {
+		return render(width, height, getWorldToImage(width, height));
+	}
+
+	/**
+	 * Render the image into memory, drawn with the given transform from world to image
+	 * coordinates. The tiles are still rendered in parallel and the on-screen panel is
+	 * not involved, but the result is one image of the requested size.
+	 */
+	public BufferedImage render(int width, int height, final AffineTransform worldToImage) throws IOException {
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final BlockingQueue<TileRenderer> renderers = createRenderers();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<?>> tiles = new ArrayList<Future<?>>();
+
+			for(int tileY = 0; tileY < height; tileY += tileSize) {
+				for(int tileX = 0; tileX < width; tileX += tileSize) {
+					final Rectangle tile = new Rectangle(tileX, tileY, Math.min(tileSize, width - tileX), Math.min(tileSize, height - tileY));
+
+					tiles.add(executor.submit(new Callable<Void>() {
+						@Override
+						public Void call() throws InterruptedException {
+							TileRenderer renderer = renderers.take();
+							try {
+								renderer.render(tile, worldToImage);
+								image.setRGB(tile.x, tile.y, tile.width, tile.height, renderer.pixels(), 0, renderer.getScanlineStride());
+							} finally {
+								renderers.put(renderer);
+							}
+							return null;
+						}
+					}));
+				}
+			}
+
+			awaitAll(tiles);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return image;
+	}
+
+
+	// One tile image per worker, handed back and forth instead of allocated per tile
+	private BlockingQueue<TileRenderer> createRenderers() {
+		BlockingQueue<TileRenderer> renderers = new ArrayBlockingQueue<TileRenderer>(threadCount);
+		for(int i = 0; i < threadCount; i++) {
+			renderers.add(new TileRenderer(scene, tileSize));
+		}
+		return renderers;
+	}
+
+	private static void awaitAll(List<Future<?>> futures) throws IOException {
+		try {
+			for(Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Image export was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to render a tile", e.getCause());
+		}
+	}
+}
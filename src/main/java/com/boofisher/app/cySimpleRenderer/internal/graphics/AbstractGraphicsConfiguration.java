@@ -1,21 +1,30 @@
 package com.boofisher.app.cySimpleRenderer.internal.graphics;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.LinkedList;
 import java.util.List;
 
 //import javax.media.opengl.GL2;
 import javax.swing.JComponent;
+import javax.swing.Timer;
 
 import  com.boofisher.app.cySimpleRenderer.internal.data.GraphicsData;
 import  com.boofisher.app.cySimpleRenderer.internal.graphics.GraphicsConfiguration;
 import  com.boofisher.app.cySimpleRenderer.internal.rendering.GraphicsProcedure;
+import  com.boofisher.app.cySimpleRenderer.internal.rendering.ProgressiveGraphicsProcedure;
 
 public abstract class AbstractGraphicsConfiguration implements GraphicsConfiguration {
 
+	// Delay before the next slice of unfinished progressive procedures, leaves room for input events
+	private static final int CONTINUE_DELAY = 5;
+	
 	private List<GraphicsProcedure> renderProcedures = new LinkedList<GraphicsProcedure>();
 	
 	protected GraphicsData graphicsData;
 	
+	private Timer continueTimer;
+	
 	
 	protected void add(GraphicsProcedure procedure) {
 		if(!renderProcedures.contains(procedure))
@@ -29,15 +38,35 @@ public abstract class AbstractGraphicsConfiguration implements GraphicsConfigura
 			proc.initialize(graphicsData);
 		}
 		
+		final JComponent container = graphicsData.getContainer();
+		continueTimer = new Timer(CONTINUE_DELAY, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				container.repaint();
+			}
+		});
+		continueTimer.setRepeats(false);
 	}	
 	
 	
 	@Override
 	public void drawScene() {
-			
+		long start = System.nanoTime();
+		
+		boolean complete = true;
+		
 		for (GraphicsProcedure proc : renderProcedures) {
 			proc.execute(graphicsData);
+			if(proc instanceof ProgressiveGraphicsProcedure && !((ProgressiveGraphicsProcedure) proc).isComplete()) {
+				complete = false;
+			}
 		}		
+		
+		graphicsData.getQualityController().frameRendered(System.nanoTime() - start);
+		
+		if(!complete && continueTimer != null) {
+			continueTimer.restart();
+		}
 	}
 	
 	@Override
@@ -46,6 +75,15 @@ public abstract class AbstractGraphicsConfiguration implements GraphicsConfigura
 	
 	@Override
 	public void dispose() {
+		if(continueTimer != null) {
+			continueTimer.stop();
+		}
+		for (GraphicsProcedure proc : renderProcedures) {
+			proc.dispose();
+		}
+		if(graphicsData != null) {
+			graphicsData.getQualityController().dispose();
+		}
 	}
 	
 	@Override
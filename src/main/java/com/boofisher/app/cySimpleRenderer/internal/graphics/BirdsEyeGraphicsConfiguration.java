@@ -9,7 +9,7 @@ import com.boofisher.app.cySimpleRenderer.internal.input.handler.BirdsEyeEventBu
 
 import com.boofisher.app.cySimpleRenderer.internal.data.GraphicsData;
 import com.boofisher.app.cySimpleRenderer.internal.graphics.AbstractGraphicsConfiguration;
-import com.boofisher.app.cySimpleRenderer.internal.rendering.RenderNetwork;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.RenderOverview;
 import com.google.common.eventbus.EventBus;
 
 public class BirdsEyeGraphicsConfiguration extends AbstractGraphicsConfiguration {
@@ -17,7 +17,7 @@ public class BirdsEyeGraphicsConfiguration extends AbstractGraphicsConfiguration
 	private JComponent frame;	
 	
 	public BirdsEyeGraphicsConfiguration() {			
-		add(new RenderNetwork());
+		add(new RenderOverview());
 	}
 	
 	@Override
@@ -6,6 +6,7 @@ import javax.swing.JComponent;
 import javax.swing.RootPaneContainer;
 
 import com.boofisher.app.cySimpleRenderer.internal.eventbus.FitInViewEvent;
+import com.boofisher.app.cySimpleRenderer.internal.eventbus.MainCameraChangeEvent;
 import com.boofisher.app.cySimpleRenderer.internal.input.handler.MainEventBusListener;
 import com.boofisher.app.cySimpleRenderer.internal.input.handler.MainInputEventListener;
 
@@ -31,6 +32,9 @@ public class MainGraphicsConfiguration extends AbstractGraphicsConfiguration {
 	private InputEventListener inputHandler;
 	private final ShapePickingProcessor shapePickingProcessor;
 	
+	// Camera version last announced to the birds-eye view
+	private long postedCameraVersion = -1;
+	
 	//private final ShapePickingProcessor shapePickingProcessor;
 	
 	public MainGraphicsConfiguration() {
@@ -41,7 +45,6 @@ public class MainGraphicsConfiguration extends AbstractGraphicsConfiguration {
 		add(new RenderNetwork());
 		//add(new UpdateEdges());//draw updated edges over bImage
 		//add(new UpdateNodes());//draw updated nodes over bImage
-		//add(new UpdateView()); //perform transformations on view
 		//add(new RenderLabels());//add JLabel over top of panel and draw labels on it, then hide or show
 	}
 	
@@ -82,11 +85,19 @@ public class MainGraphicsConfiguration extends AbstractGraphicsConfiguration {
 	@Override
 	public void update() {
 		shapePickingProcessor.processPicking(graphicsData);
+		
+		// Announced from here so that fits and resizes are covered, not just input
+		long cameraVersion = graphicsData.getCamera().getVersion();
+		if(cameraVersion != postedCameraVersion) {
+			postedCameraVersion = cameraVersion;
+			graphicsData.getEventBus().post(new MainCameraChangeEvent(graphicsData.getVisibleWorldBounds()));
+		}
 	}
 
 	
 	@Override
 	public void dispose() {
+		super.dispose();
 		inputHandler.dispose();
 	}
 	
@@ -55,6 +55,7 @@ public class RenderingPanel extends JPanel{
 		graphicsData.setMyGraphics(g);
 		graphicsData.setScreenHeight(this.getHeight());
 		graphicsData.setScreenWidth(this.getWidth());
+		graphicsData.getCamera().setViewportSize(this.getWidth(), this.getHeight());
 		
 		//now call the graphics configuration rendering procedures
 		// Doesn't really need to be split into two methods, but it allows GrapicsConfigurations to 
@@ -67,5 +68,14 @@ public class RenderingPanel extends JPanel{
     }	
 
 	public GraphicsData getGraphicsData(){return this.graphicsData;}
+	
+	/**
+	 * Stops rendering into this panel and hands its images back. Images no renderer
+	 * is using any more are dropped from the pool, which may be shared with another panel.
+	 */
+	public void dispose() {
+		configuration.dispose();
+		graphicsData.getImagePool().clear();
+	}
 					
 }
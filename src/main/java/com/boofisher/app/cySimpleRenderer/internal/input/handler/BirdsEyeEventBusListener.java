@@ -1,17 +1,14 @@
 package com.boofisher.app.cySimpleRenderer.internal.input.handler;
 
-import java.util.Collection;
-
+import com.boofisher.app.cySimpleRenderer.internal.data.Camera;
 import com.boofisher.app.cySimpleRenderer.internal.data.GraphicsData;
 //import com.boofisher.app.cySimpleRenderer.internal.eventbus.BoundingBoxUpdateEvent;
 import com.boofisher.app.cySimpleRenderer.internal.eventbus.FitInViewEvent;
+import com.boofisher.app.cySimpleRenderer.internal.eventbus.MainCameraChangeEvent;
 //import com.boofisher.app.cySimpleRenderer.internal.rendering.RenderBoundingBoxProcedure;
-import com.boofisher.app.cySimpleRenderer.internal.tools.NetworkToolkit;
 
 import org.apache.log4j.Logger;
 import org.cytoscape.application.CyUserLog;
-import org.cytoscape.model.CyNode;
-import org.cytoscape.view.model.View;
 
 import com.google.common.eventbus.Subscribe;
 
@@ -36,23 +33,19 @@ public class BirdsEyeEventBusListener {
 	@Subscribe
 	public void handleFitInViewEvent(FitInViewEvent e) {
 		// ignore selected node views, always use all of them
-		Collection<View<CyNode>> nodeViews = graphicsData.getNetworkView().getNodeViews(); 
-		
-		//TODO: need to look at this and try to calculate the value 1.9
-		int zoom = (int)NetworkToolkit.fitInView(nodeViews, GraphicsData.DISTANCE_SCALE, 1.9, 5.0);				
-		
-		graphicsData.setZoomFactor(zoom);
+		graphicsData.getCamera().fit(graphicsData.getSceneSnapshot().getBounds(), Camera.FIT_MARGIN);
 	}
 
 	
-/*	@Subscribe
+	@Subscribe
 	public void handleMainCameraChangeEvent(MainCameraChangeEvent e) {
-		
-		
+		graphicsData.setMainViewBounds(e.getVisibleBounds());
+		// only the viewport outline moves, which is cheap to redraw
+		graphicsData.getContainer().repaint();
 	}
 	
 	
-	@Subscribe
+/*	@Subscribe
 	public void handleBoundingBoxUpdateEvent(BoundingBoxUpdateEvent e) {
 		
 	}*/
@@ -107,6 +107,7 @@ public class InputEventListener implements MouseListener, MouseMotionListener, M
 	public void mouseWheelMoved(MouseWheelEvent e) {		
 		//logger.warn("wheel moved event # " + counter);
 
+		graphicsData.getQualityController().interaction();
 		mouseWheelCommand.execute(e.getWheelRotation());		
 		updateBothRenderers();		
 	}
@@ -140,6 +141,7 @@ public class InputEventListener implements MouseListener, MouseMotionListener, M
 	@Override
 	public void mouseDragged(MouseEvent e) {
 		//logger.warn("mouse dragged event handled");
+		graphicsData.getQualityController().interaction();
 		currentDragCommand.dragMove(e.getX(), e.getY());
 		updateBothRenderers();
 	}
@@ -211,6 +213,7 @@ public class InputEventListener implements MouseListener, MouseMotionListener, M
 			keyCommand.right();
 		
 		if(key[UP] || key[DOWN] || key[LEFT] || key[RIGHT]) {
+			graphicsData.getQualityController().interaction();
 			updateBothRenderers();
 		}
 		else {
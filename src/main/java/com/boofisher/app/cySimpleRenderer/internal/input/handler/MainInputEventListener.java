@@ -8,6 +8,8 @@ import javax.swing.InputMap;
 import javax.swing.JComponent;
 import javax.swing.KeyStroke;
 
+import com.boofisher.app.cySimpleRenderer.internal.input.handler.commands.CameraPanKeyCommand;
+import com.boofisher.app.cySimpleRenderer.internal.input.handler.commands.CameraPanMouseCommand;
 import com.boofisher.app.cySimpleRenderer.internal.input.handler.commands.PopupMenuMouseCommand;
 import com.boofisher.app.cySimpleRenderer.internal.input.handler.commands.SelectionMouseCommand;
 
@@ -62,16 +64,11 @@ public class MainInputEventListener extends InputEventListener {
 	
 	private void createInitialCommands() {
 		setMouseWheelCommand(new CameraZoomCommand(graphicsData));		
+		setKeyCommand(new CameraPanKeyCommand(graphicsData));
 		setMouseMode(MouseMode.getDefault()); // assume toolbar also starts off using the default
 	}
 	
 	
-	@Override
-	protected void fireUpdateEvents() {
-		
-	}
-	
-	
 	// *** Mode selection ***
 	
 	/** Called when a button on the toolbar is pressed. */
@@ -84,7 +81,7 @@ public class MainInputEventListener extends InputEventListener {
 	private void setMouseMode(MouseMode mouseMode) {
 		switch(mouseMode) {
 			case CAMERA: 
-				//setPrimaryMouseCommand(orbitCommand); 
+				setPrimaryMouseCommand(new CameraPanMouseCommand(graphicsData)); 
 				//setSecondaryMouseCommand(orbitCommand); 
 				break;
 			case SELECT: 
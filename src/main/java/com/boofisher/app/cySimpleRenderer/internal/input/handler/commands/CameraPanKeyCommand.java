@@ -0,0 +1,42 @@
+package com.boofisher.app.cySimpleRenderer.internal.input.handler.commands;
+
+import com.boofisher.app.cySimpleRenderer.internal.data.GraphicsData;
+import com.boofisher.app.cySimpleRenderer.internal.input.handler.KeyCommand;
+
+/**
+ * Pans the camera with the arrow keys, called on every tick of the keyboard heartbeat
+ * while a key is held down.
+ */
+public class CameraPanKeyCommand implements KeyCommand {
+
+	// Pixels moved per tick
+	private static final int STEP = 10;
+
+	private final GraphicsData graphicsData;
+
+
+	public CameraPanKeyCommand(GraphicsData graphicsData) {
+		this.graphicsData = graphicsData;
+	}
+
+
+	@Override
+	public void up() {
+		graphicsData.getCamera().pan(0, STEP);
+	}
+
+	@Override
+	public void down() {
+		graphicsData.getCamera().pan(0, -STEP);
+	}
+
+	@Override
+	public void left() {
+		graphicsData.getCamera().pan(STEP, 0);
+	}
+
+	@Override
+	public void right() {
+		graphicsData.getCamera().pan(-STEP, 0);
+	}
+}
@@ -0,0 +1,40 @@
+package com.boofisher.app.cySimpleRenderer.internal.input.handler.commands;
+
+import com.boofisher.app.cySimpleRenderer.internal.data.GraphicsData;
+import com.boofisher.app.cySimpleRenderer.internal.input.handler.MouseCommandAdapter;
+
+/**
+ * Drags the network around with the mouse. The camera moves by exactly the
+ * number of pixels the mouse moved, so the renderer can scroll its previous frame.
+ */
+public class CameraPanMouseCommand extends MouseCommandAdapter {
+
+	private final GraphicsData graphicsData;
+
+	private int lastX;
+	private int lastY;
+
+
+	public CameraPanMouseCommand(GraphicsData graphicsData) {
+		this.graphicsData = graphicsData;
+	}
+
+
+	@Override
+	public void dragStart(int x, int y) {
+		lastX = x;
+		lastY = y;
+	}
+
+	@Override
+	public void dragMove(int x, int y) {
+		graphicsData.getCamera().pan(x - lastX, y - lastY);
+		lastX = x;
+		lastY = y;
+	}
+
+	@Override
+	public void dragEnd(int x, int y) {
+		dragMove(x, y);
+	}
+}
@@ -19,6 +19,10 @@ import org.cytoscape.view.model.CyNetworkView;
 public class CameraZoomCommand implements MouseWheelCommand {
 
 	final Logger logger = Logger.getLogger(CyUserLog.NAME);
+	
+	// Scale change for one notch of the wheel
+	private static final double ZOOM_STEP = 1.1;
+	
 	private final GraphicsData graphicsData;
 	
 	
@@ -27,12 +31,13 @@ public class CameraZoomCommand implements MouseWheelCommand {
 	}
 
 
+	/**
+	 * Zooms about the mouse pointer, rolling the wheel towards the user zooms out.
+	 */
 	@Override
 	public void execute(int dWheel) {		
-		if( (graphicsData.getZoomFactor() + dWheel) > 0 ){
-			//logger.warn("In Camera Zoom command changing main zoom incrementing by: " + dWheel);
-			graphicsData.changeZoomFactor(dWheel);
-		}
+		graphicsData.getCamera().zoomAt(Math.pow(ZOOM_STEP, -dWheel), 
+				graphicsData.getMouseCurrentX(), graphicsData.getMouseCurrentY());
 	}
 
 }
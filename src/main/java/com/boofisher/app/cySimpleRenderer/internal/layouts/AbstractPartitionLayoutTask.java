@@ -0,0 +1,146 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.boofisher.app.cySimpleRenderer.internal.tools.LayoutToolkit;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.undo.UndoSupport;
+
+/**
+ * Base of the layouts that arrange every connected component of the network on its own
+ * and then place the components next to each other.
+ *
+ * The network is copied into a {@link LayoutGraph} and split into its components by
+ * the {@link ComponentPartitioner}, each an array of node indices into the graph. The
+ * components are arranged in parallel on the fork/join pool, each writing only the
+ * positions of its own nodes, and the result is written back to the view in one bulk
+ * update.
+ *
+ * Since each component is arranged around where it is, the result is cached relative to
+ * the average position of all nodes. Whether the components are packed flat also
+ * depends on whether their averages lie in one plane, so that is part of the key.
+ */
+public abstract class AbstractPartitionLayoutTask extends AbstractPositionLayoutTask {
+
+	// Components are handed out in batches of about this many nodes, so thousands of tiny ones do not each become a task
+	private static final int BATCH_SIZE = 4096;
+
+	// Averages closer than this along z count as lying in one plane, as in the PartitionPacker
+	private static final double LEVEL = 1e-6;
+
+	private List<int[]> partitions;
+
+	public AbstractPartitionLayoutTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo) {
+		super(name, networkView, nodesToLayOut, layoutAttribute, undo);
+	}
+
+	/**
+	 * Arrange the given nodes around their current average position. Called from pool
+	 * threads, at the same time for different components.
+	 *
+	 * @param positions x, y and z of every node of the network, only the given nodes may be changed
+	 * @param nodes The indices of the nodes of one component
+	 */
+	protected abstract void arrange(double[] positions, int[] nodes);
+
+	@Override
+	protected void doLayout(TaskMonitor taskMonitor) {
+		LayoutGraph graph = LayoutGraph.create(networkView, networkView.getNodeViews());
+
+		// Break graph into partitions
+		partitions = ComponentPartitioner.partition(networkView, graph);
+
+		if (cancelled) {
+			return;
+		}
+
+		boolean level = isLevel(graph.getPositions(), partitions);
+		layOut(graph, LayoutCache.key(graph, getLayoutName(), level), true, taskMonitor);
+	}
+
+	@Override
+	protected double[] getCacheOrigin(double[] positions) {
+		int n = positions.length / 3;
+		double[] origin = new double[3];
+		for (int i = 0; i < n; i++) {
+			origin[0] += positions[i * 3];
+			origin[1] += positions[i * 3 + 1];
+			origin[2] += positions[i * 3 + 2];
+		}
+		if (n > 0) {
+			for (int d = 0; d < 3; d++) {
+				origin[d] /= n;
+			}
+		}
+		return origin;
+	}
+
+	@Override
+	protected boolean computePositions(LayoutGraph graph, TaskMonitor taskMonitor) {
+		if (cancelled) {
+			return false;
+		}
+
+		ForkJoinPool.commonPool().invoke(new ArrangeAction(graph.getPositions(), partitions, 0, partitions.size()));
+
+		if (cancelled) {
+			return false;
+		}
+
+		LayoutToolkit.arrangePartitions(graph.getPositions(), partitions);
+		return true;
+	}
+
+	// Whether the average positions of all partitions have the same z
+	private static boolean isLevel(double[] positions, List<int[]> partitions) {
+		double first = 0;
+		for (int p = 0; p < partitions.size(); p++) {
+			double z = LayoutToolkit.findCenter(positions, partitions.get(p)).z();
+			if (p == 0) {
+				first = z;
+			} else if (Math.abs(z - first) >= LEVEL) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Arranges the partitions from..to, splitting the range in half while it holds more than a batch of nodes
+	private class ArrangeAction extends RecursiveAction {
+		private final double[] positions;
+		private final List<int[]> partitions;
+		private final int from, to;
+
+		ArrangeAction(double[] positions, List<int[]> partitions, int from, int to) {
+			this.positions = positions;
+			this.partitions = partitions;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			int nodeCount = 0;
+			for (int p = from; p < to && nodeCount <= BATCH_SIZE; p++) {
+				nodeCount += partitions.get(p).length;
+			}
+
+			if (to - from > 1 && nodeCount > BATCH_SIZE) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ArrangeAction(positions, partitions, from, middle),
+						new ArrangeAction(positions, partitions, middle, to));
+				return;
+			}
+
+			for (int p = from; p < to && !cancelled; p++) {
+				arrange(positions, partitions.get(p));
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.Set;
+
+import com.boofisher.app.cySimpleRenderer.internal.tools.NetworkToolkit;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.layout.AbstractLayoutTask;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.undo.UndoSupport;
+
+/**
+ * Base of the layouts that compute new positions on a {@link LayoutGraph} and write
+ * them back at once as one undoable edit.
+ *
+ * {@link #layOut} restores the result from the {@link LayoutCache} if the same graph
+ * was laid out with the same settings before, and otherwise lets
+ * {@link #computePositions} do the work and caches it. A layout whose result moves
+ * along with the nodes can return a {@link #getCacheOrigin}, the result is then cached
+ * relative to it and restored relative to the origin of the current positions. Then
+ * only the nodes that moved are written to the view, at once or animated, and an edit
+ * is posted that moves them back.
+ *
+ * Undo is kept by the {@link PositionHistory} of the view, which stores the positions
+ * before and after compactly. The base class of Cytoscape would instead remember every
+ * node view for each layout, so it is given no UndoSupport.
+ */
+public abstract class AbstractPositionLayoutTask extends AbstractLayoutTask {
+
+	private final String name;
+	private final UndoSupport undoSupport;
+
+
+	public AbstractPositionLayoutTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo) {
+		super(name, networkView, nodesToLayOut, layoutAttribute, null);
+		this.name = name;
+		this.undoSupport = undo;
+	}
+
+
+	/**
+	 * Change the positions of the graph in place. Called by {@link #layOut} unless the
+	 * result was cached.
+	 *
+	 * @return false if nothing should be written, for example because the task was cancelled
+	 */
+	protected abstract boolean computePositions(LayoutGraph graph, TaskMonitor taskMonitor) throws InterruptedException;
+
+	/**
+	 * The point the cached result is relative to, for layouts whose result moves along
+	 * with the positions it starts from, or null to cache the result as it is.
+	 *
+	 * @param positions x, y and z of every node before the layout
+	 */
+	protected double[] getCacheOrigin(double[] positions) {
+		return null;
+	}
+
+	/**
+	 * The name the layout was created with, which is also the name of its undoable edit.
+	 */
+	protected String getLayoutName() {
+		return name;
+	}
+
+	/**
+	 * Lay out the graph and move the nodes of the view there.
+	 *
+	 * @param key The cache entry of the result, or null to always compute it
+	 * @param animate Whether the nodes move there over {@link LayoutAnimator#DEFAULT_FRAMES} frames
+	 */
+	protected void layOut(LayoutGraph graph, LayoutCache.Key key, boolean animate, TaskMonitor taskMonitor) {
+		double[] before = graph.getPositions().clone();
+		double[] origin = key != null ? getCacheOrigin(before) : null;
+
+		if(key != null && LayoutCache.restore(key, graph)) {
+			taskMonitor.setStatusMessage("Restoring the cached layout");
+			translate(graph.getPositions(), origin, 1);
+		} else {
+			try {
+				if(!computePositions(graph, taskMonitor) || cancelled) {
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if(key != null) {
+				translate(graph.getPositions(), origin, -1);
+				LayoutCache.store(key, graph);
+				translate(graph.getPositions(), origin, 1);
+			}
+		}
+
+		moveNodes(graph, before, animate);
+	}
+
+	private static void translate(double[] positions, double[] origin, int sign) {
+		if(origin == null) {
+			return;
+		}
+		for(int i = 0; i < positions.length; i++) {
+			positions[i] += sign * origin[i % 3];
+		}
+	}
+
+	// Write back only the nodes whose positions changed, which after a small change are few
+	private void moveNodes(LayoutGraph graph, double[] before, boolean animate) {
+		double[] positions = graph.getPositions();
+		int n = graph.getNodeCount();
+
+		int movedCount = 0;
+		for(int i = 0; i < n; i++) {
+			if(moved(positions, before, i)) {
+				movedCount++;
+			}
+		}
+		if(movedCount == 0) {
+			return;
+		}
+
+		long[] suids = graph.getSUIDs();
+		double[] xyz = positions;
+		double[] previous = before;
+		if(movedCount < n) {
+			suids = new long[movedCount];
+			xyz = new double[movedCount * 3];
+			previous = new double[movedCount * 3];
+			int count = 0;
+			for(int i = 0; i < n; i++) {
+				if(moved(positions, before, i)) {
+					suids[count] = graph.getSUID(i);
+					System.arraycopy(positions, i * 3, xyz, count * 3, 3);
+					System.arraycopy(before, i * 3, previous, count * 3, 3);
+					count++;
+				}
+			}
+		}
+
+		PositionHistory history = PositionHistory.get(networkView);
+		PositionHistory.Snapshot recorded = history.record(suids, previous);
+		if(animate) {
+			LayoutAnimator.animate(networkView, suids, xyz, LayoutAnimator.DEFAULT_FRAMES);
+		} else {
+			NetworkToolkit.setNodePositions(networkView, suids, xyz);
+		}
+		history.postEdit(undoSupport, networkView, name, recorded, suids, xyz);
+	}
+
+	private static boolean moved(double[] positions, double[] before, int i) {
+		return positions[i * 3] != before[i * 3] || positions[i * 3 + 1] != before[i * 3 + 1] || positions[i * 3 + 2] != before[i * 3 + 2];
+	}
+}
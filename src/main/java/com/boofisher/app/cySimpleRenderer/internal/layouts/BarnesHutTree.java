@@ -0,0 +1,245 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.Arrays;
+
+/**
+ * An octree over node positions that sums the repulsion between all pairs of nodes
+ * in O(n log n), by treating a far away cell as one body at its center of mass.
+ *
+ * The tree lives in flat arrays. Building it reorders an array of node indices so
+ * every cell covers a contiguous range of it, cells are split until they hold at most
+ * {@link #LEAF_SIZE} nodes or get too small to split further, so nodes sitting on top
+ * of each other do not make the tree arbitrarily deep.
+ *
+ * Once built the tree is only read, so any number of threads may call
+ * {@link #addRepulsion} at the same time, each with its own stack.
+ */
+class BarnesHutTree {
+
+	static final int LEAF_SIZE = 4;
+	static final int MAX_DEPTH = 24;
+
+	// Size of the stack a caller of addRepulsion has to provide
+	static final int STACK_SIZE = MAX_DEPTH * 7 + 8;
+
+	// Below this squared distance two nodes are treated as this far apart
+	private static final double MIN_DISTANCE_SQUARED = 1e-4;
+
+	private final int dimensions;
+
+	// Node indices, every cell covers order[start] up to order[end]
+	private int[] order = new int[0];
+
+	// Per cell, interleaved so visiting a cell touches little memory. Children of a
+	// cell are stored next to each other.
+	//   cellBounds: start and end in order, first child, child count
+	//   cellMass: center of mass x, y, z, squared side length
+	private int cellCount;
+	private int[] cellBounds = new int[16 * 4];
+	private double[] cellMass = new double[16 * 4];
+
+	// Scratch for sorting a cell's nodes into its children
+	private int[] octant = new int[0];
+	private int[] sorted = new int[0];
+
+
+	/**
+	 * @param dimensions 2 for a quadtree that ignores z, 3 for an octree
+	 */
+	BarnesHutTree(int dimensions) {
+		this.dimensions = dimensions;
+	}
+
+
+	/**
+	 * Build the tree over the first <code>count</code> nodes of the given positions.
+	 */
+	void build(double[] positions, int count) {
+		if(order.length < count) {
+			order = new int[count];
+			octant = new int[count];
+			sorted = new int[count];
+		}
+		for(int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		cellCount = 0;
+		if(count == 0) {
+			return;
+		}
+
+		double minX = Double.POSITIVE_INFINITY, minY = minX, minZ = minX;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+		for(int i = 0; i < count; i++) {
+			minX = Math.min(minX, positions[i * 3]);
+			maxX = Math.max(maxX, positions[i * 3]);
+			minY = Math.min(minY, positions[i * 3 + 1]);
+			maxY = Math.max(maxY, positions[i * 3 + 1]);
+			minZ = Math.min(minZ, positions[i * 3 + 2]);
+			maxZ = Math.max(maxZ, positions[i * 3 + 2]);
+		}
+		if(dimensions == 2) {
+			minZ = maxZ = 0;
+		}
+		double side = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+		side = Math.max(side, 1e-9);
+
+		int root = newCell(0, count);
+		split(root, positions, side, (minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2, 0);
+	}
+
+	/**
+	 * The node at the given position of the tree order, in which nodes close to each
+	 * other come one after another. Going through the nodes in this order makes
+	 * consecutive {@link #addRepulsion} calls visit mostly the same cells.
+	 */
+	int getNode(int k) {
+		return order[k];
+	}
+
+	/**
+	 * Add the repulsion on the given node from all others to <code>force[i * 3]</code> and on.
+	 * Each other node pushes with <code>strength / distance</code>.
+	 *
+	 * @param theta Cells smaller than theta times their distance count as one body
+	 * @param stack At least {@link #STACK_SIZE} long, owned by the calling thread
+	 */
+	void addRepulsion(int i, double[] positions, double strength, double theta, double[] force, int[] stack) {
+		if(cellCount == 0) {
+			return;
+		}
+
+		double x = positions[i * 3], y = positions[i * 3 + 1], z = dimensions == 2 ? 0 : positions[i * 3 + 2];
+		double thetaSquared = theta * theta;
+		double fx = 0, fy = 0, fz = 0;
+
+		int top = 0;
+		stack[top++] = 0;
+		while(top > 0) {
+			int cell = stack[--top];
+			int c4 = cell * 4;
+
+			double dx = x - cellMass[c4];
+			double dy = y - cellMass[c4 + 1];
+			double dz = z - cellMass[c4 + 2];
+			double d2 = dx * dx + dy * dy + dz * dz;
+
+			if(cellMass[c4 + 3] < thetaSquared * d2) {
+				// far enough away to count as one body
+				double f = strength * (cellBounds[c4 + 1] - cellBounds[c4]) / d2;
+				fx += dx * f;
+				fy += dy * f;
+				fz += dz * f;
+			} else if(cellBounds[c4 + 3] == 0) {
+				// close leaf, exact forces from the nodes in it
+				for(int k = cellBounds[c4]; k < cellBounds[c4 + 1]; k++) {
+					int j = order[k];
+					if(j == i) {
+						continue;
+					}
+					dx = x - positions[j * 3];
+					dy = y - positions[j * 3 + 1];
+					dz = dimensions == 2 ? 0 : z - positions[j * 3 + 2];
+					d2 = Math.max(dx * dx + dy * dy + dz * dz, MIN_DISTANCE_SQUARED);
+					double f = strength / d2;
+					fx += dx * f;
+					fy += dy * f;
+					fz += dz * f;
+				}
+			} else {
+				for(int c = cellBounds[c4 + 2]; c < cellBounds[c4 + 2] + cellBounds[c4 + 3]; c++) {
+					stack[top++] = c;
+				}
+			}
+		}
+
+		force[i * 3] += fx;
+		force[i * 3 + 1] += fy;
+		force[i * 3 + 2] += fz;
+	}
+
+
+	// Compute the center of mass of the cell and split it into children if it holds too many nodes
+	private void split(int cell, double[] positions, double side, double centerX, double centerY, double centerZ, int depth) {
+		int from = cellBounds[cell * 4], to = cellBounds[cell * 4 + 1];
+
+		double sumX = 0, sumY = 0, sumZ = 0;
+		for(int k = from; k < to; k++) {
+			int j = order[k];
+			sumX += positions[j * 3];
+			sumY += positions[j * 3 + 1];
+			sumZ += dimensions == 2 ? 0 : positions[j * 3 + 2];
+		}
+		int count = to - from;
+		cellMass[cell * 4] = sumX / count;
+		cellMass[cell * 4 + 1] = sumY / count;
+		cellMass[cell * 4 + 2] = sumZ / count;
+		cellMass[cell * 4 + 3] = side * side;
+
+		if(count <= LEAF_SIZE || depth >= MAX_DEPTH) {
+			return;
+		}
+
+		// Counting sort of the nodes into octants
+		int octants = dimensions == 2 ? 4 : 8;
+		int[] counts = new int[octants + 1];
+		for(int k = from; k < to; k++) {
+			int j = order[k];
+			int o = (positions[j * 3] >= centerX ? 1 : 0)
+			      | (positions[j * 3 + 1] >= centerY ? 2 : 0)
+			      | (dimensions == 3 && positions[j * 3 + 2] >= centerZ ? 4 : 0);
+			octant[k] = o;
+			counts[o + 1]++;
+		}
+		for(int o = 0; o < octants; o++) {
+			counts[o + 1] += counts[o];
+		}
+		int[] next = Arrays.copyOf(counts, octants);
+		for(int k = from; k < to; k++) {
+			sorted[from + next[octant[k]]++] = order[k];
+		}
+		System.arraycopy(sorted, from, order, from, count);
+
+		// Children are allocated together so they are next to each other
+		int children = 0;
+		for(int o = 0; o < octants; o++) {
+			if(counts[o + 1] > counts[o]) {
+				children++;
+			}
+		}
+		int first = cellCount;
+		for(int o = 0; o < octants; o++) {
+			if(counts[o + 1] > counts[o]) {
+				newCell(from + counts[o], from + counts[o + 1]);
+			}
+		}
+		cellBounds[cell * 4 + 2] = first;
+		cellBounds[cell * 4 + 3] = children;
+
+		double half = side / 2;
+		double quarter = side / 4;
+		int child = first;
+		for(int o = 0; o < octants; o++) {
+			if(counts[o + 1] > counts[o]) {
+				split(child++, positions, half,
+						centerX + ((o & 1) != 0 ? quarter : -quarter),
+						centerY + ((o & 2) != 0 ? quarter : -quarter),
+						centerZ + ((o & 4) != 0 ? quarter : -quarter),
+						depth + 1);
+			}
+		}
+	}
+
+	private int newCell(int from, int to) {
+		if(cellCount * 4 == cellBounds.length) {
+			cellBounds = Arrays.copyOf(cellBounds, cellBounds.length * 2);
+			cellMass = Arrays.copyOf(cellMass, cellMass.length * 2);
+		}
+		int cell = cellCount++;
+		cellBounds[cell * 4] = from;
+		cellBounds[cell * 4 + 1] = to;
+		cellBounds[cell * 4 + 2] = 0;
+		cellBounds[cell * 4 + 3] = 0;
+		return cell;
+	}
+}
@@ -1,24 +1,15 @@
 package com.boofisher.app.cySimpleRenderer.internal.layouts;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 import com.boofisher.app.cySimpleRenderer.internal.geometric.Vector3;
 import com.boofisher.app.cySimpleRenderer.internal.tools.LayoutToolkit;
 import org.cytoscape.model.CyNode;
-import org.cytoscape.view.layout.AbstractLayoutTask;
-import org.cytoscape.view.layout.LayoutNode;
-import org.cytoscape.view.layout.LayoutPartition;
-import org.cytoscape.view.layout.PartitionUtil;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.View;
-import org.cytoscape.view.presentation.property.BasicVisualLexicon;
-import org.cytoscape.work.TaskMonitor;
 import org.cytoscape.work.undo.UndoSupport;
 
-public class BoxLayoutAlgorithmTask extends AbstractLayoutTask {
+public class BoxLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 
 	
 	public BoxLayoutAlgorithmTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo) {
@@ -26,41 +17,18 @@ public class BoxLayoutAlgorithmTask extends AbstractLayoutTask {
 	}
 
 	@Override
-	protected void doLayout(TaskMonitor taskMonitor) {
-		
-		// Break graph into partitions
-		List<LayoutPartition> layoutPartitions = PartitionUtil.partition(networkView, false, null);
-		
-		Collection<Collection<View<CyNode>>> partitions = new HashSet<Collection<View<CyNode>>>(layoutPartitions.size());
-		
-		Collection<View<CyNode>> partitionNodeViews;
-		
-		for (LayoutPartition partition : layoutPartitions) {
-			partitionNodeViews = new HashSet<View<CyNode>>();
-			
-			for (LayoutNode layoutNode : partition.getNodeList()) {
-				View<CyNode> nodeView = layoutNode.getNodeView();
-				partitionNodeViews.add(nodeView);
-			}
-			
-			partitions.add(partitionNodeViews);
-		}
-		
-		for (Collection<View<CyNode>> partition : partitions) {
-			arrangeAsBox(partition, 270);
-		}
-		
-		LayoutToolkit.arrangePartitions(partitions);
+	protected void arrange(double[] positions, int[] nodes) {
+		arrangeAsBox(positions, nodes, 270);
 	}
 	
-	private void arrangeAsBox(Collection<View<CyNode>> nodeViews, double nodeSpacing) {		
-		int nodeCount = nodeViews.size();
+	private void arrangeAsBox(double[] positions, int[] nodes, double nodeSpacing) {		
+		int nodeCount = nodes.length;
 		int nodesPerFace = (int) Math.ceil(nodeCount / 6.0);
 		
 		int sideLength = (int) Math.ceil(Math.sqrt(nodesPerFace));
 		double halfSideLength = sideLength / 2.0;
 		
-		Vector3 center = LayoutToolkit.findCenter(nodeViews);
+		Vector3 center = LayoutToolkit.findCenter(positions, nodes);
 		
 		// The position of the top-left corner of a face
 		Vector3 faceCorner;
@@ -70,7 +38,7 @@ public class BoxLayoutAlgorithmTask extends AbstractLayoutTask {
 		Vector3 faceDown = new Vector3();
 		
 		int count = 0;
-		for (View<CyNode> nodeView : nodeViews) {
+		for (int node : nodes) {
 			int face = count / nodesPerFace;
 		
 			switch (face) {
@@ -132,12 +100,9 @@ public class BoxLayoutAlgorithmTask extends AbstractLayoutTask {
 			// The column that this node belongs to on the current face
 			int column = (count % nodesPerFace) / sideLength + 1;
 			
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, 
-					faceCorner.x() + faceRight.x() * nodeSpacing * column + faceDown.x() * nodeSpacing * row);
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, 
-					faceCorner.y() + faceRight.y() * nodeSpacing * column + faceDown.y() * nodeSpacing * row);
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION, 
-					faceCorner.z() + faceRight.z() * nodeSpacing * column + faceDown.z() * nodeSpacing * row);
+			positions[node * 3] = faceCorner.x() + faceRight.x() * nodeSpacing * column + faceDown.x() * nodeSpacing * row;
+			positions[node * 3 + 1] = faceCorner.y() + faceRight.y() * nodeSpacing * column + faceDown.y() * nodeSpacing * row;
+			positions[node * 3 + 2] = faceCorner.z() + faceRight.z() * nodeSpacing * column + faceDown.z() * nodeSpacing * row;
 			
 			count++;
 		}
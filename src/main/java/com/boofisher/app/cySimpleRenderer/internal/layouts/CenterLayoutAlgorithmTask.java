@@ -1,17 +1,14 @@
 package com.boofisher.app.cySimpleRenderer.internal.layouts;
 
-import java.util.Collection;
 import java.util.Set;
 
 import org.cytoscape.model.CyNode;
-import org.cytoscape.view.layout.AbstractLayoutTask;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.View;
-import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 import org.cytoscape.work.TaskMonitor;
 import org.cytoscape.work.undo.UndoSupport;
 
-public class CenterLayoutAlgorithmTask extends AbstractLayoutTask {
+public class CenterLayoutAlgorithmTask extends AbstractPositionLayoutTask {
 
 	public CenterLayoutAlgorithmTask(String displayName, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo) {
 		super(displayName, networkView, nodesToLayOut, layoutAttribute, undo);
@@ -19,17 +16,26 @@ public class CenterLayoutAlgorithmTask extends AbstractLayoutTask {
 
 	@Override
 	protected void doLayout(TaskMonitor taskMonitor) {
-		Collection<View<CyNode>> nodeViews = networkView.getNodeViews();
-		int n = nodeViews.size();
+		LayoutGraph graph = LayoutGraph.create(networkView, networkView.getNodeViews());
+		layOut(graph, null, true, taskMonitor);
+	}
+
+	@Override
+	protected boolean computePositions(LayoutGraph graph, TaskMonitor taskMonitor) {
+		double[] positions = graph.getPositions();
+		int n = graph.getNodeCount();
+		if(n == 0) {
+			return false;
+		}
 		
 		// MKTODO This duplicates the logic found in LayoutToolkit.findCenter()
 		
 		double sumX = 0, sumY = 0, sumZ = 0;
 		
-		for(View<CyNode> nodeView : nodeViews) {
-			sumX += nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
-			sumY += nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
-			sumZ += nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION);
+		for(int i = 0; i < n; i++) {
+			sumX += positions[i * 3];
+			sumY += positions[i * 3 + 1];
+			sumZ += positions[i * 3 + 2];
 		}
 		
 		double originX = sumX / n;
@@ -37,12 +43,12 @@ public class CenterLayoutAlgorithmTask extends AbstractLayoutTask {
 		double originZ = sumZ / n;
 		
 		// Translate graph to new origin
-		for(View<CyNode> nodeView : nodeViews) {
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION) - originX);
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION) - originY);
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION, nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION) - originZ);
+		for(int i = 0; i < n; i++) {
+			positions[i * 3] -= originX;
+			positions[i * 3 + 1] -= originY;
+			positions[i * 3 + 2] -= originZ;
 		}
-		
+		return true;
 	}
 
 }
@@ -0,0 +1,191 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNetworkView;
+import org.cytoscape.view.model.CyNetworkView;
+
+/**
+ * Splits a {@link LayoutGraph} into its connected components, as arrays of node indices.
+ *
+ * The components are found with a concurrent union-find: ranges of nodes are handed to
+ * the fork/join pool, and each worker unites every node with its neighbors. A root is
+ * always linked below the smaller of the two roots with a compare-and-set, so workers
+ * never build a cycle and the root of a component ends up being its smallest node.
+ * Lookups halve the paths they walk, which only ever shortcuts to an ancestor and is
+ * safe to race with.
+ *
+ * Components come in order of their smallest node, with their nodes in ascending order,
+ * so the result does not depend on how the work was split. The components of a
+ * {@link CySRNetworkView} are cached for as long as {@link LayoutGraph#create} hands out
+ * graphs that share their rows, that is until the topology or the nodes change.
+ */
+public class ComponentPartitioner {
+
+	// Nodes per fork/join task
+	private static final int BATCH_SIZE = 8192;
+
+	private static final Map<CyNetworkView, CachedComponents> cache =
+			Collections.synchronizedMap(new WeakHashMap<CyNetworkView, CachedComponents>());
+
+	private ComponentPartitioner() {
+	}
+
+
+	/**
+	 * The connected components of the given copy of the network view, from the cache if
+	 * they were found for a graph with the same rows. The arrays are shared with the
+	 * cache and must not be changed.
+	 */
+	public static List<int[]> partition(CyNetworkView networkView, LayoutGraph graph) {
+		if (!(networkView instanceof CySRNetworkView)) {
+			return findComponents(graph);
+		}
+
+		CachedComponents cached = cache.get(networkView);
+		if (cached != null && cached.offsets == graph.getOffsets() && cached.neighbors == graph.getNeighbors()) {
+			return cached.components;
+		}
+
+		List<int[]> components = Collections.unmodifiableList(findComponents(graph));
+		cache.put(networkView, new CachedComponents(graph.getOffsets(), graph.getNeighbors(), components));
+		return components;
+	}
+
+	/**
+	 * The connected components of the given graph, without caching.
+	 */
+	public static List<int[]> findComponents(LayoutGraph graph) {
+		int n = graph.getNodeCount();
+		AtomicIntegerArray parents = new AtomicIntegerArray(n);
+		for (int i = 0; i < n; i++) {
+			parents.set(i, i);
+		}
+		int[] roots = new int[n];
+
+		ForkJoinPool.commonPool().invoke(new UniteAction(graph, parents, roots, 0, n, false));
+		ForkJoinPool.commonPool().invoke(new UniteAction(graph, parents, roots, 0, n, true));
+
+		// Each root is the smallest node of its component, so the components are numbered in order of their first node
+		int[] componentOf = new int[n];
+		int[] sizes = new int[n];
+		int componentCount = 0;
+		for (int i = 0; i < n; i++) {
+			if (roots[i] == i) {
+				componentOf[i] = componentCount++;
+			}
+			sizes[componentOf[roots[i]]]++;
+		}
+
+		List<int[]> components = new ArrayList<int[]>(componentCount);
+		for (int c = 0; c < componentCount; c++) {
+			components.add(new int[sizes[c]]);
+		}
+		int[] filled = new int[componentCount];
+		for (int i = 0; i < n; i++) {
+			int c = componentOf[roots[i]];
+			components.get(c)[filled[c]++] = i;
+		}
+		return components;
+	}
+
+
+	// Unites the nodes from..to with their neighbors, or once that is done everywhere, looks up their roots
+	private static class UniteAction extends RecursiveAction {
+		private final LayoutGraph graph;
+		private final AtomicIntegerArray parents;
+		private final int[] roots;
+		private final int from, to;
+		private final boolean findRoots;
+
+		UniteAction(LayoutGraph graph, AtomicIntegerArray parents, int[] roots, int from, int to, boolean findRoots) {
+			this.graph = graph;
+			this.parents = parents;
+			this.roots = roots;
+			this.from = from;
+			this.to = to;
+			this.findRoots = findRoots;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > BATCH_SIZE) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new UniteAction(graph, parents, roots, from, middle, findRoots),
+						new UniteAction(graph, parents, roots, middle, to, findRoots));
+				return;
+			}
+
+			if (findRoots) {
+				for (int i = from; i < to; i++) {
+					roots[i] = find(parents, i);
+				}
+				return;
+			}
+
+			int[] offsets = graph.getOffsets();
+			int[] neighbors = graph.getNeighbors();
+			for (int i = from; i < to; i++) {
+				for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+					// every edge is in the rows of both its ends, uniting once is enough
+					if (neighbors[e] > i) {
+						unite(parents, i, neighbors[e]);
+					}
+				}
+			}
+		}
+	}
+
+	private static int find(AtomicIntegerArray parents, int node) {
+		int parent = parents.get(node);
+		while (parent != node) {
+			int grandparent = parents.get(parent);
+			if (grandparent != parent) {
+				parents.compareAndSet(node, parent, grandparent);
+			}
+			node = parent;
+			parent = grandparent;
+		}
+		return node;
+	}
+
+	private static void unite(AtomicIntegerArray parents, int a, int b) {
+		while (true) {
+			a = find(parents, a);
+			b = find(parents, b);
+			if (a == b) {
+				return;
+			}
+			// Link the larger root below the smaller one, unless another worker has linked it meanwhile
+			if (a < b) {
+				int swap = a;
+				a = b;
+				b = swap;
+			}
+			if (parents.compareAndSet(a, a, b)) {
+				return;
+			}
+		}
+	}
+
+
+	// The components of the graph with the given rows, which hold on to the rows but not the positions
+	private static class CachedComponents {
+		final int[] offsets;
+		final int[] neighbors;
+		final List<int[]> components;
+
+		CachedComponents(int[] offsets, int[] neighbors, List<int[]> components) {
+			this.offsets = offsets;
+			this.neighbors = neighbors;
+			this.components = components;
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A Fruchterman-Reingold style force-directed layout over a {@link LayoutGraph}.
+ *
+ * Every node pushes every other node away with a force of <code>C k&sup2; / distance</code>,
+ * where k is the edge length, and every edge pulls its ends together with
+ * <code>distance&sup2; / k</code>. The repulsion of all pairs is summed with a
+ * {@link BarnesHutTree}, so an iteration takes O(n log n) instead of O(n&sup2;). A weak
+ * gravity towards the center keeps disconnected parts from drifting off.
+ *
+ * Each iteration builds the tree once and then computes the forces on ranges of nodes
+ * in parallel, every worker writing only the forces of its own range. Nodes then move
+ * a step along their force. The step shrinks whenever the total force grew, and grows
+ * again after a few iterations in a row that lowered it, so the layout settles without
+ * a fixed cooling schedule.
+ *
+ * The layout works in place on the positions of the graph, starting from where the
+ * nodes are. If they are all in one spot they are scattered randomly first.
+ */
+public class ForceDirectedLayout {
+
+	/** Notified after every iteration, from the thread running the layout. */
+	public interface ProgressListener {
+		void progressChanged(int iterationsDone, int iterationCount);
+	}
+
+	public static final int DEFAULT_ITERATIONS = 300;
+	public static final double DEFAULT_EDGE_LENGTH = 100;
+	public static final double DEFAULT_THETA = 1.0;
+
+	// Ranges of nodes handed to each worker per iteration, a few per thread to even out the load
+	private static final int RANGES_PER_THREAD = 4;
+	private static final int MIN_RANGE_SIZE = 256;
+
+	// Adaptive step length, see Hu, "Efficient and high quality force-directed graph drawing" (2005)
+	private static final double COOLING = 0.95;
+	private static final int STEADY_ITERATIONS = 5;
+
+	// Relative strength C of the repulsion, as in the spring-electrical model of the same paper
+	private static final double REPULSION = 0.2;
+
+	// Scales the gravity so a graph of n nodes settles roughly k * n^(1/dimensions) across
+	private static final double GRAVITY = 0.05;
+
+	private final LayoutGraph graph;
+	private final int threadCount;
+
+	private int dimensions = 3;
+	private int iterations = DEFAULT_ITERATIONS;
+	private double edgeLength = DEFAULT_EDGE_LENGTH;
+	private double theta = DEFAULT_THETA;
+	private double initialStep = 0;
+
+	private ProgressListener progressListener;
+	private volatile boolean cancelled = false;
+
+	// State of the iteration in progress, read by the workers
+	private BarnesHutTree tree;
+	private double[] forces;
+	private double gravity;
+	private final double[] center = new double[3];
+
+
+	public ForceDirectedLayout(LayoutGraph graph, int threadCount) {
+		this.graph = graph;
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+
+	/**
+	 * 2 to lay the nodes out flat with z set to 0, 3 to use all three axes.
+	 */
+	public void setDimensions(int dimensions) {
+		if(dimensions != 2 && dimensions != 3) {
+			throw new IllegalArgumentException("dimensions must be 2 or 3");
+		}
+		this.dimensions = dimensions;
+	}
+
+	public void setIterations(int iterations) {
+		this.iterations = iterations;
+	}
+
+	/**
+	 * The length edges settle at when nothing else pulls on their ends.
+	 */
+	public void setEdgeLength(double edgeLength) {
+		this.edgeLength = edgeLength;
+	}
+
+	/**
+	 * How coarse the repulsion may be approximated, 0 sums all pairs exactly. Around
+	 * 1 is a good trade of speed against accuracy for layouts.
+	 */
+	public void setTheta(double theta) {
+		this.theta = theta;
+	}
+
+	/**
+	 * How far nodes move in the first iteration. The default of 0 picks a step large
+	 * enough to untangle a random start, a layout that only needs refining should
+	 * start at about the edge length.
+	 */
+	public void setInitialStep(double initialStep) {
+		this.initialStep = initialStep;
+	}
+
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/** Stop after the iteration in progress, leaving the nodes where they got to. */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+
+	/**
+	 * Run all iterations, or until cancelled.
+	 */
+	public void layout() throws InterruptedException {
+		final int n = graph.getNodeCount();
+		if(n == 0) {
+			return;
+		}
+
+		double[] positions = graph.getPositions();
+		double extent = scatter(positions);
+
+		tree = new BarnesHutTree(dimensions);
+		forces = new double[n * 3];
+		gravity = GRAVITY * Math.pow(n, 1 - 2.0 / dimensions);
+
+		List<Range> ranges = new ArrayList<Range>();
+		int rangeSize = Math.max(MIN_RANGE_SIZE, (n + threadCount * RANGES_PER_THREAD - 1) / (threadCount * RANGES_PER_THREAD));
+		for(int from = 0; from < n; from += rangeSize) {
+			ranges.add(new Range(from, Math.min(n, from + rangeSize)));
+		}
+
+		ExecutorService executor = threadCount > 1 && ranges.size() > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+		try {
+			double step = initialStep > 0 ? initialStep : Math.max(extent / 2, edgeLength);
+			double lastEnergy = Double.POSITIVE_INFINITY;
+			int improvements = 0;
+
+			for(int iteration = 0; iteration < iterations && !cancelled; iteration++) {
+				findCenter(positions, n);
+				tree.build(positions, n);
+				Arrays.fill(forces, 0);
+
+				if(executor != null) {
+					for(Future<Void> future : executor.invokeAll(ranges)) {
+						rethrow(future);
+					}
+				} else {
+					for(Range range : ranges) {
+						range.call();
+					}
+				}
+
+				double energy = move(positions, n, step);
+
+				// Grow the step after a run of iterations that lowered the energy, shrink it when it rose
+				if(energy < lastEnergy) {
+					if(++improvements >= STEADY_ITERATIONS) {
+						improvements = 0;
+						step /= COOLING;
+					}
+				} else {
+					improvements = 0;
+					step *= COOLING;
+				}
+				lastEnergy = energy;
+
+				if(progressListener != null) {
+					progressListener.progressChanged(iteration + 1, iterations);
+				}
+			}
+		} finally {
+			if(executor != null) {
+				executor.shutdownNow();
+			}
+			tree = null;
+			forces = null;
+		}
+	}
+
+
+	// A range of nodes whose forces one worker computes, with the worker's own tree stack
+	private class Range implements Callable<Void> {
+		private final int from, to;
+		private final int[] stack = new int[BarnesHutTree.STACK_SIZE];
+
+		Range(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Void call() {
+			computeForces(from, to, stack);
+			return null;
+		}
+	}
+
+	// The forces on the nodes from..to in tree order, only written to their own slots of the force array
+	private void computeForces(int from, int to, int[] stack) {
+		double[] positions = graph.getPositions();
+		int[] offsets = graph.getOffsets();
+		int[] neighbors = graph.getNeighbors();
+		double k = edgeLength;
+
+		for(int n = from; n < to; n++) {
+			int i = tree.getNode(n);
+			tree.addRepulsion(i, positions, REPULSION * k * k, theta, forces, stack);
+
+			double x = positions[i * 3], y = positions[i * 3 + 1], z = positions[i * 3 + 2];
+			double fx = 0, fy = 0, fz = 0;
+
+			for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+				int j = neighbors[e];
+				double dx = positions[j * 3] - x;
+				double dy = positions[j * 3 + 1] - y;
+				double dz = dimensions == 2 ? 0 : positions[j * 3 + 2] - z;
+				double f = Math.sqrt(dx * dx + dy * dy + dz * dz) / k;
+				fx += dx * f;
+				fy += dy * f;
+				fz += dz * f;
+			}
+
+			fx += (center[0] - x) * gravity;
+			fy += (center[1] - y) * gravity;
+			fz += dimensions == 2 ? 0 : (center[2] - z) * gravity;
+
+			forces[i * 3] += fx;
+			forces[i * 3 + 1] += fy;
+			forces[i * 3 + 2] += dimensions == 2 ? 0 : fz;
+		}
+	}
+
+	// Move every node the given distance along its force, returns the sum of squared forces
+	private double move(double[] positions, int n, double step) {
+		double energy = 0;
+		for(int i = 0; i < n; i++) {
+			double fx = forces[i * 3], fy = forces[i * 3 + 1], fz = forces[i * 3 + 2];
+			double squared = fx * fx + fy * fy + fz * fz;
+			if(squared > 0) {
+				double scale = step / Math.sqrt(squared);
+				positions[i * 3] += fx * scale;
+				positions[i * 3 + 1] += fy * scale;
+				positions[i * 3 + 2] += fz * scale;
+				energy += squared;
+			}
+		}
+		return energy;
+	}
+
+	private void findCenter(double[] positions, int n) {
+		double x = 0, y = 0, z = 0;
+		for(int i = 0; i < n; i++) {
+			x += positions[i * 3];
+			y += positions[i * 3 + 1];
+			z += positions[i * 3 + 2];
+		}
+		center[0] = x / n;
+		center[1] = y / n;
+		center[2] = z / n;
+	}
+
+	/**
+	 * Spread the nodes out randomly if they are all in about the same place, and nudge
+	 * them a little otherwise so nodes on top of each other can push apart.
+	 *
+	 * @return How far the nodes are spread out
+	 */
+	private double scatter(double[] positions) {
+		int n = graph.getNodeCount();
+		Random random = new Random(n);
+
+		double[] min = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		double[] max = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for(int i = 0; i < n * 3; i++) {
+			min[i % 3] = Math.min(min[i % 3], positions[i]);
+			max[i % 3] = Math.max(max[i % 3], positions[i]);
+		}
+		double extent = Math.max(max[0] - min[0], max[1] - min[1]);
+		if(dimensions == 3) {
+			extent = Math.max(extent, max[2] - min[2]);
+		}
+
+		double spread = extent < edgeLength ? edgeLength * Math.pow(n, 1.0 / dimensions) : edgeLength * 0.01;
+		for(int i = 0; i < n; i++) {
+			positions[i * 3] += (random.nextDouble() - 0.5) * spread;
+			positions[i * 3 + 1] += (random.nextDouble() - 0.5) * spread;
+			positions[i * 3 + 2] = dimensions == 2 ? 0 : positions[i * 3 + 2] + (random.nextDouble() - 0.5) * spread;
+		}
+		return Math.max(extent, spread);
+	}
+
+	// Hand an exception of a worker on to the caller
+	static void rethrow(Future<Void> future) throws InterruptedException {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.undo.UndoSupport;
+
+/**
+ * Runs a {@link ForceDirectedLayout} on a copy of the network and writes the result
+ * back in one bulk update. Nothing is written if the task is cancelled.
+ */
+public class ForceDirectedLayoutAlgorithmTask extends AbstractPositionLayoutTask {
+
+	private final ForceDirectedLayoutContext context;
+	private volatile PivotMdsLayout start;
+	private volatile ForceDirectedLayout layout;
+
+
+	public ForceDirectedLayoutAlgorithmTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo,
+			ForceDirectedLayoutContext context) {
+		super(name, networkView, nodesToLayOut, layoutAttribute, undo);
+		this.context = context != null ? context : new ForceDirectedLayoutContext();
+	}
+
+	@Override
+	protected void doLayout(final TaskMonitor taskMonitor) {
+		taskMonitor.setTitle("Force-directed layout");
+		taskMonitor.setStatusMessage("Copying network");
+
+		Collection<View<CyNode>> nodeViews = (nodesToLayOut == null || nodesToLayOut.isEmpty())
+				? networkView.getNodeViews() : nodesToLayOut;
+		LayoutGraph graph = LayoutGraph.create(networkView, nodeViews);
+
+		LayoutCache.Key key = LayoutCache.key(graph, getLayoutName(), Math.max(1, context.iterations), Math.max(1, context.edgeLength),
+				Math.max(0, context.theta), context.threeDimensional, context.pivotMdsStart);
+		layOut(graph, key, context.animate, taskMonitor);
+	}
+
+	@Override
+	protected boolean computePositions(LayoutGraph graph, final TaskMonitor taskMonitor) throws InterruptedException {
+		double edgeLength = Math.max(1, context.edgeLength);
+		layout = new ForceDirectedLayout(graph, Runtime.getRuntime().availableProcessors());
+		layout.setIterations(Math.max(1, context.iterations));
+		layout.setEdgeLength(edgeLength);
+		layout.setTheta(Math.max(0, context.theta));
+		layout.setDimensions(context.threeDimensional ? 3 : 2);
+		layout.setProgressListener(new ForceDirectedLayout.ProgressListener() {
+			@Override
+			public void progressChanged(int iterationsDone, int iterationCount) {
+				taskMonitor.setProgress((double) iterationsDone / iterationCount);
+			}
+		});
+
+		if(cancelled) {
+			return false;
+		}
+
+		// A pivot MDS start is already untangled, so the force layout only refines it
+		if(context.pivotMdsStart) {
+			taskMonitor.setStatusMessage("Placing " + graph.getNodeCount() + " nodes by pivot MDS");
+			start = new PivotMdsLayout(graph, Runtime.getRuntime().availableProcessors());
+			start.setStressIterations(0);
+			start.setEdgeLength(edgeLength);
+			start.setDimensions(context.threeDimensional ? 3 : 2);
+			start.layout();
+			if(cancelled) {
+				return false;
+			}
+			layout.setInitialStep(edgeLength);
+		}
+
+		taskMonitor.setStatusMessage("Laying out " + graph.getNodeCount() + " nodes and " + graph.getEdgeCount() + " edges");
+		layout.layout();
+		return true;
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+
+		PivotMdsLayout currentStart = start;
+		if(currentStart != null) {
+			currentStart.cancel();
+		}
+		ForceDirectedLayout current = layout;
+		if(current != null) {
+			current.cancel();
+		}
+	}
+}
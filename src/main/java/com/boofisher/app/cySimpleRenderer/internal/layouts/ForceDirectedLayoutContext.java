@@ -0,0 +1,27 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import org.cytoscape.work.Tunable;
+
+/**
+ * Settings of the {@link ForceDirectedLayoutAlgorithm}.
+ */
+public class ForceDirectedLayoutContext {
+
+	@Tunable(description="Number of iterations", gravity="1.0")
+	public int iterations = ForceDirectedLayout.DEFAULT_ITERATIONS;
+
+	@Tunable(description="Edge length", gravity="2.0")
+	public double edgeLength = ForceDirectedLayout.DEFAULT_EDGE_LENGTH;
+
+	@Tunable(description="Approximation (0 is exact, higher is faster)", gravity="3.0")
+	public double theta = ForceDirectedLayout.DEFAULT_THETA;
+
+	@Tunable(description="Use all three dimensions", gravity="4.0")
+	public boolean threeDimensional = true;
+
+	@Tunable(description="Start from a pivot MDS layout", gravity="5.0")
+	public boolean pivotMdsStart = false;
+
+	@Tunable(description="Animate the nodes into place", gravity="6.0")
+	public boolean animate = true;
+}
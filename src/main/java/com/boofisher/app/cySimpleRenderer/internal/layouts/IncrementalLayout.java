@@ -0,0 +1,313 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.Random;
+
+/**
+ * Places nodes that were added to an already laid out {@link LayoutGraph}, leaving
+ * the rest of the layout as it is.
+ *
+ * New nodes are placed breadth-first from the nodes that are already placed: each goes
+ * to the average position of its placed neighbors, nudged by about an edge length so
+ * siblings do not land on top of each other. Groups of new nodes with no placed neighbor
+ * at all are started in a row next to the existing layout.
+ *
+ * A short force-directed refinement then moves only the new nodes, and if asked their
+ * existing neighbors by a fraction as much. Edges pull their ends to the edge length
+ * and nodes closer than a few edge lengths push each other apart, found through a
+ * {@link SpatialGrid} over the fixed nodes and one over the moving nodes, so each
+ * iteration costs about the number of moving nodes and not the size of the graph.
+ */
+public class IncrementalLayout {
+
+	/** Notified after every iteration, from the thread running the layout. */
+	public interface ProgressListener {
+		void progressChanged(int iterationsDone, int iterationCount);
+	}
+
+	public static final int DEFAULT_ITERATIONS = 50;
+
+	// Nodes further apart than this many edge lengths do not push each other
+	private static final double CUTOFF = 3;
+
+	// How far relaxed existing nodes may move compared to new ones, in all about half an edge length
+	private static final double RELAX = 0.05;
+
+	// Nodes that are fixed, new, or existing neighbors of new nodes that may move a little
+	private static final byte FIXED = 0;
+	private static final byte NEW = 1;
+	private static final byte RELAXED = 2;
+
+	private final LayoutGraph graph;
+	private final byte[] state;
+	private final int newCount;
+
+	private int iterations = DEFAULT_ITERATIONS;
+	private double edgeLength = ForceDirectedLayout.DEFAULT_EDGE_LENGTH;
+	private boolean relaxNeighbors = false;
+
+	private ProgressListener progressListener;
+	private volatile boolean cancelled = false;
+
+
+	/**
+	 * @param newNodes Indices of the nodes to place, all others keep their positions
+	 */
+	public IncrementalLayout(LayoutGraph graph, int[] newNodes) {
+		this.graph = graph;
+		this.state = new byte[graph.getNodeCount()];
+
+		int count = 0;
+		for(int i : newNodes) {
+			if(state[i] != NEW) {
+				state[i] = NEW;
+				count++;
+			}
+		}
+		this.newCount = count;
+	}
+
+
+	public void setIterations(int iterations) {
+		this.iterations = iterations;
+	}
+
+	public void setEdgeLength(double edgeLength) {
+		this.edgeLength = edgeLength;
+	}
+
+	/**
+	 * Whether existing neighbors of the new nodes may move a little to make room.
+	 */
+	public void setRelaxNeighbors(boolean relaxNeighbors) {
+		this.relaxNeighbors = relaxNeighbors;
+	}
+
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/** Stop after the iteration in progress, leaving the nodes where they got to. */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+
+	/**
+	 * Place the new nodes and refine around them, or stop early when cancelled.
+	 */
+	public void layout() {
+		if(newCount == 0) {
+			return;
+		}
+
+		double[] positions = graph.getPositions();
+		int dimensions = isFlat(positions) ? 2 : 3;
+
+		place(positions, dimensions);
+		if(!cancelled) {
+			refine(positions, dimensions);
+		}
+	}
+
+
+	// The layout is flat if all fixed nodes share one z
+	private boolean isFlat(double[] positions) {
+		double z = Double.NaN;
+		for(int i = 0; i < state.length; i++) {
+			if(state[i] == FIXED) {
+				if(Double.isNaN(z)) {
+					z = positions[i * 3 + 2];
+				} else if(positions[i * 3 + 2] != z) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Breadth-first from the placed nodes, each new node goes where its placed neighbors are.
+	 */
+	private void place(double[] positions, int dimensions) {
+		int n = graph.getNodeCount();
+		int[] offsets = graph.getOffsets();
+		int[] neighbors = graph.getNeighbors();
+		Random random = new Random(n);
+
+		boolean[] placed = new boolean[n];
+		boolean[] queued = new boolean[n];
+		int[] queue = new int[newCount];
+		int head = 0, tail = 0;
+
+		// Fixed nodes, where the row of new groups starts, and the plane of a flat layout
+		double maxX = Double.NEGATIVE_INFINITY, minY = Double.POSITIVE_INFINITY, plane = 0;
+		for(int i = 0; i < n; i++) {
+			if(state[i] == FIXED) {
+				placed[i] = true;
+				maxX = Math.max(maxX, positions[i * 3]);
+				minY = Math.min(minY, positions[i * 3 + 1]);
+				plane = positions[i * 3 + 2];
+			}
+		}
+		if(maxX == Double.NEGATIVE_INFINITY) {
+			maxX = -2 * edgeLength;
+			minY = 0;
+		}
+		double groupX = maxX + 2 * edgeLength;
+
+		for(int i = 0; i < n; i++) {
+			if(state[i] == NEW) {
+				for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+					if(placed[neighbors[e]]) {
+						queued[i] = true;
+						queue[tail++] = i;
+						break;
+					}
+				}
+			}
+		}
+
+		int start = 0;
+		while(true) {
+			while(head < tail) {
+				int i = queue[head++];
+
+				double x = 0, y = 0, z = 0;
+				int count = 0;
+				for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+					int j = neighbors[e];
+					if(placed[j]) {
+						x += positions[j * 3];
+						y += positions[j * 3 + 1];
+						z += positions[j * 3 + 2];
+						count++;
+					} else if(state[j] == NEW && !queued[j]) {
+						queued[j] = true;
+						queue[tail++] = j;
+					}
+				}
+
+				// A random direction, so siblings of the same parent spread around it
+				double dx = random.nextGaussian(), dy = random.nextGaussian(), dz = dimensions == 2 ? 0 : random.nextGaussian();
+				double scale = edgeLength / Math.max(1e-9, Math.sqrt(dx * dx + dy * dy + dz * dz));
+				positions[i * 3] = x / count + dx * scale;
+				positions[i * 3 + 1] = y / count + dy * scale;
+				positions[i * 3 + 2] = dimensions == 2 ? plane : z / count + dz * scale;
+				placed[i] = true;
+			}
+
+			// Start the next group of new nodes that nothing placed is connected to
+			while(start < n && (state[start] != NEW || placed[start])) {
+				start++;
+			}
+			if(start == n) {
+				break;
+			}
+			positions[start * 3] = groupX;
+			positions[start * 3 + 1] = minY;
+			positions[start * 3 + 2] = plane;
+			placed[start] = true;
+			groupX += 2 * edgeLength;
+
+			for(int e = offsets[start]; e < offsets[start + 1]; e++) {
+				int j = neighbors[e];
+				if(state[j] == NEW && !queued[j] && !placed[j]) {
+					queued[j] = true;
+					queue[tail++] = j;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fruchterman-Reingold forces on the moving nodes only, with a step that shrinks
+	 * from half an edge length to nothing.
+	 */
+	private void refine(double[] positions, int dimensions) {
+		int n = graph.getNodeCount();
+		int[] offsets = graph.getOffsets();
+		int[] neighbors = graph.getNeighbors();
+		double k = edgeLength;
+
+		if(relaxNeighbors) {
+			for(int i = 0; i < n; i++) {
+				if(state[i] == NEW) {
+					for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+						if(state[neighbors[e]] == FIXED) {
+							state[neighbors[e]] = RELAXED;
+						}
+					}
+				}
+			}
+		}
+
+		int movingCount = 0, fixedCount = 0;
+		for(int i = 0; i < n; i++) {
+			if(state[i] == FIXED) {
+				fixedCount++;
+			} else {
+				movingCount++;
+			}
+		}
+		int[] moving = new int[movingCount];
+		int[] fixed = new int[fixedCount];
+		movingCount = fixedCount = 0;
+		for(int i = 0; i < n; i++) {
+			if(state[i] == FIXED) {
+				fixed[fixedCount++] = i;
+			} else {
+				moving[movingCount++] = i;
+			}
+		}
+
+		// The fixed nodes stay put, so their grid is built once
+		SpatialGrid fixedGrid = new SpatialGrid(dimensions);
+		fixedGrid.build(positions, fixed, fixedCount, CUTOFF * k);
+		SpatialGrid movingGrid = new SpatialGrid(dimensions);
+
+		double[] forces = new double[n * 3];
+
+		for(int iteration = 0; iteration < iterations && !cancelled; iteration++) {
+			movingGrid.build(positions, moving, movingCount, CUTOFF * k);
+
+			for(int i : moving) {
+				forces[i * 3] = forces[i * 3 + 1] = forces[i * 3 + 2] = 0;
+				fixedGrid.addRepulsion(i, positions, k * k, CUTOFF * k, forces);
+				movingGrid.addRepulsion(i, positions, k * k, CUTOFF * k, forces);
+
+				double x = positions[i * 3], y = positions[i * 3 + 1], z = positions[i * 3 + 2];
+				for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+					int j = neighbors[e];
+					double dx = positions[j * 3] - x;
+					double dy = positions[j * 3 + 1] - y;
+					double dz = dimensions == 2 ? 0 : positions[j * 3 + 2] - z;
+					double f = Math.sqrt(dx * dx + dy * dy + dz * dz) / k;
+					forces[i * 3] += dx * f;
+					forces[i * 3 + 1] += dy * f;
+					forces[i * 3 + 2] += dz * f;
+				}
+			}
+
+			double step = k / 2 * (iterations - iteration) / iterations;
+			for(int i : moving) {
+				double fx = forces[i * 3], fy = forces[i * 3 + 1], fz = dimensions == 2 ? 0 : forces[i * 3 + 2];
+				double length = Math.sqrt(fx * fx + fy * fy + fz * fz);
+				if(length == 0) {
+					continue;
+				}
+				double move = Math.min(length, state[i] == RELAXED ? step * RELAX : step) / length;
+				positions[i * 3] += fx * move;
+				positions[i * 3 + 1] += fy * move;
+				positions[i * 3 + 2] += fz * move;
+			}
+
+			if(progressListener != null) {
+				progressListener.progressChanged(iteration + 1, iterations);
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import com.boofisher.app.cySimpleRenderer.internal.tools.NetworkToolkit;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.undo.UndoSupport;
+
+/**
+ * Runs an {@link IncrementalLayout} for the selected nodes if the layout is limited to
+ * them, otherwise for the nodes no layout has placed yet. Only the nodes that moved are
+ * written back.
+ */
+public class IncrementalLayoutAlgorithmTask extends AbstractPositionLayoutTask {
+
+	private final IncrementalLayoutContext context;
+	private volatile IncrementalLayout layout;
+
+
+	public IncrementalLayoutAlgorithmTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo,
+			IncrementalLayoutContext context) {
+		super(name, networkView, nodesToLayOut, layoutAttribute, undo);
+		this.context = context != null ? context : new IncrementalLayoutContext();
+	}
+
+	@Override
+	protected void doLayout(final TaskMonitor taskMonitor) {
+		taskMonitor.setTitle("Incremental layout");
+		taskMonitor.setStatusMessage("Copying network");
+
+		LayoutGraph graph = LayoutGraph.create(networkView, networkView.getNodeViews());
+
+		long[] suids;
+		if(nodesToLayOut != null && !nodesToLayOut.isEmpty()) {
+			suids = new long[nodesToLayOut.size()];
+			int count = 0;
+			for(View<CyNode> nodeView : nodesToLayOut) {
+				suids[count++] = nodeView.getModel().getSUID();
+			}
+		} else {
+			suids = NetworkToolkit.getUnplacedNodes(networkView);
+		}
+
+		int[] newNodes = new int[suids.length];
+		int newCount = 0;
+		for(long suid : suids) {
+			int node = graph.indexOf(suid);
+			if(node >= 0) {
+				newNodes[newCount++] = node;
+			}
+		}
+		if(newCount == 0) {
+			taskMonitor.setStatusMessage("No new nodes to place");
+			return;
+		}
+		newNodes = Arrays.copyOf(newNodes, newCount);
+
+		layout = new IncrementalLayout(graph, newNodes);
+		layout.setIterations(Math.max(1, context.iterations));
+		layout.setEdgeLength(Math.max(1, context.edgeLength));
+		layout.setRelaxNeighbors(context.relaxNeighbors);
+		layout.setProgressListener(new IncrementalLayout.ProgressListener() {
+			@Override
+			public void progressChanged(int iterationsDone, int iterationCount) {
+				taskMonitor.setProgress((double) iterationsDone / iterationCount);
+			}
+		});
+
+		taskMonitor.setStatusMessage("Placing " + newCount + " new nodes");
+		layOut(graph, null, context.animate, taskMonitor);
+	}
+
+	@Override
+	protected boolean computePositions(LayoutGraph graph, TaskMonitor taskMonitor) {
+		if(cancelled) {
+			return false;
+		}
+		layout.layout();
+		return true;
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+
+		IncrementalLayout current = layout;
+		if(current != null) {
+			current.cancel();
+		}
+	}
+}
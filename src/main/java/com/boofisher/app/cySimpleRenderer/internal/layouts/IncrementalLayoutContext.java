@@ -0,0 +1,21 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import org.cytoscape.work.Tunable;
+
+/**
+ * Settings of the {@link IncrementalLayoutAlgorithm}.
+ */
+public class IncrementalLayoutContext {
+
+	@Tunable(description="Number of iterations", gravity="1.0")
+	public int iterations = IncrementalLayout.DEFAULT_ITERATIONS;
+
+	@Tunable(description="Edge length", gravity="2.0")
+	public double edgeLength = ForceDirectedLayout.DEFAULT_EDGE_LENGTH;
+
+	@Tunable(description="Let neighbors of new nodes move a little", gravity="3.0")
+	public boolean relaxNeighbors = false;
+
+	@Tunable(description="Animate the nodes into place", gravity="4.0")
+	public boolean animate = true;
+}
@@ -0,0 +1,187 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import com.boofisher.app.cySimpleRenderer.internal.rendering.QualityController;
+import com.boofisher.app.cySimpleRenderer.internal.tools.NetworkToolkit;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+
+/**
+ * Moves nodes from where they are to the positions a layout computed over a fixed
+ * number of frames, instead of letting them jump there.
+ *
+ * A Swing timer ticks once per frame. Every tick works out which frame is due from the
+ * time since the animation started, interpolates all positions into one array and writes
+ * them with a single bulk update, then repaints the view. The time from the write until
+ * the repaint is done is measured, and no new frame starts until the last one has been
+ * painted and as much time again has passed, so a slow network leaves the event
+ * dispatch thread free half of the time. The frames in between are skipped, so the
+ * animation takes the same time on any network and always ends exactly on the targets.
+ *
+ * Only one animation runs per view, starting another one finishes the running one
+ * first. Everything but {@link #animate} runs on the event dispatch thread.
+ */
+public class LayoutAnimator {
+
+	public static final int DEFAULT_FRAMES = 30;
+
+	// Milliseconds per frame, the same budget the renderer aims for
+	private static final int FRAME_INTERVAL = (int) QualityController.DEFAULT_FRAME_BUDGET;
+
+	private static final Map<CyNetworkView, LayoutAnimator> running =
+			Collections.synchronizedMap(new WeakHashMap<CyNetworkView, LayoutAnimator>());
+
+	private final CyNetworkView networkView;
+	private final long[] suids;
+	private final double[] target;
+	private final int frameCount;
+
+	private double[] start;
+	private double[] frame;
+	private long startTime;
+	private int lastFrame;
+	private Timer timer;
+
+	// Whether the last frame is still being painted, and when the next one may start
+	private boolean framePending;
+	private long nextFrameTime;
+
+
+	private LayoutAnimator(CyNetworkView networkView, long[] suids, double[] target, int frameCount) {
+		this.networkView = networkView;
+		this.suids = suids;
+		this.target = target;
+		this.frameCount = frameCount;
+	}
+
+
+	/**
+	 * Animate the given nodes from their current positions to the targets. May be called
+	 * from any thread, the animation starts on the event dispatch thread. The arrays are
+	 * kept until the animation ends and must not be changed.
+	 *
+	 * @param target The x, y and z location to end at, three values per SUID
+	 * @param frameCount How many frames the animation takes, 1 or less moves the nodes at once
+	 */
+	public static void animate(final CyNetworkView networkView, long[] suids, double[] target, int frameCount) {
+		if(frameCount <= 1) {
+			NetworkToolkit.setNodePositions(networkView, suids, target);
+			return;
+		}
+
+		final LayoutAnimator animator = new LayoutAnimator(networkView, suids, target, frameCount);
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				LayoutAnimator previous = running.put(networkView, animator);
+				if(previous != null) {
+					previous.finish();
+				}
+				animator.start();
+			}
+		});
+	}
+
+	/**
+	 * Jump to the end of the animation running on the given view, if there is one.
+	 * Call on the event dispatch thread.
+	 */
+	public static void finish(CyNetworkView networkView) {
+		LayoutAnimator animator = running.get(networkView);
+		if(animator != null) {
+			animator.finish();
+		}
+	}
+
+
+	private void start() {
+		start = new double[target.length];
+		for(int i = 0; i < suids.length; i++) {
+			View<CyNode> nodeView = NetworkToolkit.getNodeView(networkView, suids[i]);
+			if(nodeView == null) {
+				System.arraycopy(target, i * 3, start, i * 3, 3);
+				continue;
+			}
+			start[i * 3] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+			start[i * 3 + 1] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+			start[i * 3 + 2] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION);
+		}
+		frame = new double[target.length];
+		startTime = System.nanoTime();
+		lastFrame = 0;
+		framePending = false;
+		nextFrameTime = startTime;
+
+		timer = new Timer(FRAME_INTERVAL, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				tick();
+			}
+		});
+		timer.setCoalesce(true);
+		timer.start();
+	}
+
+	private void tick() {
+		final long now = System.nanoTime();
+		if(timer == null || framePending || now < nextFrameTime) {
+			return;
+		}
+
+		// The frame that is due now, frames that were not drawn in time are skipped
+		long elapsed = (now - startTime) / 1000000L;
+		int due = (int) Math.min(frameCount, elapsed / FRAME_INTERVAL + 1);
+		if(due <= lastFrame) {
+			return;
+		}
+		lastFrame = due;
+
+		if(due >= frameCount) {
+			finish();
+			return;
+		}
+
+		// Ease in and out, so the nodes do not start or stop abruptly
+		double t = (double) due / frameCount;
+		double eased = t * t * (3 - 2 * t);
+		for(int i = 0; i < frame.length; i++) {
+			frame[i] = start[i] + (target[i] - start[i]) * eased;
+		}
+		NetworkToolkit.setNodePositions(networkView, suids, frame);
+		networkView.updateView();
+
+		// Queued behind the repaint the update asked for, so it runs once the frame is painted
+		framePending = true;
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				long end = System.nanoTime();
+				framePending = false;
+				nextFrameTime = end + (end - now);
+			}
+		});
+	}
+
+	private void finish() {
+		if(timer == null) {
+			return;
+		}
+		timer.stop();
+		timer = null;
+		start = frame = null;
+
+		NetworkToolkit.setNodePositions(networkView, suids, target);
+		networkView.updateView();
+		running.remove(networkView, this);
+	}
+}
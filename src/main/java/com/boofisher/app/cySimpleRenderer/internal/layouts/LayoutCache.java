@@ -0,0 +1,332 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The results of recent layouts, so laying out an unchanged network again with the same
+ * layout and settings restores the positions instead of computing them.
+ *
+ * An entry is keyed by a hash of the topology of the {@link LayoutGraph}, its node SUIDs
+ * and the edges between them, together with the name of the layout and its settings.
+ * The edges are hashed as a set, so the order the network lists them in does not matter.
+ * The positions are kept as packed floats in the order of the graph's nodes.
+ *
+ * Entries are evicted least recently used first once they take more than the memory
+ * budget. If a spill directory is set, evicted entries are written to a file there and
+ * read back on the next hit, up to a budget of their own. Each file starts with the
+ * whole key, which is checked when it is read back.
+ *
+ * The app spills to a directory in its configuration directory unless the
+ * {@value #SPILL_PROPERTY} system property is false. The budgets are set from the
+ * {@value #MEMORY_BUDGET_PROPERTY} and {@value #SPILL_BUDGET_PROPERTY} system properties,
+ * in megabytes, and are shared by all network views.
+ */
+public class LayoutCache {
+
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+	public static final long DEFAULT_SPILL_BUDGET = 512L * 1024 * 1024;
+
+	public static final String SPILL_PROPERTY = "cySimpleRenderer.layoutCacheSpill";
+	public static final String MEMORY_BUDGET_PROPERTY = "cySimpleRenderer.layoutCacheMB";
+	public static final String SPILL_BUDGET_PROPERTY = "cySimpleRenderer.layoutCacheSpillMB";
+
+	private static final String SPILL_PREFIX = "layout";
+	private static final String SPILL_SUFFIX = ".pos";
+
+	private static final Map<Key, float[]> entries = new LinkedHashMap<Key, float[]>(16, 0.75f, true);
+	private static final Map<Key, File> spilled = new LinkedHashMap<Key, File>(16, 0.75f, true);
+
+	private static long memoryBudget = DEFAULT_MEMORY_BUDGET;
+	private static long memoryUsed = 0;
+
+	private static File spillDirectory = null;
+	private static long spillBudget = DEFAULT_SPILL_BUDGET;
+	private static long spillUsed = 0;
+
+	private LayoutCache() {
+	}
+
+
+	/**
+	 * The key of a layout of the given graph.
+	 *
+	 * @param layout The name of the layout
+	 * @param parameters The settings the result depends on
+	 */
+	public static Key key(LayoutGraph graph, String layout, Object... parameters) {
+		return new Key(topologyHash(graph), graph.getNodeCount(), graph.getEdgeCount(), layout, Arrays.deepToString(parameters));
+	}
+
+	/**
+	 * Copy the cached positions into the graph, if there are any for the key.
+	 *
+	 * @return Whether the positions were found
+	 */
+	public static synchronized boolean restore(Key key, LayoutGraph graph) {
+		float[] values = entries.get(key);
+		if(values == null) {
+			values = unspill(key);
+			if(values == null) {
+				return false;
+			}
+			put(key, values);
+		}
+
+		double[] positions = graph.getPositions();
+		if(values.length != positions.length) {
+			return false;
+		}
+		for(int i = 0; i < positions.length; i++) {
+			positions[i] = values[i];
+		}
+		return true;
+	}
+
+	/**
+	 * Remember the positions of the graph as the result for the key.
+	 */
+	public static synchronized void store(Key key, LayoutGraph graph) {
+		double[] positions = graph.getPositions();
+		float[] values = new float[positions.length];
+		for(int i = 0; i < positions.length; i++) {
+			values[i] = (float) positions[i];
+		}
+		put(key, values);
+	}
+
+	public static synchronized void setMemoryBudget(long bytes) {
+		memoryBudget = Math.max(0, bytes);
+		evict();
+	}
+
+	/**
+	 * Spill evicted entries to files in the given directory, or drop them if it is null.
+	 * Files an earlier session left in the directory are deleted.
+	 */
+	public static synchronized void setSpillDirectory(File directory) {
+		for(File file : spilled.values()) {
+			file.delete();
+		}
+		spilled.clear();
+		spillUsed = 0;
+
+		spillDirectory = directory;
+		File[] leftovers = directory != null ? directory.listFiles() : null;
+		if(leftovers != null) {
+			for(File file : leftovers) {
+				String name = file.getName();
+				if(name.startsWith(SPILL_PREFIX) && name.endsWith(SPILL_SUFFIX)) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	public static synchronized void setSpillBudget(long bytes) {
+		spillBudget = Math.max(0, bytes);
+		trimSpilled();
+	}
+
+	public static synchronized void clear() {
+		entries.clear();
+		memoryUsed = 0;
+		setSpillDirectory(null);
+	}
+
+
+	private static void put(Key key, float[] values) {
+		float[] previous = entries.put(key, values);
+		if(previous != null) {
+			memoryUsed -= 4L * previous.length;
+		}
+		memoryUsed += 4L * values.length;
+		evict();
+	}
+
+	// Drop the least recently used entries, or spill them, until the rest fit
+	private static void evict() {
+		Iterator<Map.Entry<Key, float[]>> it = entries.entrySet().iterator();
+		while(memoryUsed > memoryBudget && it.hasNext()) {
+			Map.Entry<Key, float[]> entry = it.next();
+			it.remove();
+			memoryUsed -= 4L * entry.getValue().length;
+			spill(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private static void spill(Key key, float[] values) {
+		if(spillDirectory == null || 4L * values.length > spillBudget) {
+			return;
+		}
+
+		File file = null;
+		try {
+			spillDirectory.mkdirs();
+			file = File.createTempFile(SPILL_PREFIX, SPILL_SUFFIX, spillDirectory);
+			RandomAccessFile out = new RandomAccessFile(file, "rw");
+			try {
+				byte[] header = key.header();
+				ByteBuffer buffer = ByteBuffer.allocateDirect(4 + header.length + 4 * values.length);
+				buffer.putInt(header.length).put(header);
+				buffer.asFloatBuffer().put(values);
+				buffer.rewind();
+				FileChannel channel = out.getChannel();
+				channel.truncate(0);
+				while(buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			if(file != null) {
+				file.delete();
+			}
+			return;
+		}
+
+		File previous = spilled.put(key, file);
+		if(previous != null) {
+			spillUsed -= previous.length();
+			previous.delete();
+		}
+		spillUsed += file.length();
+		trimSpilled();
+	}
+
+	private static float[] unspill(Key key) {
+		File file = spilled.remove(key);
+		if(file == null) {
+			return null;
+		}
+		spillUsed -= file.length();
+
+		try {
+			RandomAccessFile in = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = in.getChannel();
+				ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+				while(buffer.hasRemaining()) {
+					if(channel.read(buffer) < 0) {
+						break;
+					}
+				}
+				buffer.flip();
+
+				// Another key that was written to the same file cannot be taken for this one
+				byte[] expected = key.header();
+				if(buffer.remaining() < 4 || buffer.getInt() != expected.length || buffer.remaining() < expected.length) {
+					return null;
+				}
+				byte[] header = new byte[expected.length];
+				buffer.get(header);
+				if(!Arrays.equals(header, expected)) {
+					return null;
+				}
+
+				float[] values = new float[buffer.remaining() / 4];
+				buffer.asFloatBuffer().get(values);
+				return values;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static void trimSpilled() {
+		Iterator<File> it = spilled.values().iterator();
+		while(spillUsed > spillBudget && it.hasNext()) {
+			File file = it.next();
+			it.remove();
+			spillUsed -= file.length();
+			file.delete();
+		}
+	}
+
+	// The node SUIDs in order, and the edges as an unordered set of SUID pairs
+	private static long topologyHash(LayoutGraph graph) {
+		int n = graph.getNodeCount();
+		int[] offsets = graph.getOffsets();
+		int[] neighbors = graph.getNeighbors();
+
+		long nodeHash = 0, edgeSum = 0, edgeXor = 0;
+		for(int i = 0; i < n; i++) {
+			nodeHash = nodeHash * 31 + graph.getSUID(i);
+			for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+				int j = neighbors[e];
+				if(j > i) {
+					long h = mix(graph.getSUID(i) * 0x9E3779B97F4A7C15L + graph.getSUID(j));
+					edgeSum += h;
+					edgeXor ^= mix(h);
+				}
+			}
+		}
+		return mix(nodeHash) ^ mix(edgeSum + 31 * edgeXor);
+	}
+
+	// The finalizer of SplitMix64, spreads every input bit over the whole result
+	private static long mix(long h) {
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
+
+	/**
+	 * What a cached layout result is for.
+	 */
+	public static class Key {
+		private final long topologyHash;
+		private final int nodeCount;
+		private final int edgeCount;
+		private final String layout;
+		private final String parameters;
+
+		Key(long topologyHash, int nodeCount, int edgeCount, String layout, String parameters) {
+			this.topologyHash = topologyHash;
+			this.nodeCount = nodeCount;
+			this.edgeCount = edgeCount;
+			this.layout = layout;
+			this.parameters = parameters;
+		}
+
+		// The whole key, as it is written at the start of a spill file
+		byte[] header() {
+			byte[] layoutBytes = layout.getBytes(StandardCharsets.UTF_8);
+			byte[] parameterBytes = parameters.getBytes(StandardCharsets.UTF_8);
+			ByteBuffer buffer = ByteBuffer.allocate(24 + layoutBytes.length + parameterBytes.length);
+			buffer.putLong(topologyHash).putInt(nodeCount).putInt(edgeCount);
+			buffer.putInt(layoutBytes.length).put(layoutBytes);
+			buffer.putInt(parameterBytes.length).put(parameterBytes);
+			return buffer.array();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return topologyHash == other.topologyHash && nodeCount == other.nodeCount && edgeCount == other.edgeCount
+					&& layout.equals(other.layout) && parameters.equals(other.parameters);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (topologyHash ^ (topologyHash >>> 32)) * 31 + (layout + parameters).hashCode();
+		}
+	}
+}
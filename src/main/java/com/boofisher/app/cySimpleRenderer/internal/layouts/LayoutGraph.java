@@ -0,0 +1,200 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNetworkView;
+import com.boofisher.app.cySimpleRenderer.internal.tools.NetworkToolkit;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+
+/**
+ * A primitive copy of the part of a network that a layout works on: the nodes with
+ * their positions, and their adjacency in compressed sparse row form.
+ *
+ * Nodes are numbered 0 to n - 1 in order of SUID. The neighbors of node i are
+ * <code>neighbors[offsets[i]]</code> up to but excluding <code>neighbors[offsets[i + 1]]</code>.
+ * Every edge between two nodes of the graph appears in the lists of both its ends,
+ * self loops and edges to nodes outside the graph are left out.
+ *
+ * Layouts move the nodes by changing {@link #getPositions()} and then write all of
+ * them back at once with {@link #applyPositions(CyNetworkView)}, or move them there
+ * gradually with {@link #animatePositions(CyNetworkView, int)}.
+ *
+ * The SUIDs and rows of the last graph copied from each {@link CySRNetworkView} are
+ * kept until its topology version moves on, and a later copy of the same nodes shares
+ * them and only reads the positions again. Things derived from the rows alone, such as
+ * the components, can be cached for as long as a graph shares them.
+ */
+public class LayoutGraph {
+
+	private static final Map<CyNetworkView, LayoutGraph> lastGraphs =
+			Collections.synchronizedMap(new WeakHashMap<CyNetworkView, LayoutGraph>());
+
+	private final long[] suids;
+	private final int[] offsets;
+	private final int[] neighbors;
+	private final double[] positions;
+	private final long topologyVersion;
+
+
+	public LayoutGraph(long[] suids, int[] offsets, int[] neighbors, double[] positions) {
+		this(suids, offsets, neighbors, positions, -1);
+	}
+
+	private LayoutGraph(long[] suids, int[] offsets, int[] neighbors, double[] positions, long topologyVersion) {
+		this.suids = suids;
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.positions = positions;
+		this.topologyVersion = topologyVersion;
+	}
+
+
+	/**
+	 * Copy the given nodes of the network view and the edges between them. The edges are
+	 * only read if the topology or the nodes changed since the last copy.
+	 */
+	public static LayoutGraph create(CyNetworkView networkView, Collection<View<CyNode>> nodeViews) {
+		long[] suids = new long[nodeViews.size()];
+		int n = 0;
+		for (View<CyNode> nodeView : nodeViews) {
+			suids[n++] = nodeView.getModel().getSUID();
+		}
+		Arrays.sort(suids, 0, n);
+		suids = Arrays.copyOf(suids, n);
+
+		double[] positions = new double[n * 3];
+		for (int i = 0; i < n; i++) {
+			View<CyNode> nodeView = NetworkToolkit.getNodeView(networkView, suids[i]);
+			positions[i * 3] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+			positions[i * 3 + 1] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+			positions[i * 3 + 2] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION);
+		}
+
+		long topologyVersion = -1;
+		if (networkView instanceof CySRNetworkView) {
+			topologyVersion = ((CySRNetworkView) networkView).getChangeTracker().getTopologyVersion();
+			LayoutGraph last = lastGraphs.get(networkView);
+			if (last != null && last.topologyVersion == topologyVersion && Arrays.equals(last.suids, suids)) {
+				return new LayoutGraph(last.suids, last.offsets, last.neighbors, positions, topologyVersion);
+			}
+		}
+
+		// First pass finds the ends of every edge and counts degrees, second fills the rows
+		Collection<CyEdge> edges = networkView.getModel().getEdgeList();
+		int[] ends = new int[edges.size() * 2];
+		int[] offsets = new int[n + 1];
+		int edgeCount = 0;
+
+		for (CyEdge edge : edges) {
+			int source = Arrays.binarySearch(suids, edge.getSource().getSUID());
+			int target = Arrays.binarySearch(suids, edge.getTarget().getSUID());
+			if (source < 0 || target < 0 || source == target) {
+				continue;
+			}
+			ends[edgeCount * 2] = source;
+			ends[edgeCount * 2 + 1] = target;
+			offsets[source + 1]++;
+			offsets[target + 1]++;
+			edgeCount++;
+		}
+
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		int[] neighbors = new int[offsets[n]];
+		int[] next = Arrays.copyOf(offsets, n);
+		for (int e = 0; e < edgeCount; e++) {
+			int source = ends[e * 2];
+			int target = ends[e * 2 + 1];
+			neighbors[next[source]++] = target;
+			neighbors[next[target]++] = source;
+		}
+
+		LayoutGraph graph = new LayoutGraph(suids, offsets, neighbors, positions, topologyVersion);
+		if (topologyVersion >= 0) {
+			lastGraphs.put(networkView, graph);
+		}
+		return graph;
+	}
+
+
+	public int getNodeCount() {
+		return suids.length;
+	}
+
+	/**
+	 * The number of edges, each counted once.
+	 */
+	public int getEdgeCount() {
+		return neighbors.length / 2;
+	}
+
+	public long getSUID(int node) {
+		return suids[node];
+	}
+
+	/**
+	 * The SUIDs of all nodes, in ascending order. Not a copy.
+	 */
+	public long[] getSUIDs() {
+		return suids;
+	}
+
+	/**
+	 * The index of the node with the given SUID, or a negative number if it is not in the graph.
+	 */
+	public int indexOf(long suid) {
+		return Arrays.binarySearch(suids, suid);
+	}
+
+	public int getDegree(int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/**
+	 * Row offsets into {@link #getNeighbors()}, one more than there are nodes. Not a copy.
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * The rows of neighbor indices of all nodes, one after the other. Not a copy.
+	 */
+	public int[] getNeighbors() {
+		return neighbors;
+	}
+
+	/**
+	 * The x, y and z location of each node, three values per node. Not a copy, layouts
+	 * change it in place.
+	 */
+	public double[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * Write the positions of all nodes to the network view, as one bulk update.
+	 */
+	public void applyPositions(CyNetworkView networkView) {
+		NetworkToolkit.setNodePositions(networkView, suids, positions);
+	}
+
+	/**
+	 * Move all nodes from where they are in the network view to their positions over the
+	 * given number of frames, see {@link LayoutAnimator}. The positions must not change
+	 * afterwards.
+	 */
+	public void animatePositions(CyNetworkView networkView, int frameCount) {
+		LayoutAnimator.animate(networkView, suids, positions, frameCount);
+	}
+}
@@ -0,0 +1,321 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A multilevel force-directed layout in the style of sfdp and FM3, for graphs too large
+ * for a single {@link ForceDirectedLayout} to untangle.
+ *
+ * The graph is coarsened over and over: each node is matched with its unmatched neighbor
+ * of lowest degree and the pair collapsed into one node, nodes left without a partner join
+ * the group of a neighbor. This stops once the graph is small or hardly shrinks anymore.
+ * The coarsest graph is laid out from scratch, then each finer level starts with every
+ * node at the position of its group, spread out to make room for the extra nodes, and
+ * is refined with a short force-directed run. Each refinement computes its forces in
+ * parallel like the single level layout.
+ *
+ * Works in place on the positions of the given graph.
+ */
+public class MultilevelLayout {
+
+	/** Notified after every iteration of every level, from the thread running the layout. */
+	public interface ProgressListener {
+		void progressChanged(int iterationsDone, int iterationCount);
+	}
+
+	public static final int DEFAULT_REFINE_ITERATIONS = 50;
+
+	// Coarsening stops below this many nodes, or if a level keeps more than COARSENING_LIMIT of the nodes
+	private static final int COARSEST_SIZE = 100;
+	private static final double COARSENING_LIMIT = 0.9;
+	private static final int MAX_LEVELS = 40;
+
+	private final LayoutGraph graph;
+	private final int threadCount;
+
+	private int dimensions = 3;
+	private int iterations = ForceDirectedLayout.DEFAULT_ITERATIONS;
+	private int refineIterations = DEFAULT_REFINE_ITERATIONS;
+	private double edgeLength = ForceDirectedLayout.DEFAULT_EDGE_LENGTH;
+	private double theta = ForceDirectedLayout.DEFAULT_THETA;
+
+	private ProgressListener progressListener;
+	private volatile boolean cancelled = false;
+	private volatile ForceDirectedLayout current;
+
+
+	public MultilevelLayout(LayoutGraph graph, int threadCount) {
+		this.graph = graph;
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+
+	/**
+	 * 2 to lay the nodes out flat with z set to 0, 3 to use all three axes.
+	 */
+	public void setDimensions(int dimensions) {
+		if(dimensions != 2 && dimensions != 3) {
+			throw new IllegalArgumentException("dimensions must be 2 or 3");
+		}
+		this.dimensions = dimensions;
+	}
+
+	/**
+	 * Iterations for laying out the coarsest level.
+	 */
+	public void setIterations(int iterations) {
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Iterations for refining each finer level.
+	 */
+	public void setRefineIterations(int refineIterations) {
+		this.refineIterations = refineIterations;
+	}
+
+	public void setEdgeLength(double edgeLength) {
+		this.edgeLength = edgeLength;
+	}
+
+	public void setTheta(double theta) {
+		this.theta = theta;
+	}
+
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/** Stop after the iteration in progress, leaving the nodes where they got to. */
+	public void cancel() {
+		cancelled = true;
+
+		ForceDirectedLayout layout = current;
+		if(layout != null) {
+			layout.cancel();
+		}
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+
+	/**
+	 * Coarsen, lay out and refine, or stop early when cancelled.
+	 */
+	public void layout() throws InterruptedException {
+		// levels.get(l + 1) is the coarsening of levels.get(l) by groups.get(l)
+		List<LayoutGraph> levels = new ArrayList<LayoutGraph>();
+		List<int[]> groups = new ArrayList<int[]>();
+		levels.add(graph);
+
+		LayoutGraph level = graph;
+		while(level.getNodeCount() > COARSEST_SIZE && levels.size() < MAX_LEVELS && !cancelled) {
+			int[] group = new int[level.getNodeCount()];
+			int groupCount = match(level, group);
+			if(groupCount > level.getNodeCount() * COARSENING_LIMIT) {
+				break;
+			}
+			level = coarsen(level, group, groupCount);
+			levels.add(level);
+			groups.add(group);
+		}
+
+		final int iterationCount = iterations + (levels.size() - 1) * refineIterations;
+		int done = 0;
+
+		for(int l = levels.size() - 1; l >= 0 && !cancelled; l--) {
+			LayoutGraph levelGraph = levels.get(l);
+			boolean coarsest = l == levels.size() - 1;
+
+			if(!coarsest) {
+				prolong(levels.get(l + 1), levelGraph, groups.get(l));
+			}
+
+			ForceDirectedLayout layout = new ForceDirectedLayout(levelGraph, threadCount);
+			layout.setDimensions(dimensions);
+			layout.setEdgeLength(edgeLength);
+			layout.setTheta(theta);
+			layout.setIterations(coarsest ? iterations : refineIterations);
+			if(!coarsest) {
+				layout.setInitialStep(edgeLength);
+			}
+
+			final int levelStart = done;
+			layout.setProgressListener(new ForceDirectedLayout.ProgressListener() {
+				@Override
+				public void progressChanged(int iterationsDone, int levelIterations) {
+					if(progressListener != null) {
+						progressListener.progressChanged(levelStart + iterationsDone, iterationCount);
+					}
+				}
+			});
+
+			current = layout;
+			if(cancelled) {
+				break;
+			}
+			layout.layout();
+			done += coarsest ? iterations : refineIterations;
+		}
+		current = null;
+	}
+
+
+	/**
+	 * Assign every node of the graph to a group of the next coarser level.
+	 *
+	 * @return The number of groups
+	 */
+	static int match(LayoutGraph graph, int[] group) {
+		int n = graph.getNodeCount();
+		int[] offsets = graph.getOffsets();
+		int[] neighbors = graph.getNeighbors();
+
+		// Visit nodes in order of degree, so leaves find partners before hubs take them
+		int maxDegree = 0;
+		for(int i = 0; i < n; i++) {
+			maxDegree = Math.max(maxDegree, graph.getDegree(i));
+		}
+		int[] byDegree = new int[maxDegree + 2];
+		for(int i = 0; i < n; i++) {
+			byDegree[graph.getDegree(i) + 1]++;
+		}
+		for(int d = 0; d <= maxDegree; d++) {
+			byDegree[d + 1] += byDegree[d];
+		}
+		int[] order = new int[n];
+		for(int i = 0; i < n; i++) {
+			order[byDegree[graph.getDegree(i)]++] = i;
+		}
+
+		Arrays.fill(group, -1);
+		int groupCount = 0;
+
+		for(int i : order) {
+			if(group[i] != -1) {
+				continue;
+			}
+			int partner = -1;
+			for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+				int j = neighbors[e];
+				if(group[j] == -1 && (partner == -1 || graph.getDegree(j) < graph.getDegree(partner))) {
+					partner = j;
+				}
+			}
+			if(partner != -1) {
+				group[i] = group[partner] = groupCount++;
+			}
+		}
+
+		// Nodes whose neighbors were all taken join one of them, isolated nodes stay alone
+		for(int i : order) {
+			if(group[i] != -1) {
+				continue;
+			}
+			for(int e = offsets[i]; e < offsets[i + 1] && group[i] == -1; e++) {
+				group[i] = group[neighbors[e]];
+			}
+			if(group[i] == -1) {
+				group[i] = groupCount++;
+			}
+		}
+		return groupCount;
+	}
+
+	/**
+	 * The graph of the groups, with an edge between two groups if any of their nodes
+	 * are adjacent. Each group starts at the average position of its nodes.
+	 */
+	static LayoutGraph coarsen(LayoutGraph graph, int[] group, int groupCount) {
+		int n = graph.getNodeCount();
+		int[] offsets = graph.getOffsets();
+		int[] neighbors = graph.getNeighbors();
+		double[] positions = graph.getPositions();
+
+		// Members of each group, in CSR form
+		int[] memberOffsets = new int[groupCount + 1];
+		for(int i = 0; i < n; i++) {
+			memberOffsets[group[i] + 1]++;
+		}
+		for(int g = 0; g < groupCount; g++) {
+			memberOffsets[g + 1] += memberOffsets[g];
+		}
+		int[] members = new int[n];
+		int[] next = Arrays.copyOf(memberOffsets, groupCount);
+		for(int i = 0; i < n; i++) {
+			members[next[group[i]]++] = i;
+		}
+
+		long[] suids = new long[groupCount];
+		double[] groupPositions = new double[groupCount * 3];
+		int[] groupOffsets = new int[groupCount + 1];
+		int[] groupNeighbors = new int[Math.max(16, neighbors.length / 2)];
+		int[] lastSeen = new int[groupCount];
+		Arrays.fill(lastSeen, -1);
+		int edgeEnds = 0;
+
+		for(int g = 0; g < groupCount; g++) {
+			suids[g] = g;
+			lastSeen[g] = g;
+
+			for(int m = memberOffsets[g]; m < memberOffsets[g + 1]; m++) {
+				int i = members[m];
+				groupPositions[g * 3] += positions[i * 3];
+				groupPositions[g * 3 + 1] += positions[i * 3 + 1];
+				groupPositions[g * 3 + 2] += positions[i * 3 + 2];
+
+				for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+					int h = group[neighbors[e]];
+					if(lastSeen[h] == g) {
+						continue;
+					}
+					lastSeen[h] = g;
+					if(edgeEnds == groupNeighbors.length) {
+						groupNeighbors = Arrays.copyOf(groupNeighbors, groupNeighbors.length * 2);
+					}
+					groupNeighbors[edgeEnds++] = h;
+				}
+			}
+
+			int size = memberOffsets[g + 1] - memberOffsets[g];
+			groupPositions[g * 3] /= size;
+			groupPositions[g * 3 + 1] /= size;
+			groupPositions[g * 3 + 2] /= size;
+			groupOffsets[g + 1] = edgeEnds;
+		}
+
+		return new LayoutGraph(suids, groupOffsets, Arrays.copyOf(groupNeighbors, edgeEnds), groupPositions);
+	}
+
+	/**
+	 * Put every node of the finer graph where its group is, with the coarse layout spread
+	 * out around its center so the finer level has about the same density.
+	 */
+	private void prolong(LayoutGraph coarse, LayoutGraph fine, int[] group) {
+		double[] from = coarse.getPositions();
+		double[] to = fine.getPositions();
+		int coarseCount = coarse.getNodeCount();
+
+		double centerX = 0, centerY = 0, centerZ = 0;
+		for(int g = 0; g < coarseCount; g++) {
+			centerX += from[g * 3];
+			centerY += from[g * 3 + 1];
+			centerZ += from[g * 3 + 2];
+		}
+		centerX /= coarseCount;
+		centerY /= coarseCount;
+		centerZ /= coarseCount;
+
+		double scale = Math.pow((double) fine.getNodeCount() / coarseCount, 1.0 / dimensions);
+		for(int i = 0; i < fine.getNodeCount(); i++) {
+			int g = group[i];
+			to[i * 3] = centerX + (from[g * 3] - centerX) * scale;
+			to[i * 3 + 1] = centerY + (from[g * 3 + 1] - centerY) * scale;
+			to[i * 3 + 2] = centerZ + (from[g * 3 + 2] - centerZ) * scale;
+		}
+	}
+}
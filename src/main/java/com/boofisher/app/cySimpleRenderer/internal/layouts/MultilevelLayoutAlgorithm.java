@@ -0,0 +1,33 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.Set;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.layout.AbstractLayoutAlgorithm;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskIterator;
+import org.cytoscape.work.undo.UndoSupport;
+
+public class MultilevelLayoutAlgorithm extends AbstractLayoutAlgorithm {
+
+	public MultilevelLayoutAlgorithm(UndoSupport undo) {
+		super("multilevelSR", "SR Multilevel Force-Directed Layout", undo);
+	}
+
+	@Override
+	public TaskIterator createTaskIterator(CyNetworkView networkView, Object context, Set<View<CyNode>> nodesToLayOut, String layoutAttribute) {
+		return new TaskIterator(new MultilevelLayoutAlgorithmTask(getName(), networkView, nodesToLayOut, layoutAttribute, undoSupport,
+				(MultilevelLayoutContext) context));
+	}
+
+	@Override
+	public Object createLayoutContext() {
+		return new MultilevelLayoutContext();
+	}
+
+	@Override
+	public boolean getSupportsSelectedOnly() {
+		return true;
+	}
+}
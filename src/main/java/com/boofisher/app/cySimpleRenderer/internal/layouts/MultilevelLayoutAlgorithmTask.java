@@ -0,0 +1,75 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.undo.UndoSupport;
+
+/**
+ * Runs a {@link MultilevelLayout} on a copy of the network and writes the result
+ * back in one bulk update. Nothing is written if the task is cancelled.
+ */
+public class MultilevelLayoutAlgorithmTask extends AbstractPositionLayoutTask {
+
+	private final MultilevelLayoutContext context;
+	private volatile MultilevelLayout layout;
+
+
+	public MultilevelLayoutAlgorithmTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo,
+			MultilevelLayoutContext context) {
+		super(name, networkView, nodesToLayOut, layoutAttribute, undo);
+		this.context = context != null ? context : new MultilevelLayoutContext();
+	}
+
+	@Override
+	protected void doLayout(final TaskMonitor taskMonitor) {
+		taskMonitor.setTitle("Multilevel force-directed layout");
+		taskMonitor.setStatusMessage("Copying network");
+
+		Collection<View<CyNode>> nodeViews = (nodesToLayOut == null || nodesToLayOut.isEmpty())
+				? networkView.getNodeViews() : nodesToLayOut;
+		LayoutGraph graph = LayoutGraph.create(networkView, nodeViews);
+
+		LayoutCache.Key key = LayoutCache.key(graph, getLayoutName(), Math.max(1, context.iterations), Math.max(1, context.refineIterations),
+				Math.max(1, context.edgeLength), Math.max(0, context.theta), context.threeDimensional);
+		layOut(graph, key, context.animate, taskMonitor);
+	}
+
+	@Override
+	protected boolean computePositions(LayoutGraph graph, final TaskMonitor taskMonitor) throws InterruptedException {
+		layout = new MultilevelLayout(graph, Runtime.getRuntime().availableProcessors());
+		layout.setIterations(Math.max(1, context.iterations));
+		layout.setRefineIterations(Math.max(1, context.refineIterations));
+		layout.setEdgeLength(Math.max(1, context.edgeLength));
+		layout.setTheta(Math.max(0, context.theta));
+		layout.setDimensions(context.threeDimensional ? 3 : 2);
+		layout.setProgressListener(new MultilevelLayout.ProgressListener() {
+			@Override
+			public void progressChanged(int iterationsDone, int iterationCount) {
+				taskMonitor.setProgress((double) iterationsDone / iterationCount);
+			}
+		});
+
+		if(cancelled) {
+			return false;
+		}
+
+		taskMonitor.setStatusMessage("Laying out " + graph.getNodeCount() + " nodes and " + graph.getEdgeCount() + " edges");
+		layout.layout();
+		return true;
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+
+		MultilevelLayout current = layout;
+		if(current != null) {
+			current.cancel();
+		}
+	}
+}
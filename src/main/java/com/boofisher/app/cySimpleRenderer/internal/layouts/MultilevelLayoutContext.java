@@ -0,0 +1,27 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import org.cytoscape.work.Tunable;
+
+/**
+ * Settings of the {@link MultilevelLayoutAlgorithm}.
+ */
+public class MultilevelLayoutContext {
+
+	@Tunable(description="Iterations on the coarsest level", gravity="1.0")
+	public int iterations = ForceDirectedLayout.DEFAULT_ITERATIONS;
+
+	@Tunable(description="Iterations on each finer level", gravity="2.0")
+	public int refineIterations = MultilevelLayout.DEFAULT_REFINE_ITERATIONS;
+
+	@Tunable(description="Edge length", gravity="3.0")
+	public double edgeLength = ForceDirectedLayout.DEFAULT_EDGE_LENGTH;
+
+	@Tunable(description="Approximation (0 is exact, higher is faster)", gravity="4.0")
+	public double theta = ForceDirectedLayout.DEFAULT_THETA;
+
+	@Tunable(description="Use all three dimensions", gravity="5.0")
+	public boolean threeDimensional = true;
+
+	@Tunable(description="Animate the nodes into place", gravity="6.0")
+	public boolean animate = true;
+}
@@ -0,0 +1,635 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A deterministic global layout of a {@link LayoutGraph} by pivot MDS, see Brandes and
+ * Pich, "Eigensolver methods for progressive multidimensional scaling of large data" (2006),
+ * optionally refined by sparse stress, see Ortmann, Klimenta and Brandes, "A sparse stress
+ * model" (2016).
+ *
+ * A few pivot nodes are picked far apart from each other, and a breadth-first search from
+ * each finds the hop distance of every node to it. The searches of a round of pivots run
+ * in parallel. Classical MDS of the resulting n by k distance matrix only needs the
+ * eigenvectors of a k by k matrix, and projecting every node onto them takes linear time.
+ * The result is scaled so edges are about the edge length on average.
+ *
+ * Stress refinement then moves every node towards the distances to its neighbors and to
+ * the pivots, each pivot standing in for the nodes of its region. This untangles local
+ * detail that the projection flattens, at O(n k) per iteration.
+ *
+ * Nodes in different components get the largest distance found plus one hop, so the
+ * components end up close but apart. The layout works in place on the positions of
+ * the graph, and makes a good start for a {@link ForceDirectedLayout}.
+ */
+public class PivotMdsLayout {
+
+	/** Notified after every search round and stress iteration, from the thread running the layout. */
+	public interface ProgressListener {
+		void progressChanged(int stepsDone, int stepCount);
+	}
+
+	public static final int DEFAULT_PIVOTS = 50;
+	public static final int DEFAULT_STRESS_ITERATIONS = 20;
+
+	// Node ranges handed to each worker, a few per thread to even out the load
+	private static final int RANGES_PER_THREAD = 4;
+	private static final int MIN_RANGE_SIZE = 1024;
+
+	// Jacobi sweeps over the small eigenproblem, it converges in far fewer
+	private static final int MAX_SWEEPS = 50;
+
+	private final LayoutGraph graph;
+	private final int threadCount;
+
+	private int dimensions = 3;
+	private int pivotCount = DEFAULT_PIVOTS;
+	private int stressIterations = DEFAULT_STRESS_ITERATIONS;
+	private double edgeLength = ForceDirectedLayout.DEFAULT_EDGE_LENGTH;
+
+	private ProgressListener progressListener;
+	private volatile boolean cancelled = false;
+
+	private ExecutorService executor;
+	private int stepsDone;
+	private int stepCount;
+
+	// The pivots, and the hop distance of every node to each of them
+	private int[] pivots;
+	private int[][] distances;
+
+
+	public PivotMdsLayout(LayoutGraph graph, int threadCount) {
+		this.graph = graph;
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+
+	/**
+	 * 2 to lay the nodes out flat with z set to 0, 3 to use all three axes.
+	 */
+	public void setDimensions(int dimensions) {
+		if(dimensions != 2 && dimensions != 3) {
+			throw new IllegalArgumentException("dimensions must be 2 or 3");
+		}
+		this.dimensions = dimensions;
+	}
+
+	/**
+	 * How many nodes to measure distances from. More pivots give a more faithful layout,
+	 * memory and time grow with n times the pivots.
+	 */
+	public void setPivotCount(int pivotCount) {
+		this.pivotCount = pivotCount;
+	}
+
+	/**
+	 * Iterations of sparse stress refinement after the projection, 0 for none.
+	 */
+	public void setStressIterations(int stressIterations) {
+		this.stressIterations = stressIterations;
+	}
+
+	public void setEdgeLength(double edgeLength) {
+		this.edgeLength = edgeLength;
+	}
+
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/** Stop after the step in progress. The positions are left alone unless the projection has finished. */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+
+	/**
+	 * Pick pivots, project and refine, or stop early when cancelled. A graph without
+	 * edges has no distances to lay out and is left as it is.
+	 */
+	public void layout() throws InterruptedException {
+		int n = graph.getNodeCount();
+		if(n <= dimensions || graph.getEdgeCount() == 0) {
+			return;
+		}
+		int k = Math.max(dimensions + 1, Math.min(pivotCount, n));
+		stepsDone = 0;
+		stepCount = k + 1 + stressIterations;
+
+		executor = threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+		try {
+			findDistances(k);
+			if(cancelled) {
+				return;
+			}
+			project();
+			progress();
+
+			if(stressIterations > 0) {
+				refine();
+			}
+		} finally {
+			if(executor != null) {
+				executor.shutdownNow();
+			}
+			executor = null;
+			pivots = null;
+			distances = null;
+		}
+	}
+
+
+	/**
+	 * Pick k pivots by max-min: each round takes the nodes farthest from all pivots so far,
+	 * one per region of the nearest pivot so a round does not bunch up, and searches
+	 * from all of them in parallel.
+	 */
+	private void findDistances(int k) throws InterruptedException {
+		int n = graph.getNodeCount();
+		pivots = new int[k];
+		distances = new int[k][];
+
+		int[] minDistance = new int[n];
+		int[] nearest = new int[n];
+		Arrays.fill(minDistance, Integer.MAX_VALUE);
+		Arrays.fill(nearest, -1);
+
+		// Start at the node of highest degree, so the result does not depend on SUIDs
+		int first = 0;
+		for(int i = 1; i < n; i++) {
+			if(graph.getDegree(i) > graph.getDegree(first)) {
+				first = i;
+			}
+		}
+
+		int found = 0;
+		boolean[] isPivot = new boolean[n];
+		boolean[] regionTaken = new boolean[k];
+
+		while(found < k && !cancelled) {
+			int batch = found == 0 ? 1 : Math.min(threadCount, k - found);
+			List<Search> searches = new ArrayList<Search>();
+			Arrays.fill(regionTaken, false);
+
+			for(int b = 0; b < batch; b++) {
+				int pivot = -1;
+				if(found == 0) {
+					pivot = first;
+				} else {
+					for(int i = 0; i < n; i++) {
+						if(!isPivot[i] && graph.getDegree(i) > 0 && (nearest[i] == -1 || !regionTaken[nearest[i]])
+								&& (pivot == -1 || minDistance[i] > minDistance[pivot])) {
+							pivot = i;
+						}
+					}
+				}
+				if(pivot == -1) {
+					break;
+				}
+				isPivot[pivot] = true;
+				if(nearest[pivot] != -1) {
+					regionTaken[nearest[pivot]] = true;
+				}
+				pivots[found] = pivot;
+				searches.add(new Search(found++));
+			}
+
+			if(searches.isEmpty()) {
+				break;
+			}
+			runAll(searches);
+
+			for(Search search : searches) {
+				int[] d = distances[search.pivot];
+				for(int i = 0; i < n; i++) {
+					if(d[i] >= 0 && d[i] < minDistance[i]) {
+						minDistance[i] = d[i];
+						nearest[i] = search.pivot;
+					}
+				}
+				progress();
+			}
+		}
+
+		// Nodes a pivot cannot reach, isolated ones too, count as one hop further than the farthest reached node
+		int farthest = 0;
+		for(int a = 0; a < found; a++) {
+			for(int d : distances[a]) {
+				farthest = Math.max(farthest, d);
+			}
+		}
+		for(int a = 0; a < found; a++) {
+			int[] d = distances[a];
+			for(int i = 0; i < n; i++) {
+				if(d[i] < 0) {
+					d[i] = farthest + 1;
+				}
+			}
+		}
+
+		if(found < k) {
+			pivots = Arrays.copyOf(pivots, found);
+			distances = Arrays.copyOf(distances, found);
+		}
+	}
+
+	// A breadth-first search from one pivot, unreached nodes are left at -1
+	private class Search implements Callable<Void> {
+		private final int pivot;
+
+		Search(int pivot) {
+			this.pivot = pivot;
+		}
+
+		@Override
+		public Void call() {
+			int n = graph.getNodeCount();
+			int[] offsets = graph.getOffsets();
+			int[] neighbors = graph.getNeighbors();
+
+			int[] d = new int[n];
+			Arrays.fill(d, -1);
+			int[] queue = new int[n];
+			int head = 0, tail = 0;
+
+			int source = pivots[pivot];
+			d[source] = 0;
+			queue[tail++] = source;
+			while(head < tail) {
+				int i = queue[head++];
+				for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+					int j = neighbors[e];
+					if(d[j] == -1) {
+						d[j] = d[i] + 1;
+						queue[tail++] = j;
+					}
+				}
+			}
+			distances[pivot] = d;
+			return null;
+		}
+	}
+
+
+	/**
+	 * Classical MDS of the double centered squared distances C: the top eigenvectors of
+	 * the k by k matrix C<sup>T</sup>C give the axes, each node is its row of C projected
+	 * onto them.
+	 */
+	private void project() throws InterruptedException {
+		final int n = graph.getNodeCount();
+		final int k = pivots.length;
+
+		// Means of the squared distances per pivot, per node and overall
+		final double[] pivotMeans = new double[k];
+		double total = 0;
+		for(int a = 0; a < k; a++) {
+			double sum = 0;
+			for(int d : distances[a]) {
+				sum += (double) d * d;
+			}
+			pivotMeans[a] = sum / n;
+			total += sum;
+		}
+		final double mean = total / ((double) n * k);
+
+		// Products of the columns of C, summed over node ranges in parallel
+		List<Range> ranges = ranges(n);
+		final List<double[]> products = new ArrayList<double[]>();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(final Range range : ranges) {
+			final double[] product = new double[k * k];
+			products.add(product);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					double[] row = new double[k];
+					for(int i = range.from; i < range.to; i++) {
+						centeredRow(i, pivotMeans, mean, row);
+						for(int a = 0; a < k; a++) {
+							double ra = row[a];
+							for(int b = a; b < k; b++) {
+								product[a * k + b] += ra * row[b];
+							}
+						}
+					}
+					return null;
+				}
+			});
+		}
+		runAll(tasks);
+
+		double[] matrix = new double[k * k];
+		for(double[] product : products) {
+			for(int a = 0; a < k; a++) {
+				for(int b = a; b < k; b++) {
+					matrix[a * k + b] += product[a * k + b];
+				}
+			}
+		}
+		for(int a = 0; a < k; a++) {
+			for(int b = 0; b < a; b++) {
+				matrix[a * k + b] = matrix[b * k + a];
+			}
+		}
+
+		final double[] axes = topEigenvectors(matrix, k, dimensions);
+		final double[] positions = graph.getPositions();
+		final double[] center = centroid(positions, n);
+
+		tasks.clear();
+		for(final Range range : ranges) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					double[] row = new double[k];
+					for(int i = range.from; i < range.to; i++) {
+						centeredRow(i, pivotMeans, mean, row);
+						for(int d = 0; d < 3; d++) {
+							double x = 0;
+							if(d < dimensions) {
+								for(int a = 0; a < k; a++) {
+									x += row[a] * axes[d * k + a];
+								}
+							}
+							positions[i * 3 + d] = x;
+						}
+					}
+					return null;
+				}
+			});
+		}
+		runAll(tasks);
+
+		// Scale so the average edge has the edge length, and put the layout where the nodes were
+		int[] offsets = graph.getOffsets();
+		int[] neighbors = graph.getNeighbors();
+		double length = 0;
+		for(int i = 0; i < n; i++) {
+			for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+				length += distance(positions, i, neighbors[e]);
+			}
+		}
+		length /= neighbors.length;
+		double scale = length > 0 ? edgeLength / length : edgeLength;
+
+		for(int i = 0; i < n; i++) {
+			for(int d = 0; d < dimensions; d++) {
+				positions[i * 3 + d] = center[d] + positions[i * 3 + d] * scale;
+			}
+		}
+	}
+
+	// Row i of -1/2 J D J, where D holds the squared distances to the pivots
+	private void centeredRow(int i, double[] pivotMeans, double mean, double[] row) {
+		int k = pivots.length;
+		double rowMean = 0;
+		for(int a = 0; a < k; a++) {
+			double d = distances[a][i];
+			row[a] = d * d;
+			rowMean += row[a];
+		}
+		rowMean /= k;
+		for(int a = 0; a < k; a++) {
+			row[a] = -0.5 * (row[a] - rowMean - pivotMeans[a] + mean);
+		}
+	}
+
+	/**
+	 * The eigenvectors of the largest eigenvalues of a small symmetric matrix, by cyclic
+	 * Jacobi rotations. Returns them one after the other, k values each.
+	 */
+	static double[] topEigenvectors(double[] matrix, int k, int count) {
+		double[] a = matrix.clone();
+		double[] v = new double[k * k];
+		for(int i = 0; i < k; i++) {
+			v[i * k + i] = 1;
+		}
+
+		for(int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+			double off = 0, diagonal = 0;
+			for(int p = 0; p < k; p++) {
+				diagonal += a[p * k + p] * a[p * k + p];
+				for(int q = p + 1; q < k; q++) {
+					off += a[p * k + q] * a[p * k + q];
+				}
+			}
+			if(off <= 1e-22 * diagonal) {
+				break;
+			}
+
+			for(int p = 0; p < k; p++) {
+				for(int q = p + 1; q < k; q++) {
+					double apq = a[p * k + q];
+					if(apq == 0) {
+						continue;
+					}
+					double tau = (a[q * k + q] - a[p * k + p]) / (2 * apq);
+					double t = Math.signum(tau) / (Math.abs(tau) + Math.sqrt(1 + tau * tau));
+					if(tau == 0) {
+						t = 1;
+					}
+					double c = 1 / Math.sqrt(1 + t * t);
+					double s = t * c;
+
+					for(int r = 0; r < k; r++) {
+						double arp = a[r * k + p], arq = a[r * k + q];
+						a[r * k + p] = c * arp - s * arq;
+						a[r * k + q] = s * arp + c * arq;
+					}
+					for(int r = 0; r < k; r++) {
+						double apr = a[p * k + r], aqr = a[q * k + r];
+						a[p * k + r] = c * apr - s * aqr;
+						a[q * k + r] = s * apr + c * aqr;
+					}
+					for(int r = 0; r < k; r++) {
+						double vrp = v[r * k + p], vrq = v[r * k + q];
+						v[r * k + p] = c * vrp - s * vrq;
+						v[r * k + q] = s * vrp + c * vrq;
+					}
+				}
+			}
+		}
+
+		// Columns of v are the eigenvectors, pick those of the largest diagonal entries
+		double[] result = new double[count * k];
+		boolean[] used = new boolean[k];
+		for(int d = 0; d < count; d++) {
+			int best = -1;
+			for(int p = 0; p < k; p++) {
+				if(!used[p] && (best == -1 || a[p * k + p] > a[best * k + best])) {
+					best = p;
+				}
+			}
+			used[best] = true;
+			for(int r = 0; r < k; r++) {
+				result[d * k + r] = v[r * k + best];
+			}
+		}
+		return result;
+	}
+
+
+	/**
+	 * Sparse stress majorization. Every node is pulled to the edge length from its
+	 * neighbors and to its hop distance times the edge length from each pivot. A pivot
+	 * stands in for the nodes of its region that are closer to it than half the distance
+	 * to the node, so its term is weighted by their number.
+	 */
+	private void refine() throws InterruptedException {
+		final int n = graph.getNodeCount();
+		final int k = pivots.length;
+
+		// Region of each node, and for each pivot how many of its region lie within each distance
+		int[] region = new int[n];
+		int farthest = 0;
+		for(int i = 0; i < n; i++) {
+			int best = 0;
+			for(int a = 1; a < k; a++) {
+				if(distances[a][i] < distances[best][i]) {
+					best = a;
+				}
+			}
+			region[i] = best;
+			farthest = Math.max(farthest, distances[best][i]);
+		}
+		final int[][] within = new int[k][farthest + 1];
+		for(int i = 0; i < n; i++) {
+			within[region[i]][distances[region[i]][i]]++;
+		}
+		for(int a = 0; a < k; a++) {
+			for(int h = 1; h <= farthest; h++) {
+				within[a][h] += within[a][h - 1];
+			}
+		}
+
+		final int[] offsets = graph.getOffsets();
+		final int[] neighbors = graph.getNeighbors();
+		final double[] positions = graph.getPositions();
+		final double[] next = new double[n * 3];
+		final double neighborWeight = 1 / (edgeLength * edgeLength);
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(final Range range : ranges(n)) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for(int i = range.from; i < range.to; i++) {
+						double sx = 0, sy = 0, sz = 0, weights = 0;
+
+						for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+							int j = neighbors[e];
+							double scale = neighborWeight * edgeLength / Math.max(distance(positions, i, j), 1e-9);
+							sx += neighborWeight * positions[j * 3] + scale * (positions[i * 3] - positions[j * 3]);
+							sy += neighborWeight * positions[j * 3 + 1] + scale * (positions[i * 3 + 1] - positions[j * 3 + 1]);
+							sz += neighborWeight * positions[j * 3 + 2] + scale * (positions[i * 3 + 2] - positions[j * 3 + 2]);
+							weights += neighborWeight;
+						}
+
+						for(int a = 0; a < k; a++) {
+							int hops = distances[a][i];
+							int j = pivots[a];
+							if(hops == 0) {
+								continue;
+							}
+							int[] counts = within[a];
+							double weight = Math.max(1, counts[Math.min(hops / 2, counts.length - 1)]) / (hops * hops * edgeLength * edgeLength);
+							double target = hops * edgeLength;
+							double scale = weight * target / Math.max(distance(positions, i, j), 1e-9);
+							sx += weight * positions[j * 3] + scale * (positions[i * 3] - positions[j * 3]);
+							sy += weight * positions[j * 3 + 1] + scale * (positions[i * 3 + 1] - positions[j * 3 + 1]);
+							sz += weight * positions[j * 3 + 2] + scale * (positions[i * 3 + 2] - positions[j * 3 + 2]);
+							weights += weight;
+						}
+
+						next[i * 3] = sx / weights;
+						next[i * 3 + 1] = sy / weights;
+						next[i * 3 + 2] = dimensions == 2 ? positions[i * 3 + 2] : sz / weights;
+					}
+					return null;
+				}
+			});
+		}
+
+		for(int iteration = 0; iteration < stressIterations && !cancelled; iteration++) {
+			runAll(tasks);
+			System.arraycopy(next, 0, positions, 0, n * 3);
+			progress();
+		}
+	}
+
+
+	private static class Range {
+		final int from, to;
+
+		Range(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	private List<Range> ranges(int n) {
+		List<Range> ranges = new ArrayList<Range>();
+		int size = Math.max(MIN_RANGE_SIZE, (n + threadCount * RANGES_PER_THREAD - 1) / (threadCount * RANGES_PER_THREAD));
+		for(int from = 0; from < n; from += size) {
+			ranges.add(new Range(from, Math.min(n, from + size)));
+		}
+		return ranges;
+	}
+
+	private void runAll(List<? extends Callable<Void>> tasks) throws InterruptedException {
+		if(executor != null && tasks.size() > 1) {
+			for(Future<Void> future : executor.invokeAll(tasks)) {
+				ForceDirectedLayout.rethrow(future);
+			}
+		} else {
+			for(Callable<Void> task : tasks) {
+				try {
+					task.call();
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+
+	private void progress() {
+		stepsDone++;
+		if(progressListener != null) {
+			progressListener.progressChanged(stepsDone, stepCount);
+		}
+	}
+
+	private static double distance(double[] positions, int i, int j) {
+		double dx = positions[i * 3] - positions[j * 3];
+		double dy = positions[i * 3 + 1] - positions[j * 3 + 1];
+		double dz = positions[i * 3 + 2] - positions[j * 3 + 2];
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	private static double[] centroid(double[] positions, int n) {
+		double[] center = new double[3];
+		for(int i = 0; i < n; i++) {
+			center[0] += positions[i * 3];
+			center[1] += positions[i * 3 + 1];
+			center[2] += positions[i * 3 + 2];
+		}
+		center[0] /= n;
+		center[1] /= n;
+		center[2] /= n;
+		return center;
+	}
+}
@@ -0,0 +1,74 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.undo.UndoSupport;
+
+/**
+ * Runs a {@link PivotMdsLayout} on a copy of the network and writes the result
+ * back in one bulk update. Nothing is written if the task is cancelled.
+ */
+public class PivotMdsLayoutAlgorithmTask extends AbstractPositionLayoutTask {
+
+	private final PivotMdsLayoutContext context;
+	private volatile PivotMdsLayout layout;
+
+
+	public PivotMdsLayoutAlgorithmTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo,
+			PivotMdsLayoutContext context) {
+		super(name, networkView, nodesToLayOut, layoutAttribute, undo);
+		this.context = context != null ? context : new PivotMdsLayoutContext();
+	}
+
+	@Override
+	protected void doLayout(final TaskMonitor taskMonitor) {
+		taskMonitor.setTitle("Pivot MDS layout");
+		taskMonitor.setStatusMessage("Copying network");
+
+		Collection<View<CyNode>> nodeViews = (nodesToLayOut == null || nodesToLayOut.isEmpty())
+				? networkView.getNodeViews() : nodesToLayOut;
+		LayoutGraph graph = LayoutGraph.create(networkView, nodeViews);
+
+		LayoutCache.Key key = LayoutCache.key(graph, getLayoutName(), Math.max(1, context.pivots), Math.max(0, context.stressIterations),
+				Math.max(1, context.edgeLength), context.threeDimensional);
+		layOut(graph, key, context.animate, taskMonitor);
+	}
+
+	@Override
+	protected boolean computePositions(LayoutGraph graph, final TaskMonitor taskMonitor) throws InterruptedException {
+		layout = new PivotMdsLayout(graph, Runtime.getRuntime().availableProcessors());
+		layout.setPivotCount(Math.max(1, context.pivots));
+		layout.setStressIterations(Math.max(0, context.stressIterations));
+		layout.setEdgeLength(Math.max(1, context.edgeLength));
+		layout.setDimensions(context.threeDimensional ? 3 : 2);
+		layout.setProgressListener(new PivotMdsLayout.ProgressListener() {
+			@Override
+			public void progressChanged(int stepsDone, int stepCount) {
+				taskMonitor.setProgress((double) stepsDone / stepCount);
+			}
+		});
+
+		if(cancelled) {
+			return false;
+		}
+
+		taskMonitor.setStatusMessage("Laying out " + graph.getNodeCount() + " nodes and " + graph.getEdgeCount() + " edges");
+		layout.layout();
+		return true;
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+
+		PivotMdsLayout current = layout;
+		if(current != null) {
+			current.cancel();
+		}
+	}
+}
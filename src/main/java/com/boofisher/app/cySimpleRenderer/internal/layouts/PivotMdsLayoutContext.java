@@ -0,0 +1,24 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import org.cytoscape.work.Tunable;
+
+/**
+ * Settings of the {@link PivotMdsLayoutAlgorithm}.
+ */
+public class PivotMdsLayoutContext {
+
+	@Tunable(description="Number of pivots", gravity="1.0")
+	public int pivots = PivotMdsLayout.DEFAULT_PIVOTS;
+
+	@Tunable(description="Stress refinement iterations (0 for none)", gravity="2.0")
+	public int stressIterations = PivotMdsLayout.DEFAULT_STRESS_ITERATIONS;
+
+	@Tunable(description="Edge length", gravity="3.0")
+	public double edgeLength = ForceDirectedLayout.DEFAULT_EDGE_LENGTH;
+
+	@Tunable(description="Use all three dimensions", gravity="4.0")
+	public boolean threeDimensional = true;
+
+	@Tunable(description="Animate the nodes into place", gravity="5.0")
+	public boolean animate = true;
+}
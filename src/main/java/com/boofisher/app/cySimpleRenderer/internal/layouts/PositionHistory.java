@@ -0,0 +1,385 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.boofisher.app.cySimpleRenderer.internal.tools.NetworkToolkit;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.undo.AbstractCyEdit;
+import org.cytoscape.work.undo.UndoSupport;
+
+/**
+ * Node positions before and after each layout of a network view, kept compactly so
+ * layouts of large networks can be undone without per-view edits.
+ *
+ * A snapshot holds the positions of a set of nodes as floats. It is either complete, or
+ * only holds the nodes that moved since an earlier snapshot of the same nodes, its base.
+ * The positions before a layout are usually where the previous layout left them, so
+ * that snapshot is mostly empty, and a layout that moves only some nodes stores only
+ * those. A snapshot is made complete when the delta would not be smaller, or when the
+ * chain of bases gets long. If all stored nodes share one z, z is kept once. A snapshot
+ * taken by {@link #record} is complete, it is only made a delta when its edit is posted,
+ * so forgetting old edits in the meantime cannot take away its base.
+ *
+ * The budget is per view, each view may keep that many bytes of snapshots, so the total
+ * grows with the number of views that were laid out. It is set from the
+ * {@value #MEMORY_BUDGET_PROPERTY} system property, in megabytes, when the app starts.
+ * When posting an edit takes the history over it, the oldest edits are forgotten and can no longer be undone, but the
+ * latest edit is always kept. Undoing and redoing write only the nodes that differ, in
+ * one bulk update.
+ */
+public class PositionHistory {
+
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+	public static final String MEMORY_BUDGET_PROPERTY = "cySimpleRenderer.undoMemoryMB";
+
+	// After this many deltas in a row the next snapshot is complete, so restoring stays fast
+	private static final int MAX_CHAIN = 8;
+
+	private static final Map<CyNetworkView, PositionHistory> histories =
+			Collections.synchronizedMap(new WeakHashMap<CyNetworkView, PositionHistory>());
+
+	private static volatile long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+	// Snapshots of posted edits, oldest first
+	private final List<Snapshot> snapshots = new ArrayList<Snapshot>();
+	private long memoryUsed = 0;
+
+
+	// Does not keep the view, the history would otherwise keep its own key in the weak map
+	private PositionHistory() {
+	}
+
+
+	/**
+	 * The history of the given network view, created on first use.
+	 */
+	public static PositionHistory get(CyNetworkView networkView) {
+		synchronized(histories) {
+			PositionHistory history = histories.get(networkView);
+			if(history == null) {
+				history = new PositionHistory();
+				histories.put(networkView, history);
+			}
+			return history;
+		}
+	}
+
+	/**
+	 * How many bytes of snapshots each network view may keep.
+	 */
+	public static void setMemoryBudget(long bytes) {
+		memoryBudget = Math.max(0, bytes);
+	}
+
+	public static long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	public synchronized long getMemoryUsed() {
+		return memoryUsed;
+	}
+
+
+	/**
+	 * Take a complete snapshot of the given positions, three values per SUID, for example
+	 * of a {@link LayoutGraph} before it is laid out. The positions are copied, the SUIDs
+	 * must not be changed afterwards. It only becomes part of the history once an edit
+	 * is posted with it.
+	 */
+	public Snapshot record(long[] suids, double[] positions) {
+		return Snapshot.create(suids, toFloats(positions), null);
+	}
+
+	/**
+	 * Post an edit that moves the nodes of the given snapshot back there, and forward to
+	 * the given positions again. The positions are copied as they are now. The edit keeps
+	 * the view, the history does not.
+	 */
+	public void postEdit(UndoSupport undo, CyNetworkView networkView, String name, Snapshot recorded, long[] suids, double[] positions) {
+		if(undo == null) {
+			return;
+		}
+
+		Snapshot before, after;
+		synchronized(this) {
+			Snapshot latest = snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+			before = Snapshot.create(recorded.suids, recorded.decode(), latest);
+			after = Snapshot.create(suids, toFloats(positions), before);
+			add(before);
+			add(after);
+			evict();
+		}
+		undo.postEdit(new LayoutPositionEdit(networkView, name, before, after));
+	}
+
+	private static float[] toFloats(double[] positions) {
+		float[] values = new float[positions.length];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = (float) positions[i];
+		}
+		return values;
+	}
+
+
+	private void add(Snapshot snapshot) {
+		if(!snapshots.contains(snapshot)) {
+			snapshots.add(snapshot);
+			memoryUsed += snapshot.size();
+		}
+	}
+
+	// Forget the oldest snapshots until the rest fit, keeping at least those of the latest edit
+	private void evict() {
+		while(memoryUsed > memoryBudget && snapshots.size() > 2) {
+			Snapshot oldest = snapshots.remove(0);
+			memoryUsed -= oldest.size();
+			boolean handOver = oldest.ownsSuids;
+			for(Snapshot snapshot : snapshots) {
+				if(snapshot.base == oldest || (handOver && snapshot.suids == oldest.suids)) {
+					memoryUsed -= snapshot.size();
+					if(snapshot.base == oldest) {
+						snapshot.makeComplete();
+					}
+					if(handOver && snapshot.suids == oldest.suids) {
+						snapshot.ownsSuids = true;
+						handOver = false;
+					}
+					memoryUsed += snapshot.size();
+				}
+			}
+			oldest.forget();
+		}
+	}
+
+	// Write the nodes that differ between the two snapshots at the positions of the target
+	private void restore(CyNetworkView networkView, Snapshot from, Snapshot to) {
+		long[] suids;
+		double[] positions;
+		synchronized(this) {
+			float[] values = to.decode();
+			if(values == null) {
+				return;
+			}
+
+			int[] changed = null;
+			if(to.suids == from.suids) {
+				if(from.base == to) {
+					changed = from.changed;
+				} else if(to.base == from) {
+					changed = to.changed;
+				}
+			}
+
+			if(changed == null) {
+				suids = to.suids;
+				positions = new double[values.length];
+				for(int i = 0; i < values.length; i++) {
+					positions[i] = values[i];
+				}
+			} else {
+				suids = new long[changed.length];
+				positions = new double[changed.length * 3];
+				for(int k = 0; k < changed.length; k++) {
+					int i = changed[k];
+					suids[k] = to.suids[i];
+					positions[k * 3] = values[i * 3];
+					positions[k * 3 + 1] = values[i * 3 + 1];
+					positions[k * 3 + 2] = values[i * 3 + 2];
+				}
+			}
+		}
+
+		LayoutAnimator.finish(networkView);
+		NetworkToolkit.setNodePositions(networkView, suids, positions);
+		networkView.updateView();
+	}
+
+
+	/**
+	 * The positions of a set of nodes at one moment, complete or as a delta to its base.
+	 */
+	public static class Snapshot {
+
+		private final long[] suids;
+		private boolean ownsSuids;
+		private Snapshot base;
+
+		// Indices of the nodes stored in a delta, null if the snapshot is complete
+		private int[] changed;
+
+		// x and y of every stored node, and z too unless the snapshot is flat
+		private float[] values;
+		private boolean flat;
+		private float z;
+
+		private int chain;
+		private boolean forgotten = false;
+
+
+		private Snapshot(long[] suids, boolean ownsSuids) {
+			this.suids = suids;
+			this.ownsSuids = ownsSuids;
+		}
+
+
+		// A complete snapshot without a base, otherwise a delta to the base if that pays off
+		static Snapshot create(long[] suids, float[] current, Snapshot base) {
+			int n = suids.length;
+
+			if(base == null) {
+				Snapshot snapshot = new Snapshot(suids, true);
+				snapshot.store(current, null);
+				return snapshot;
+			}
+
+			boolean sameNodes = base.suids == suids || Arrays.equals(base.suids, suids);
+			float[] previous = sameNodes && base.chain < MAX_CHAIN ? base.decode() : null;
+
+			if(previous == null) {
+				Snapshot snapshot = sameNodes ? new Snapshot(base.suids, false) : new Snapshot(suids.clone(), true);
+				snapshot.store(current, null);
+				return snapshot;
+			}
+
+			int changedCount = 0;
+			for(int i = 0; i < n; i++) {
+				if(differs(current, previous, i)) {
+					changedCount++;
+				}
+			}
+
+			// A delta stores an index with each node, it only pays off while fewer than about two thirds moved
+			Snapshot snapshot = new Snapshot(base.suids, false);
+			if(changedCount * 3L >= n * 2L) {
+				snapshot.store(current, null);
+				return snapshot;
+			}
+
+			int[] changed = new int[changedCount];
+			changedCount = 0;
+			for(int i = 0; i < n; i++) {
+				if(differs(current, previous, i)) {
+					changed[changedCount++] = i;
+				}
+			}
+			snapshot.base = base;
+			snapshot.chain = base.chain + 1;
+			snapshot.store(current, changed);
+			return snapshot;
+		}
+
+		private static boolean differs(float[] a, float[] b, int i) {
+			return a[i * 3] != b[i * 3] || a[i * 3 + 1] != b[i * 3 + 1] || a[i * 3 + 2] != b[i * 3 + 2];
+		}
+
+		// Pack the given nodes of the full array, or all of them
+		private void store(float[] all, int[] nodes) {
+			int count = nodes == null ? suids.length : nodes.length;
+			changed = nodes;
+
+			flat = true;
+			z = count > 0 ? all[(nodes == null ? 0 : nodes[0]) * 3 + 2] : 0;
+			for(int k = 0; k < count && flat; k++) {
+				flat = all[(nodes == null ? k : nodes[k]) * 3 + 2] == z;
+			}
+
+			int stride = flat ? 2 : 3;
+			values = new float[count * stride];
+			for(int k = 0; k < count; k++) {
+				int i = nodes == null ? k : nodes[k];
+				values[k * stride] = all[i * 3];
+				values[k * stride + 1] = all[i * 3 + 1];
+				if(!flat) {
+					values[k * stride + 2] = all[i * 3 + 2];
+				}
+			}
+		}
+
+		/**
+		 * All positions, three values per node, or null if the snapshot was forgotten.
+		 */
+		float[] decode() {
+			if(forgotten) {
+				return null;
+			}
+
+			float[] all;
+			if(changed == null) {
+				all = new float[suids.length * 3];
+			} else {
+				all = base.decode();
+				if(all == null) {
+					return null;
+				}
+			}
+
+			int stride = flat ? 2 : 3;
+			int count = changed == null ? suids.length : changed.length;
+			for(int k = 0; k < count; k++) {
+				int i = changed == null ? k : changed[k];
+				all[i * 3] = values[k * stride];
+				all[i * 3 + 1] = values[k * stride + 1];
+				all[i * 3 + 2] = flat ? z : values[k * stride + 2];
+			}
+			return all;
+		}
+
+		void makeComplete() {
+			float[] all = decode();
+			if(all != null) {
+				base = null;
+				chain = 0;
+				store(all, null);
+			}
+		}
+
+		void forget() {
+			forgotten = true;
+			base = null;
+			changed = null;
+			values = null;
+		}
+
+		// Bytes held, SUIDs shared between snapshots are counted by the oldest one only
+		long size() {
+			long size = values == null ? 0 : 4L * values.length;
+			if(changed != null) {
+				size += 4L * changed.length;
+			}
+			if(ownsSuids) {
+				size += 8L * suids.length;
+			}
+			return size;
+		}
+	}
+
+
+	private class LayoutPositionEdit extends AbstractCyEdit {
+
+		private final CyNetworkView networkView;
+		private final Snapshot before;
+		private final Snapshot after;
+
+		LayoutPositionEdit(CyNetworkView networkView, String name, Snapshot before, Snapshot after) {
+			super(name);
+			this.networkView = networkView;
+			this.before = before;
+			this.after = after;
+		}
+
+		@Override
+		public void undo() {
+			restore(networkView, after, before);
+		}
+
+		@Override
+		public void redo() {
+			restore(networkView, before, after);
+		}
+	}
+}
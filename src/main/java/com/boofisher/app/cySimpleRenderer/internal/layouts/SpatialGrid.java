@@ -0,0 +1,159 @@
+package com.boofisher.app.cySimpleRenderer.internal.layouts;
+
+/**
+ * A uniform grid over some of the nodes of a graph, for finding the nodes near a point
+ * without looking at all of them.
+ *
+ * Building the grid sorts the given nodes into cells with a counting sort, so every cell
+ * is a contiguous range of one array. The cells cover the bounding box of the nodes, if
+ * that would take far more cells than there are nodes the cells are made larger instead.
+ *
+ * Once built the grid is only read.
+ */
+class SpatialGrid {
+
+	// Below this squared distance two nodes are treated as this far apart
+	private static final double MIN_DISTANCE_SQUARED = 1e-4;
+
+	private final int dimensions;
+
+	private double cellSize;
+	private double minX, minY, minZ;
+	private int cellsX, cellsY, cellsZ;
+
+	// The nodes of cell c are cellNodes[cellStart[c]] up to cellNodes[cellStart[c + 1]]
+	private int[] cellStart = new int[1];
+	private int[] cellNodes = new int[0];
+
+
+	/**
+	 * @param dimensions 2 for a grid that ignores z, 3 for one that does not
+	 */
+	SpatialGrid(int dimensions) {
+		this.dimensions = dimensions;
+	}
+
+
+	/**
+	 * Sort the first <code>count</code> of the given nodes into cells of at least the given size.
+	 */
+	void build(double[] positions, int[] nodes, int count, double minCellSize) {
+		cellStart = new int[1];
+		cellNodes = new int[count];
+		cellsX = cellsY = cellsZ = 1;
+		cellSize = minCellSize;
+		if(count == 0) {
+			return;
+		}
+
+		double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+		minX = minY = minZ = Double.POSITIVE_INFINITY;
+		for(int k = 0; k < count; k++) {
+			int i = nodes[k];
+			minX = Math.min(minX, positions[i * 3]);
+			maxX = Math.max(maxX, positions[i * 3]);
+			minY = Math.min(minY, positions[i * 3 + 1]);
+			maxY = Math.max(maxY, positions[i * 3 + 1]);
+			minZ = Math.min(minZ, positions[i * 3 + 2]);
+			maxZ = Math.max(maxZ, positions[i * 3 + 2]);
+		}
+		if(dimensions == 2) {
+			minZ = maxZ = 0;
+		}
+
+		// At most a few cells per node, so a sparse spread does not make a huge grid
+		long maxCells = Math.max(64, 4L * count);
+		while(true) {
+			cellsX = (int) Math.min(Integer.MAX_VALUE, (long) ((maxX - minX) / cellSize) + 1);
+			cellsY = (int) Math.min(Integer.MAX_VALUE, (long) ((maxY - minY) / cellSize) + 1);
+			cellsZ = (int) Math.min(Integer.MAX_VALUE, (long) ((maxZ - minZ) / cellSize) + 1);
+			if((double) cellsX * cellsY * cellsZ <= maxCells) {
+				break;
+			}
+			cellSize *= 2;
+		}
+
+		int cellCount = cellsX * cellsY * cellsZ;
+		cellStart = new int[cellCount + 1];
+		int[] cells = new int[count];
+		for(int k = 0; k < count; k++) {
+			int i = nodes[k];
+			cells[k] = cell(cellX(positions[i * 3]), cellY(positions[i * 3 + 1]), cellZ(positions[i * 3 + 2]));
+			cellStart[cells[k] + 1]++;
+		}
+		for(int c = 0; c < cellCount; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		int[] next = new int[cellCount];
+		System.arraycopy(cellStart, 0, next, 0, cellCount);
+		for(int k = 0; k < count; k++) {
+			cellNodes[next[cells[k]]++] = nodes[k];
+		}
+	}
+
+	/**
+	 * Add the repulsion on node i from every node of the grid closer than the cutoff
+	 * to <code>force[i * 3]</code> and on. Each pushes with <code>strength / distance</code>.
+	 */
+	void addRepulsion(int i, double[] positions, double strength, double cutoff, double[] force) {
+		double x = positions[i * 3], y = positions[i * 3 + 1], z = dimensions == 2 ? 0 : positions[i * 3 + 2];
+		int reach = (int) Math.ceil(cutoff / cellSize);
+		double cutoffSquared = cutoff * cutoff;
+
+		int fromX = Math.max(0, cellX(x) - reach), toX = Math.min(cellsX - 1, cellX(x) + reach);
+		int fromY = Math.max(0, cellY(y) - reach), toY = Math.min(cellsY - 1, cellY(y) + reach);
+		int fromZ = Math.max(0, cellZ(z) - reach), toZ = Math.min(cellsZ - 1, cellZ(z) + reach);
+
+		double fx = 0, fy = 0, fz = 0;
+		for(int cz = fromZ; cz <= toZ; cz++) {
+			for(int cy = fromY; cy <= toY; cy++) {
+				for(int cx = fromX; cx <= toX; cx++) {
+					int c = cell(cx, cy, cz);
+					for(int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+						int j = cellNodes[k];
+						if(j == i) {
+							continue;
+						}
+						double dx = x - positions[j * 3];
+						double dy = y - positions[j * 3 + 1];
+						double dz = dimensions == 2 ? 0 : z - positions[j * 3 + 2];
+						double d2 = dx * dx + dy * dy + dz * dz;
+						if(d2 >= cutoffSquared) {
+							continue;
+						}
+						double f = strength / Math.max(d2, MIN_DISTANCE_SQUARED);
+						fx += dx * f;
+						fy += dy * f;
+						fz += dz * f;
+					}
+				}
+			}
+		}
+
+		force[i * 3] += fx;
+		force[i * 3 + 1] += fy;
+		force[i * 3 + 2] += fz;
+	}
+
+
+	// Cell coordinates of a position, positions outside the grid go to the cells at its border
+	private int cellX(double x) {
+		return clamp((x - minX) / cellSize, cellsX);
+	}
+
+	private int cellY(double y) {
+		return clamp((y - minY) / cellSize, cellsY);
+	}
+
+	private int cellZ(double z) {
+		return dimensions == 2 ? 0 : clamp((z - minZ) / cellSize, cellsZ);
+	}
+
+	private static int clamp(double cell, int cells) {
+		return (int) Math.max(0, Math.min(cells - 1, Math.floor(cell)));
+	}
+
+	private int cell(int x, int y, int z) {
+		return (z * cellsY + y) * cellsX + x;
+	}
+}
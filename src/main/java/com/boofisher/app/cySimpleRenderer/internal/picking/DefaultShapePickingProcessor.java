@@ -1,28 +1,21 @@
 package com.boofisher.app.cySimpleRenderer.internal.picking;
 
-import java.awt.Point;
-import java.awt.Shape;
 import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.cytoscape.application.CyUserLog;
-import org.cytoscape.model.CyEdge;
-import org.cytoscape.model.CyNode;
-import org.cytoscape.view.model.CyNetworkView;
-import org.cytoscape.view.model.View;
-import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 
+import com.boofisher.app.cySimpleRenderer.internal.data.Camera;
 import com.boofisher.app.cySimpleRenderer.internal.data.GraphicsData;
 import com.boofisher.app.cySimpleRenderer.internal.data.GraphicsSelectionData;
 import com.boofisher.app.cySimpleRenderer.internal.data.PickingData;
 import com.boofisher.app.cySimpleRenderer.internal.picking.ShapePickingProcessor;
 import com.boofisher.app.cySimpleRenderer.internal.rendering.GraphicsProcedure;
-import com.boofisher.app.cySimpleRenderer.internal.rendering.RenderNetwork;
-import com.boofisher.app.cySimpleRenderer.internal.tools.NetworkToolkit;
-import com.boofisher.app.cySimpleRenderer.internal.tools.PairIdentifier;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SceneSnapshot;
+import com.boofisher.app.cySimpleRenderer.internal.rendering.SpatialGridIndex;
 
 public class DefaultShapePickingProcessor implements ShapePickingProcessor {
 
@@ -49,6 +42,8 @@ public class DefaultShapePickingProcessor implements ShapePickingProcessor {
 	private GraphicsProcedure drawNodesProcedure;
 	private GraphicsProcedure drawEdgesProcedure;
 	
+	private SpatialGridIndex.Query query;
+	
 	public DefaultShapePickingProcessor(GraphicsProcedure drawNodesProcedure, GraphicsProcedure drawEdgesProcedure) {
 		this.drawNodesProcedure = drawNodesProcedure;
 		this.drawEdgesProcedure = drawEdgesProcedure;
@@ -101,19 +96,26 @@ public class DefaultShapePickingProcessor implements ShapePickingProcessor {
 	 */
 	private void performPick(int x, int y, int width, int height, boolean selectAll, GraphicsData graphicsData) {		
 			
-		Point screenCoords = new Point(x, y);
 		ArrayList<Long> edgeHits = new ArrayList<Long>();
 		ArrayList<Long> nodeHits = new ArrayList<Long>();			
 	
-		int midHeight = graphicsData.getScreenHeight()/2;
-		int midWidth = graphicsData.getScreenWidth()/2;
+		// Picking happens in world coordinates, the hit box for lines stays the same number of pixels at any zoom
+		Camera camera = graphicsData.getCamera();
+		Point2D worldCoords = camera.toWorld(x, y);
+		double hitBoxSize = HIT_BOX_SIZE / camera.getScale();
+		Rectangle2D hitBox = new Rectangle2D.Double(worldCoords.getX() - hitBoxSize / 2, worldCoords.getY() - hitBoxSize / 2,
+				                                    hitBoxSize, hitBoxSize);
 		
-		CyNetworkView networkView = graphicsData.getNetworkView();
+		SceneSnapshot scene = graphicsData.getSceneSnapshot();
+		if(query == null || query.getIndex() != scene.getSpatialIndex()) {
+			query = scene.getSpatialIndex().newQuery();
+		}
+		query.run(hitBox);
 		
-		getEdges(edgeHits, screenCoords, networkView, midWidth, midHeight, graphicsData.getZoomFactor(), graphicsData);
-		getNodes(nodeHits, screenCoords, networkView, midWidth, midHeight, graphicsData.getZoomFactor(), graphicsData);
+		getEdges(edgeHits, hitBox, scene);
+		getNodes(nodeHits, worldCoords, scene);
 		
-		//logger.warn("world coords are " + screenCoords.toString() + "hits size is " + edgeHits.size() + nodeHits.size());	
+		//logger.warn("world coords are " + worldCoords.toString() + "hits size is " + edgeHits.size() + nodeHits.size());	
 		parseSelectionBufferSelection(edgeHits, nodeHits, graphicsData.getPickingData());
 		/*if (selectAll) {
 			parseSelectionBufferMultipleSelection(edgeHits, nodeHits,graphicsData.getPickingData());			
@@ -122,95 +124,37 @@ public class DefaultShapePickingProcessor implements ShapePickingProcessor {
 		}*/
 	}
 	
-	//TODO learn difference between view and model
-	public void getNodes(ArrayList<Long> hits, Point screenCoords, CyNetworkView networkView, int midWidth, 
-			int midHeight, int zoomFactor, GraphicsData graphicsData){
-				
-		Shape shape = null;
-		
-		// networkView.updateView();
-		for (View<CyNode> nodeView : networkView.getNodeViews()) {
-			
-			if(nodeView == null) {
-				// MKTODO why does this happen?
-				System.err.println("nodeView is null: networkView.getNodeViews() returns: " + networkView.getNodeViews());
-				continue;
-			}					
-					
-						
-			// Draw it only if the visual property says it is visible
-			if (nodeView.getVisualProperty(BasicVisualLexicon.NODE_VISIBLE)) {
-				shape = RenderNetwork.getShape(networkView, nodeView.getModel(), midWidth, midHeight, zoomFactor);						
-				// draw Rectangle2D.Double
-				if(shape.contains(screenCoords)){
-					hits.add(nodeView.getModel().getSUID());
-					break;//found hit so stop looking
-				}													
+	/**
+	 * Finds the topmost node under the point, nodes drawn later are on top.
+	 * Only looks at the candidates of the last query.
+	 */
+	public void getNodes(ArrayList<Long> hits, Point2D worldCoords, SceneSnapshot scene){
+		for(int i = query.getNodeCount() - 1; i >= 0; i--) {
+			int node = query.getNode(i);
+			if(scene.createNodeShape(node).contains(worldCoords)){
+				hits.add(scene.getNodeSuid(node));
+				break;//found hit so stop looking
 			}
 		}
 	}
 	
 	//http://stackoverflow.com/questions/1797209/how-to-select-a-line
-	public void getEdges(ArrayList<Long> edgeHits, Point screenCoords, CyNetworkView networkView, int midWidth, 
-			int midHeight, int zoomFactor, GraphicsData graphicsData){
-		// A set containing all pairs of nodes that have had an edge drawn between them
-		Set<PairIdentifier> drawnPairs = new HashSet<PairIdentifier>();
-		CyNode source, target;		
-		
-		Shape shape = graphicsData.getMyShape();
-		int boxX = (int) (screenCoords.getX() - HIT_BOX_SIZE / 2);
-		int boxY = (int) (screenCoords.getY() - HIT_BOX_SIZE / 2);
-
-		int boxWidth = HIT_BOX_SIZE;
-		int boxHeight = HIT_BOX_SIZE;
+	public void getEdges(ArrayList<Long> edgeHits, Rectangle2D hitBox, SceneSnapshot scene){
+		Line2D line = new Line2D.Double();
 		
-		double x1=0, x2=0, y1=0, y2=0;
-		for (View<CyEdge> edgeView : networkView.getEdgeViews()) {
-			source = edgeView.getModel().getSource();
-			target = edgeView.getModel().getTarget();			
-			
-			PairIdentifier pairIdentifier = NetworkToolkit.obtainPairIdentifier(source, target, networkView.getModel().getNodeList().size());
-			
-			if(shape == null){
-				shape = RenderNetwork.getShape(networkView, edgeView.getModel().getTarget(), midWidth, midHeight, zoomFactor);			
-				
-				float edgeWidth = edgeView.getVisualProperty(BasicVisualLexicon.EDGE_WIDTH).intValue();
-				edgeWidth = (zoomFactor > 0) ? (edgeWidth /(int)(zoomFactor)) : edgeWidth;
-				//set stroke and color							
-				graphicsData.setMyShape(shape);
-			}
+		for(int i = query.getEdgeCount() - 1; i >= 0; i--) {
+			int edge = query.getEdge(i);
+			int source = scene.getEdgeSource(edge);
+			int target = scene.getEdgeTarget(edge);
 			
-			// Only draw an edge between this source-target pair if one has not been drawn already
-			//TODO mulit edges 
-			if (!drawnPairs.contains(pairIdentifier)) {
+			line.setLine(scene.getNodeCenterX(source), scene.getNodeCenterY(source),
+					     scene.getNodeCenterX(target), scene.getNodeCenterY(target));
 			
-				//TODO fix this
-				if(edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE).toString().equals("SOLID") || true){
-					
-					View<CyNode> sourceView = networkView.getNodeView(source);
-					View<CyNode> targetView = networkView.getNodeView(target);
-					
-					if (sourceView != null && targetView != null) {
-						x1 = sourceView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION)/zoomFactor + shape.getBounds2D().getWidth()/2;
-						y1 = sourceView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION)/zoomFactor + shape.getBounds2D().getHeight()/2;
-						
-						x2 = targetView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION)/zoomFactor + shape.getBounds2D().getWidth()/2;
-						y2 = targetView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION)/zoomFactor + shape.getBounds2D().getHeight()/2;
-					}else{
-						continue;
-					}
-					
-					Shape line = new Line2D.Double((x1+midWidth), (y1+midHeight), (x2+midWidth), (y2+midHeight));
-					
-					if(line.intersects(boxX, boxY, boxWidth, boxHeight)){						
-						edgeHits.add(edgeView.getModel().getSUID());
-						break; //found hit so stop looking
-					}
-				}
-				
-				drawnPairs.add(pairIdentifier);
+			if(line.intersects(hitBox)){						
+				edgeHits.add(scene.getEdgeSuid(edge));
+				break; //found hit so stop looking
 			}
-		}	
+		}
 	}
 	
 	private void parseSelectionBufferSelection(ArrayList<Long> edgeHits, ArrayList<Long> nodeHits, PickingData pickingData) {
@@ -0,0 +1,118 @@
+package com.boofisher.app.cySimpleRenderer.internal.rendering;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+import javax.swing.JComponent;
+
+/**
+ * Keeps a copy of a cached layer in a {@link VolatileImage}, so showing it again on
+ * every frame is a copy within video memory where the Java2D pipeline is accelerated.
+ *
+ * The layer itself stays a {@link BufferedImage}, which is what gets painted and is
+ * always the master copy. After changing it call {@link #invalidate()} and the next
+ * {@link #draw} uploads it again. If the video memory copy is lost, for example when
+ * the display mode changes, it is restored from the master copy too.
+ *
+ * Without a display, or if the pipeline cannot accelerate volatile images, the layer
+ * is simply drawn as it is.
+ */
+public class AcceleratedLayer {
+
+	// Tries to draw the volatile image before giving up on it for this frame
+	private static final int MAX_ATTEMPTS = 3;
+
+	private VolatileImage image;
+	private boolean stale = true;
+	private boolean unavailable = GraphicsEnvironment.isHeadless();
+
+
+	/**
+	 * The master copy has changed and has to be uploaded again.
+	 */
+	public void invalidate() {
+		stale = true;
+	}
+
+	/**
+	 * Draw the layer at the given position, from video memory if possible.
+	 *
+	 * @param layer The master copy of the layer
+	 * @param component Where the layer will be shown, gives the graphics configuration
+	 */
+	public void draw(Graphics2D g, BufferedImage layer, int x, int y, JComponent component) {
+		for(int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			VolatileImage accelerated = validate(layer, component);
+			if(accelerated == null) {
+				break;
+			}
+
+			g.drawImage(accelerated, x, y, null);
+			if(!accelerated.contentsLost()) {
+				return;
+			}
+			stale = true;
+		}
+
+		g.drawImage(layer, x, y, null);
+	}
+
+	/**
+	 * Release the video memory copy.
+	 */
+	public void flush() {
+		if(image != null) {
+			image.flush();
+			image = null;
+		}
+		stale = true;
+	}
+
+
+	/**
+	 * Make sure the volatile image exists, fits the layer and has its contents.
+	 *
+	 * @return null if the layer has to be drawn from the master copy
+	 */
+	private VolatileImage validate(BufferedImage layer, JComponent component) {
+		GraphicsConfiguration configuration = component.getGraphicsConfiguration();
+		if(unavailable || configuration == null) {
+			return null;
+		}
+
+		int width = layer.getWidth();
+		int height = layer.getHeight();
+
+		int status = image == null || image.getWidth() != width || image.getHeight() != height
+				   ? VolatileImage.IMAGE_INCOMPATIBLE : image.validate(configuration);
+
+		if(status == VolatileImage.IMAGE_INCOMPATIBLE) {
+			flush();
+			image = configuration.createCompatibleVolatileImage(width, height);
+
+			if(!image.getCapabilities().isAccelerated()) {
+				// no gain over drawing the master copy, don't try again
+				flush();
+				unavailable = true;
+				return null;
+			}
+			image.validate(configuration);
+		} else if(status == VolatileImage.IMAGE_RESTORED) {
+			stale = true;
+		}
+
+		if(stale) {
+			Graphics2D g = image.createGraphics();
+			try {
+				g.drawImage(layer, 0, 0, null);
+			} finally {
+				g.dispose();
+			}
+			stale = false;
+		}
+		return image;
+	}
+}
@@ -33,4 +33,10 @@ public interface GraphicsProcedure {
 	 * is generally not permitted to write to it.
 	 */
 	public void execute(GraphicsData graphicsData);
+	
+	/**
+	 * Release any resources held by the procedure, such as images taken from
+	 * the {@link ImagePool}. The procedure is not executed again afterwards.
+	 */
+	public void dispose();
 }
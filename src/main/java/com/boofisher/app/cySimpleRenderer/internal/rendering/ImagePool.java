@@ -0,0 +1,156 @@
+package com.boofisher.app.cySimpleRenderer.internal.rendering;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Hands out images for back buffers and cached layers and takes them back for reuse,
+ * so resizing a window or starting a new frame does not allocate megabytes each time.
+ *
+ * Images are allocated in size classes, rounded up to a multiple of {@link #SIZE_STEP}
+ * pixels each way, and handed out as a view of exactly the requested size. A returned
+ * image is reused for any later request that fits into it and is at most one size class
+ * smaller, so a window being dragged a little larger or smaller keeps its buffers.
+ *
+ * Images that are not in use are kept up to {@link #DEFAULT_CAPACITY} bytes, the
+ * ones returned longest ago are dropped first. The contents of an acquired image are
+ * undefined.
+ *
+ * One pool is shared by all renderers of a network view, see
+ * {@link com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNetworkView#getImagePool()}.
+ */
+public class ImagePool {
+
+	public static final int SIZE_STEP = 64;
+	public static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+	private final long capacity;
+
+	// Images that are handed out, by the view given to the user
+	private final Map<BufferedImage, BufferedImage> leased = new IdentityHashMap<BufferedImage, BufferedImage>();
+
+	// Images that are free, oldest first
+	private final LinkedList<BufferedImage> free = new LinkedList<BufferedImage>();
+	private long freeBytes = 0;
+
+
+	public ImagePool() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity How many bytes of unused images to keep around
+	 */
+	public ImagePool(long capacity) {
+		this.capacity = capacity;
+	}
+
+
+	/**
+	 * An image of the given size that can be drawn onto the given configuration
+	 * quickly. Give it back with {@link #release} when done.
+	 *
+	 * @param configuration May be null, then the image is {@link BufferedImage#TYPE_INT_RGB}
+	 */
+	public synchronized BufferedImage acquire(GraphicsConfiguration configuration, int width, int height) {
+		ColorModel colorModel = configuration != null ? configuration.getColorModel() : null;
+
+		BufferedImage backing = takeFree(colorModel, width, height);
+		if(backing == null) {
+			int classWidth = sizeClass(width);
+			int classHeight = sizeClass(height);
+			backing = configuration != null
+					? configuration.createCompatibleImage(classWidth, classHeight)
+					: new BufferedImage(classWidth, classHeight, BufferedImage.TYPE_INT_RGB);
+		}
+
+		BufferedImage image = backing.getWidth() == width && backing.getHeight() == height
+				            ? backing : backing.getSubimage(0, 0, width, height);
+		leased.put(image, backing);
+		return image;
+	}
+
+	/**
+	 * Give back an image from {@link #acquire}. Does nothing for null or any other image.
+	 */
+	public synchronized void release(BufferedImage image) {
+		if(image == null) {
+			return;
+		}
+		BufferedImage backing = leased.remove(image);
+		if(backing == null) {
+			return;
+		}
+
+		free.addLast(backing);
+		freeBytes += bytes(backing);
+		while(freeBytes > capacity && !free.isEmpty()) {
+			freeBytes -= bytes(free.removeFirst());
+		}
+	}
+
+	/**
+	 * The given image if it already has the given size, otherwise it is given back
+	 * and a new one of the right size acquired. The contents are not kept.
+	 */
+	public BufferedImage resize(BufferedImage image, GraphicsConfiguration configuration, int width, int height) {
+		if(image != null && image.getWidth() == width && image.getHeight() == height) {
+			return image;
+		}
+		release(image);
+		return acquire(configuration, width, height);
+	}
+
+	/**
+	 * Drop all images that are not in use.
+	 */
+	public synchronized void clear() {
+		free.clear();
+		freeBytes = 0;
+	}
+
+
+	// The smallest free image the request fits into, no more than one size class too big
+	private BufferedImage takeFree(ColorModel colorModel, int width, int height) {
+		int maxWidth = sizeClass(width) + SIZE_STEP;
+		int maxHeight = sizeClass(height) + SIZE_STEP;
+
+		BufferedImage best = null;
+		for(BufferedImage image : free) {
+			if(image.getWidth() < width || image.getHeight() < height
+					|| image.getWidth() > maxWidth || image.getHeight() > maxHeight) {
+				continue;
+			}
+			if(colorModel != null ? !colorModel.equals(image.getColorModel()) : image.getType() != BufferedImage.TYPE_INT_RGB) {
+				continue;
+			}
+			if(best == null || bytes(image) < bytes(best)) {
+				best = image;
+			}
+		}
+
+		if(best != null) {
+			for(Iterator<BufferedImage> i = free.iterator(); i.hasNext();) {
+				if(i.next() == best) {
+					i.remove();
+					break;
+				}
+			}
+			freeBytes -= bytes(best);
+		}
+		return best;
+	}
+
+	private static int sizeClass(int size) {
+		return Math.max(1, (size + SIZE_STEP - 1) / SIZE_STEP) * SIZE_STEP;
+	}
+
+	private static long bytes(BufferedImage image) {
+		return (long) image.getWidth() * image.getHeight() * ((image.getColorModel().getPixelSize() + 7) / 8);
+	}
+}
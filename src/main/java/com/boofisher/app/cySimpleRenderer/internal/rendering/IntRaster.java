@@ -0,0 +1,243 @@
+package com.boofisher.app.cySimpleRenderer.internal.rendering;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Writes opaque pixels straight into the int array behind a {@link BufferedImage},
+ * for elements so small that going through Java2D costs far more than the few
+ * pixels they cover.
+ *
+ * Only used when world space maps to the image by scaling and translating alone.
+ * Lines are drawn by stepping along their major axis and picking pixels from the
+ * original end points, never from where they were clipped, so a line drawn in two
+ * neighbouring clip rectangles has no seam.
+ */
+final class IntRaster {
+
+	// Lines reaching further out than this many pixels are left to Java2D
+	private static final double MAX_COORDINATE = 1 << 28;
+
+	private static final double FIXED_ONE = 1L << 32;
+
+	private final int[] pixels;
+	private final int offset;
+	private final int stride;
+	private final boolean forceAlpha;
+
+	private final double scaleX;
+	private final double scaleY;
+	private final double translateX;
+	private final double translateY;
+
+	// The part of the image that may be written to, max exclusive
+	private final int clipMinX;
+	private final int clipMinY;
+	private final int clipMaxX;
+	private final int clipMaxY;
+
+
+	private IntRaster(int[] pixels, int offset, int stride, boolean forceAlpha,
+			          AffineTransform worldToDevice, Rectangle clip) {
+		this.pixels = pixels;
+		this.offset = offset;
+		this.stride = stride;
+		this.forceAlpha = forceAlpha;
+		this.scaleX = worldToDevice.getScaleX();
+		this.scaleY = worldToDevice.getScaleY();
+		this.translateX = worldToDevice.getTranslateX();
+		this.translateY = worldToDevice.getTranslateY();
+		this.clipMinX = clip.x;
+		this.clipMinY = clip.y;
+		this.clipMaxX = clip.x + clip.width;
+		this.clipMaxY = clip.y + clip.height;
+	}
+
+	/**
+	 * A raster for painting the given part of the image through the given transform.
+	 *
+	 * @return null if the image is not backed by packed ints or the transform
+	 * rotates, shears or flips
+	 */
+	static IntRaster create(BufferedImage image, AffineTransform worldToDevice, Rectangle deviceClip) {
+		int type = image.getType();
+		if(type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB
+				&& type != BufferedImage.TYPE_INT_ARGB_PRE) {
+			return null;
+		}
+		if(worldToDevice.getShearX() != 0 || worldToDevice.getShearY() != 0
+				|| worldToDevice.getScaleX() <= 0 || worldToDevice.getScaleY() <= 0) {
+			return null;
+		}
+		if(!(image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel)
+				|| image.getRaster().getSampleModelTranslateX() != 0 || image.getRaster().getSampleModelTranslateY() != 0) {
+			return null;
+		}
+
+		Rectangle clip = deviceClip.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+		if(clip.isEmpty()) {
+			return null;
+		}
+
+		DataBufferInt buffer = (DataBufferInt) image.getRaster().getDataBuffer();
+		int stride = ((SinglePixelPackedSampleModel) image.getRaster().getSampleModel()).getScanlineStride();
+		return new IntRaster(buffer.getData(), buffer.getOffset(), stride, type != BufferedImage.TYPE_INT_RGB,
+				             worldToDevice, clip);
+	}
+
+
+	/** How many device pixels one world unit covers, horizontally. */
+	double getScaleX() {
+		return scaleX;
+	}
+
+	/** How many device pixels one world unit covers, vertically. */
+	double getScaleY() {
+		return scaleY;
+	}
+
+
+	/**
+	 * Fill the pixels whose centers fall inside the given world rectangle, the
+	 * same ones Java2D fills without antialiasing. A rectangle too small to cover
+	 * any pixel center still gets the pixel its center falls on, so tiny nodes do
+	 * not vanish.
+	 */
+	void fillRect(double x, double y, double width, double height, int rgb) {
+		double deviceX = x * scaleX + translateX;
+		double deviceY = y * scaleY + translateY;
+		int x0 = (int) Math.ceil(deviceX - 0.5);
+		int y0 = (int) Math.ceil(deviceY - 0.5);
+		int x1 = (int) Math.ceil(deviceX + width * scaleX - 0.5);
+		int y1 = (int) Math.ceil(deviceY + height * scaleY - 0.5);
+
+		if(x1 <= x0) {
+			x0 = (int) Math.floor(deviceX + width * scaleX / 2);
+			x1 = x0 + 1;
+		}
+		if(y1 <= y0) {
+			y0 = (int) Math.floor(deviceY + height * scaleY / 2);
+			y1 = y0 + 1;
+		}
+
+		x0 = Math.max(x0, clipMinX);
+		y0 = Math.max(y0, clipMinY);
+		x1 = Math.min(x1, clipMaxX);
+		y1 = Math.min(y1, clipMaxY);
+
+		int pixel = opaque(rgb);
+		for(int row = y0; row < y1; row++) {
+			int start = offset + row * stride;
+			for(int column = x0; column < x1; column++) {
+				pixels[start + column] = pixel;
+			}
+		}
+	}
+
+	/**
+	 * Draw a one pixel wide line between two world points.
+	 *
+	 * @param antialias Spread each step over the two nearest pixels by coverage,
+	 * as in Wu's algorithm, instead of setting just the nearest one
+	 * @return false if the line is too far outside the image to be drawn this way
+	 */
+	boolean drawLine(double worldX0, double worldY0, double worldX1, double worldY1, int rgb, boolean antialias) {
+		double x0 = worldX0 * scaleX + translateX;
+		double y0 = worldY0 * scaleY + translateY;
+		double x1 = worldX1 * scaleX + translateX;
+		double y1 = worldY1 * scaleY + translateY;
+
+		if(Math.abs(x0) > MAX_COORDINATE || Math.abs(y0) > MAX_COORDINATE
+				|| Math.abs(x1) > MAX_COORDINATE || Math.abs(y1) > MAX_COORDINATE) {
+			return false;
+		}
+
+		if(Math.abs(x1 - x0) >= Math.abs(y1 - y0)) {
+			if(x1 < x0) {
+				drawMajorAxis(x1, y1, x0, y0, rgb, antialias, true);
+			} else {
+				drawMajorAxis(x0, y0, x1, y1, rgb, antialias, true);
+			}
+		} else {
+			if(y1 < y0) {
+				drawMajorAxis(y1, x1, y0, x0, rgb, antialias, false);
+			} else {
+				drawMajorAxis(y0, x0, y1, x1, rgb, antialias, false);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Step along the major axis from <code>major0</code> to <code>major1</code>, one pixel
+	 * at a time, placing the minor coordinate where the line crosses each pixel center.
+	 *
+	 * The minor coordinate is kept in 32.32 fixed point and computed from the first
+	 * pixel of the whole line, so clipping never changes which pixels are picked.
+	 */
+	private void drawMajorAxis(double major0, double minor0, double major1, double minor1,
+			                   int rgb, boolean antialias, boolean horizontal) {
+		// every pixel whose center the line passes, but at least the one it starts on
+		int first = (int) Math.ceil(major0 - 0.5);
+		int last = (int) Math.ceil(major1 - 0.5);
+		if(last <= first) {
+			last = first + 1;
+		}
+
+		double length = major1 - major0;
+		double slope = length == 0 ? 0 : (minor1 - minor0) / length;
+		long step = (long) (slope * FIXED_ONE);
+		// for antialiasing the pixel centers are half a pixel off the pixel edges
+		double shift = antialias ? 0.5 : 0;
+		long base = (long) Math.floor((minor0 + slope * (first + 0.5 - major0) - shift) * FIXED_ONE);
+
+		int from = Math.max(first, horizontal ? clipMinX : clipMinY);
+		int to = Math.min(last, horizontal ? clipMaxX : clipMaxY);
+		int minorMin = horizontal ? clipMinY : clipMinX;
+		int minorMax = horizontal ? clipMaxY : clipMaxX;
+		int majorStride = horizontal ? 1 : stride;
+		int minorStride = horizontal ? stride : 1;
+		int pixel = opaque(rgb);
+
+		long minor = base + step * (from - first);
+		for(int major = from; major < to; major++, minor += step) {
+			int below = (int) (minor >> 32);
+
+			if(antialias) {
+				int coverage = (int) ((minor & 0xFFFFFFFFL) >>> 24);
+				if(below >= minorMin && below < minorMax) {
+					blend(offset + major * majorStride + below * minorStride, rgb, 256 - coverage);
+				}
+				if(below + 1 >= minorMin && below + 1 < minorMax) {
+					blend(offset + major * majorStride + (below + 1) * minorStride, rgb, coverage);
+				}
+			} else if(below >= minorMin && below < minorMax) {
+				pixels[offset + major * majorStride + below * minorStride] = pixel;
+			}
+		}
+	}
+
+	/** Mix the color into the pixel at the given index, <code>weight</code> out of 256. */
+	private void blend(int index, int rgb, int weight) {
+		if(weight <= 0) {
+			return;
+		}
+
+		int old = pixels[index];
+		int r = mix((old >> 16) & 0xFF, (rgb >> 16) & 0xFF, weight);
+		int g = mix((old >> 8) & 0xFF, (rgb >> 8) & 0xFF, weight);
+		int b = mix(old & 0xFF, rgb & 0xFF, weight);
+		pixels[index] = opaque((r << 16) | (g << 8) | b);
+	}
+
+	private static int mix(int from, int to, int weight) {
+		return from + (((to - from) * weight) >> 8);
+	}
+
+	private int opaque(int rgb) {
+		return forceAlpha ? rgb | 0xFF000000 : rgb & 0xFFFFFF;
+	}
+}
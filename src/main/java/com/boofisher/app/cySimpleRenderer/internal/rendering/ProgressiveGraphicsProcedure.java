@@ -0,0 +1,22 @@
+package com.boofisher.app.cySimpleRenderer.internal.rendering;
+
+import com.boofisher.app.cySimpleRenderer.internal.data.GraphicsData;
+
+/**
+ * A rendering procedure whose work may not fit into a single frame.
+ *
+ * Each call to {@link #execute(GraphicsData)} does as much work as fits into one
+ * time slice, shows the best picture it has so far and leaves the rest for later
+ * calls. As long as {@link #isComplete()} returns false the graphics configuration
+ * keeps scheduling repaints, between which input events are handled as usual.
+ *
+ * The procedure itself decides when its work is out of date, for example when the
+ * camera moved, and starts over.
+ */
+public interface ProgressiveGraphicsProcedure extends GraphicsProcedure {
+
+	/**
+	 * Whether the last call to execute finished drawing, so no more frames are needed.
+	 */
+	public boolean isComplete();
+}
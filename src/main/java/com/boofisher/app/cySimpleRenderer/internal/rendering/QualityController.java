@@ -0,0 +1,116 @@
+package com.boofisher.app.cySimpleRenderer.internal.rendering;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * Keeps interaction smooth by trading detail for speed while the user is dragging,
+ * zooming or panning with the keyboard.
+ *
+ * Every frame reports how long it took to draw. While the user is interacting, a
+ * smoothed frame time over {@link #getFrameBudget()} lowers the {@link RenderQuality}
+ * one step, and a run of frames well under budget raises it again. Once there has
+ * been no interaction for {@link #IDLE_DELAY} milliseconds full quality is restored
+ * and the component is repainted.
+ *
+ * All methods are meant to be called on the event dispatch thread.
+ */
+public class QualityController {
+
+	public static final long DEFAULT_FRAME_BUDGET = 16;
+	public static final int IDLE_DELAY = 300;
+
+	// Weight of the newest frame in the smoothed frame time
+	private static final double SMOOTHING = 0.3;
+
+	// Consecutive cheap frames needed before quality goes back up
+	private static final int FAST_FRAMES_TO_RAISE = 10;
+
+	private final long frameBudgetNanos;
+	private final Timer idleTimer;
+
+	private RenderQuality quality = RenderQuality.FULL;
+	private boolean interacting = false;
+	private double averageFrameNanos = 0;
+	private int fastFrames = 0;
+
+
+	public QualityController(JComponent component) {
+		this(component, DEFAULT_FRAME_BUDGET);
+	}
+
+	/**
+	 * @param component Repainted when full quality is restored
+	 * @param frameBudget Target frame time in milliseconds
+	 */
+	public QualityController(final JComponent component, long frameBudget) {
+		this.frameBudgetNanos = frameBudget * 1000000L;
+
+		idleTimer = new Timer(IDLE_DELAY, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				interacting = false;
+				fastFrames = 0;
+				if(quality != RenderQuality.FULL) {
+					quality = RenderQuality.FULL;
+					component.repaint();
+				}
+			}
+		});
+		idleTimer.setRepeats(false);
+	}
+
+
+	public RenderQuality getQuality() {
+		return quality;
+	}
+
+	public boolean isInteracting() {
+		return interacting;
+	}
+
+	/** Target frame time in milliseconds. */
+	public long getFrameBudget() {
+		return frameBudgetNanos / 1000000L;
+	}
+
+
+	/**
+	 * The user is changing the view. Keeps reduced quality allowed until
+	 * input has been idle for a while.
+	 */
+	public void interaction() {
+		interacting = true;
+		idleTimer.restart();
+	}
+
+	/**
+	 * Report how long the last frame took to draw.
+	 */
+	public void frameRendered(long nanos) {
+		averageFrameNanos = averageFrameNanos == 0 ? nanos : SMOOTHING * nanos + (1 - SMOOTHING) * averageFrameNanos;
+
+		if(!interacting) {
+			return;
+		}
+
+		if(averageFrameNanos > frameBudgetNanos) {
+			fastFrames = 0;
+			if(quality != quality.lower()) {
+				quality = quality.lower();
+				// the next frame is drawn cheaper, don't let this one count against it
+				averageFrameNanos = frameBudgetNanos;
+			}
+		} else if(averageFrameNanos < frameBudgetNanos / 2 && ++fastFrames >= FAST_FRAMES_TO_RAISE) {
+			fastFrames = 0;
+			quality = quality.higher();
+		}
+	}
+
+	public void dispose() {
+		idleTimer.stop();
+	}
+}
@@ -89,4 +89,9 @@ public class RenderLabels implements GraphicsProcedure {
 		}		
 	}	
 
+	
+	@Override
+	public void dispose() {
+	}
+
 }
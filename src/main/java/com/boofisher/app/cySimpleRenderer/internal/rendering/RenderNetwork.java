@@ -3,13 +3,17 @@ package com.boofisher.app.cySimpleRenderer.internal.rendering;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.Shape;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.swing.JComponent;
@@ -23,217 +27,362 @@ import org.cytoscape.view.model.View;
 import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 import org.cytoscape.view.presentation.property.NodeShapeVisualProperty;
 
+import com.boofisher.app.cySimpleRenderer.internal.data.Camera;
 import com.boofisher.app.cySimpleRenderer.internal.data.GraphicsData;
 import com.boofisher.app.cySimpleRenderer.internal.tools.NetworkToolkit;
-import com.boofisher.app.cySimpleRenderer.internal.tools.PairIdentifier;
 
 /********************************************************************************
  * Class will be responsible for rendering the network's nodes and edges
+ *
+ * The network is kept in world coordinates and drawn through the camera transform.
+ * The last complete frame is kept in a back buffer together with what it shows.
+ * If only the camera's translation has changed since, by whole pixels, the buffer is
+ * shifted in place and only the strips that scrolled into view are drawn. Hover and
+ * pick highlighting changes with every mouse move, so it is never part of the buffer
+ * and is drawn on top each frame instead. When the scene was derived from the one in
+ * the buffer, for example because a node was selected, only the regions it reports as
+ * changed are drawn again.
+ *
+ * Any other change needs a new frame, which is drawn progressively: each call draws
+ * for at most one frame budget of the {@link QualityController}. Until the new frame
+ * is finished the last complete frame is shown, scaled and moved to the current camera
+ * as a preview. A camera change while a frame is in progress starts it over.
+ *
+ * The complete frame is shown through an {@link AcceleratedLayer}, so redrawing it
+ * under a moving highlight is a video memory copy where the pipeline allows it.
  * */
 
-public class RenderNetwork implements GraphicsProcedure {
+public class RenderNetwork implements ProgressiveGraphicsProcedure {
 	final Logger logger = Logger.getLogger(CyUserLog.NAME);
+
+	private static final Color HIGHLIGHT_COLOR = Color.GREEN;
+
+	// More changed regions than this and the whole frame is drawn again
+	private static final int MAX_CHANGED_REGIONS = 512;
+
 	GraphicsData graphicsData;
-	boolean isMain;
-	
-	
+
+	private final ScenePainter painter = new ScenePainter();
+	private final ScenePainter progressivePainter = new ScenePainter();
+
+	// The last complete frame and what it shows
+	private BufferedImage frame;
+	private FrameKey frameKey;
+	private final AcceleratedLayer frameLayer = new AcceleratedLayer();
+
+	// The frame being drawn progressively
+	private BufferedImage work;
+	private FrameKey workKey;
+
+	// The last complete frame mapped to the camera of the work frame
+	private BufferedImage preview;
+
+	private boolean complete = true;
+
+
 	@Override
 	public void initialize(GraphicsData graphicsData) {
-		this.graphicsData = graphicsData;		
+		this.graphicsData = graphicsData;
 	}
-	
-	
-	
+
+
+
 	@Override
 	public void execute(GraphicsData graphicsData) {
-			
-		int width = graphicsData.getContainer().getWidth();
-		int height = graphicsData.getContainer().getHeight();
-
-		int midWidth = width/2;
-		int midHeight = height/2;				
-		
-		CyNetworkView networkView = graphicsData.getNetworkView();
 		JComponent component = graphicsData.getContainer();
 		Graphics2D imageGraphics = (Graphics2D)graphicsData.getMyGraphics();
-		
-		//TODO make rendering more efficient
-		if( component == null || component.getWidth() != width || height != component.getHeight() || true){
-			//logger.warn("Rendering main ? " + graphicsData.isMain());
-			//logger.warn("width = " + width + " height = " + height + " zoomFact = " + graphicsData.getZoomFactor());
-			int zoomFactor = graphicsData.getZoomFactor();
-															
-			//paint background
-			imageGraphics.setColor((Color) networkView.getVisualProperty(BasicVisualLexicon.NETWORK_BACKGROUND_PAINT));
-			imageGraphics.fillRect(0,0, width, height);	
-						
-			drawEdges(imageGraphics, networkView, midWidth, midHeight, zoomFactor);
-			drawNodes(imageGraphics, networkView, midWidth, midHeight, zoomFactor);
-			BufferedImage bImage = component.getGraphicsConfiguration().createCompatibleImage(width, height);
-			graphicsData.setBufferedImage(bImage);			
-		} else if(graphicsData.isMain()){
-			//do nothing network has already been drawn so clear rendered image
-			//paint background
-			Graphics2D g2d = graphicsData.getBufferedImage().createGraphics();
-			g2d.setColor((Color) networkView.getVisualProperty(BasicVisualLexicon.NETWORK_BACKGROUND_PAINT));
-			g2d.fillRect(0,0, width, height);	
-		}			
-			
+
+		int width = component.getWidth();
+		int height = component.getHeight();
+		if(width <= 0 || height <= 0) {
+			return;
+		}
+
+		Camera camera = graphicsData.getCamera();
+		AffineTransform worldToScreen = camera.getTransform();
+		FrameKey key = new FrameKey(graphicsData.getSceneSnapshot(), graphicsData.getQualityController().getQuality(),
+				                    camera, width, height);
+
+		BufferedImage image = updateFrame(component, key, worldToScreen);
+		if(image == frame) {
+			frameLayer.draw(imageGraphics, frame, 0, 0, component);
+		} else {
+			imageGraphics.drawImage(image, 0, 0, null);
+		}
+		drawHighlights(imageGraphics, worldToScreen);
+		graphicsData.setBufferedImage(frame);
+	}
+
+	@Override
+	public boolean isComplete() {
+		return complete;
 	}
-	
-	public void drawEdges(Graphics2D g2, CyNetworkView networkView, int midWidth, int midHeight, int zoomFactor){
-		// A set containing all pairs of nodes that have had an edge drawn between them
-		Set<PairIdentifier> drawnPairs = new HashSet<PairIdentifier>();
-		CyNode source, target;		
-		
-		Shape shape = null;
-		boolean rectMade = false;
-		
-		double x1=0, x2=0, y1=0, y2=0;
-		for (View<CyEdge> edgeView : networkView.getEdgeViews()) {
-			source = edgeView.getModel().getSource();
-			target = edgeView.getModel().getTarget();
-			
-			//set color and stroke
-			float edgeWidth = edgeView.getVisualProperty(BasicVisualLexicon.EDGE_WIDTH).intValue();
-			edgeWidth = (zoomFactor > 0) ? (edgeWidth /(int)(zoomFactor)) : edgeWidth;
-			g2.setColor(chooseColor(null, edgeView, graphicsData));
-			g2.setStroke( new BasicStroke( edgeWidth ));
-			
-			if(!rectMade){
-				shape = getShape(networkView, edgeView.getModel().getTarget(), midWidth, midHeight, zoomFactor);
-				rectMade = true;
-				
-				//set stroke and color													
-				graphicsData.setMyShape(shape);
-			}					
-			
-			PairIdentifier pairIdentifier = NetworkToolkit.obtainPairIdentifier(source, target, networkView.getModel().getNodeList().size());
-			
-			// Only draw an edge between this source-target pair if one has not been drawn already
-			//TODO mulit edges 
-			if (!drawnPairs.contains(pairIdentifier)) {
-			
-				//TODO fix this
-				if(edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE).toString().equals("SOLID") || true){
-					
-					View<CyNode> sourceView = networkView.getNodeView(source);
-					View<CyNode> targetView = networkView.getNodeView(target);
-					
-					if (sourceView != null && targetView != null) {
-						x1 = sourceView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION)/zoomFactor + shape.getBounds2D().getWidth()/2;
-						y1 = sourceView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION)/zoomFactor + shape.getBounds2D().getHeight()/2;
-						
-						x2 = targetView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION)/zoomFactor + shape.getBounds2D().getWidth()/2;
-						y2 = targetView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION)/zoomFactor + shape.getBounds2D().getHeight()/2;
-					}else{
-						continue;
-					}
-					
-					//draw edge between nodes
-					// draw Rectangle2D.Double
-					g2.draw(new Line2D.Double((x1+midWidth), (y1+midHeight), (x2+midWidth), (y2+midHeight)));
+
+
+	/**
+	 * Bring the back buffer up to date with the scene and the camera, or get one
+	 * slice closer to that.
+	 *
+	 * @return The image to show
+	 */
+	private BufferedImage updateFrame(JComponent component, FrameKey key, AffineTransform worldToScreen) {
+		if(frameKey != null && (frameKey.sameView(key) || repaintChanges(key, worldToScreen) || scrollFrame(key, worldToScreen))) {
+			cancelWork();
+			frameKey = key;
+			complete = true;
+			return frame;
+		}
+
+		if(workKey == null || !workKey.sameView(key)) {
+			startWork(component, key, worldToScreen);
+		}
+
+		long deadline = System.nanoTime() + graphicsData.getQualityController().getFrameBudget() * 1000000L;
+		if(progressivePainter.resume(deadline)) {
+			BufferedImage finished = work;
+			work = frame;
+			frame = finished;
+			frameKey = workKey;
+			frameLayer.invalidate();
+			cancelWork();
+			complete = true;
+			return frame;
+		}
+
+		complete = false;
+		return preview != null ? preview : work;
+	}
+
+	/**
+	 * Redraw the changed regions of the last frame if the scene was derived from
+	 * the one it shows and nothing else changed.
+	 *
+	 * @return false if the frame cannot be reused that way
+	 */
+	private boolean repaintChanges(FrameKey key, AffineTransform worldToScreen) {
+		List<Rectangle2D> regions = key.scene.getChangedRegions();
+
+		if(key.scene.getBaseId() != frameKey.scene.getId() || !frameKey.sameViewport(key)
+				|| regions.size() > MAX_CHANGED_REGIONS) {
+			return false;
+		}
+
+		painter.setQuality(key.quality);
+		painter.paintRegions(frame, key.scene, worldToScreen, regions);
+		frameLayer.invalidate();
+		return true;
+	}
+
+	/**
+	 * Shift the last frame if the camera only moved by whole pixels, drawing the
+	 * strips that scrolled into view.
+	 *
+	 * @return false if the frame cannot be reused that way
+	 */
+	private boolean scrollFrame(FrameKey key, AffineTransform worldToScreen) {
+		double dx = key.translateX - frameKey.translateX;
+		double dy = key.translateY - frameKey.translateY;
+		int width = key.width;
+		int height = key.height;
+		int shiftX = (int) Math.rint(dx);
+		int shiftY = (int) Math.rint(dy);
+
+		if(!frameKey.sameDetail(key) || !isWholePixel(dx) || !isWholePixel(dy)
+				|| Math.abs(shiftX) >= width || Math.abs(shiftY) >= height) {
+			return false;
+		}
+
+		painter.setQuality(key.quality);
+		Graphics2D g = frame.createGraphics();
+		try {
+			g.copyArea(0, 0, width, height, shiftX, shiftY);
+		} finally {
+			g.dispose();
+		}
+
+		// only the strips uncovered by the shift need drawing
+		if(shiftX > 0) {
+			painter.paint(frame, key.scene, worldToScreen, new Rectangle(0, 0, shiftX, height));
+		} else if(shiftX < 0) {
+			painter.paint(frame, key.scene, worldToScreen, new Rectangle(width + shiftX, 0, -shiftX, height));
+		}
+		if(shiftY > 0) {
+			painter.paint(frame, key.scene, worldToScreen, new Rectangle(0, 0, width, shiftY));
+		} else if(shiftY < 0) {
+			painter.paint(frame, key.scene, worldToScreen, new Rectangle(0, height + shiftY, width, -shiftY));
+		}
+		frameLayer.invalidate();
+		return true;
+	}
+
+	private static boolean isWholePixel(double shift) {
+		return Math.abs(shift - Math.rint(shift)) < 1e-6;
+	}
+
+	/**
+	 * Begin drawing a new frame and map the last complete frame to the new camera
+	 * to show in the meantime.
+	 */
+	private void startWork(JComponent component, FrameKey key, AffineTransform worldToScreen) {
+		cancelWork();
+
+		ImagePool pool = graphicsData.getImagePool();
+		work = pool.resize(work, component.getGraphicsConfiguration(), key.width, key.height);
+		workKey = key;
+		progressivePainter.setQuality(key.quality);
+		progressivePainter.start(work, key.scene, worldToScreen, new Rectangle(0, 0, key.width, key.height));
+
+		if(frame == null) {
+			preview = null;
+			return;
+		}
+
+		preview = pool.resize(preview, component.getGraphicsConfiguration(), key.width, key.height);
+		double ratio = key.scale / frameKey.scale;
+		AffineTransform frameToPreview = new AffineTransform(ratio, 0, 0, ratio,
+				key.translateX - frameKey.translateX * ratio, key.translateY - frameKey.translateY * ratio);
+
+		Graphics2D g = preview.createGraphics();
+		try {
+			g.setColor(key.scene.getBackground());
+			g.fillRect(0, 0, key.width, key.height);
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(frame, frameToPreview, null);
+		} finally {
+			g.dispose();
+		}
+	}
+
+	private void cancelWork() {
+		progressivePainter.cancel();
+		workKey = null;
+	}
+
+	@Override
+	public void dispose() {
+		cancelWork();
+
+		ImagePool pool = graphicsData.getImagePool();
+		pool.release(frame);
+		pool.release(work);
+		pool.release(preview);
+		frame = work = preview = null;
+		frameKey = null;
+		frameLayer.flush();
+	}
+
+
+	/**
+	 * Draw hovered and picked nodes and edges over the scene. Selected elements
+	 * keep their selection color.
+	 */
+	private void drawHighlights(Graphics2D g, AffineTransform worldToScreen) {
+		CyNetworkView networkView = graphicsData.getNetworkView();
+
+		Set<Long> edges = new HashSet<Long>(graphicsData.getPickingData().getPickedEdgeIndices());
+		edges.add(graphicsData.getSelectionData().getHoverEdgeIndex());
+		Set<Long> nodes = new HashSet<Long>(graphicsData.getPickingData().getPickedNodeIndices());
+		nodes.add(graphicsData.getSelectionData().getHoverNodeIndex());
+
+		Graphics2D worldGraphics = (Graphics2D) g.create();
+		try {
+			worldGraphics.transform(worldToScreen);
+			worldGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			worldGraphics.setColor(HIGHLIGHT_COLOR);
+
+			for(Long suid : edges) {
+				View<CyEdge> edgeView = NetworkToolkit.getEdgeView(networkView, suid);
+				if(edgeView == null || Boolean.TRUE.equals(edgeView.getVisualProperty(BasicVisualLexicon.EDGE_SELECTED))) {
+					continue;
+				}
+
+				CyEdge edge = edgeView.getModel();
+
+				View<CyNode> sourceView = networkView.getNodeView(edge.getSource());
+				View<CyNode> targetView = networkView.getNodeView(edge.getTarget());
+				if(sourceView == null || targetView == null) {
+					continue;
 				}
-				
-				drawnPairs.add(pairIdentifier);
+
+				Rectangle2D source = getShape(sourceView).getBounds2D();
+				Rectangle2D target = getShape(targetView).getBounds2D();
+				worldGraphics.setStroke(new BasicStroke(edgeView.getVisualProperty(BasicVisualLexicon.EDGE_WIDTH).floatValue()));
+				worldGraphics.draw(new Line2D.Double(source.getCenterX(), source.getCenterY(), target.getCenterX(), target.getCenterY()));
 			}
-		}	
-	}
-	
-	public void drawNodes(Graphics2D g2, CyNetworkView networkView, int midWidth, int midHeight, int zoomFactor){
-		Shape shape = null;
-		
-		// networkView.updateView();
-		for (View<CyNode> nodeView : networkView.getNodeViews()) {
-			
-			if(nodeView == null) {
-				// MKTODO why does this happen?
-				System.err.println("nodeView is null: networkView.getNodeViews() returns: " + networkView.getNodeViews());
-				continue;
-			}					
-			
-			//set color						
-			g2.setColor(chooseColor(nodeView, null, graphicsData));
-										
-			// Draw it only if the visual property says it is visible
-			if (nodeView.getVisualProperty(BasicVisualLexicon.NODE_VISIBLE)) {
-				shape = getShape(networkView, nodeView.getModel(), midWidth, midHeight, zoomFactor);						
-				// draw Rectangle2D.Double
-				g2.fill(shape);																
+
+			for(Long suid : nodes) {
+				View<CyNode> nodeView = NetworkToolkit.getNodeView(networkView, suid);
+				if(nodeView == null || !nodeView.getVisualProperty(BasicVisualLexicon.NODE_VISIBLE)
+						|| Boolean.TRUE.equals(nodeView.getVisualProperty(BasicVisualLexicon.NODE_SELECTED))) {
+					continue;
+				}
+				worldGraphics.fill(getShape(nodeView));
 			}
+		} finally {
+			worldGraphics.dispose();
 		}
 	}
-	private Color chooseColor(View<CyNode> nodeView, View<CyEdge> edgeView, GraphicsData graphicsData) {
-		
-		Color visualPropertyColor = null;
-		
-		Color color = null;
-		
-		if(nodeView != null){
-			
-			visualPropertyColor = (Color) nodeView.getVisualProperty(BasicVisualLexicon.NODE_FILL_COLOR);		
-	
-			
-			Long suid = nodeView.getModel().getSUID();
-			
-			if (nodeView.getVisualProperty(BasicVisualLexicon.NODE_SELECTED)) {
-				color = Color.BLUE;
-			} 
-			else if (suid.equals(graphicsData.getSelectionData().getHoverNodeIndex()) || graphicsData.getPickingData().getPickedNodeIndices().contains(suid)) {
-				color = Color.GREEN;
-			}								
-		}else if(edgeView != null){
-			
-			visualPropertyColor = (Color) edgeView.getVisualProperty(BasicVisualLexicon.NODE_FILL_COLOR);								
-			
-			Long suid = edgeView.getModel().getSUID();
-			
-			if (edgeView.getVisualProperty(BasicVisualLexicon.NODE_SELECTED)) {
-				color = Color.BLUE;
-			} 
-			else if (suid.equals(graphicsData.getSelectionData().getHoverEdgeIndex()) || graphicsData.getPickingData().getPickedEdgeIndices().contains(suid)) {
-				color = Color.GREEN;
-			}						
-		}
-		return (color == null) ? visualPropertyColor : color;
-	}
-	
+
 	/*
-	 * Utility method to create a shape for the network (ellipse, triangle, or rectangle)*/
-	public static Shape getShape(CyNetworkView networkView, CyNode node, int midWidth, int midHeight, int zoomFactor){
-		Shape shape = null;
-		
-		
-		View<CyNode> nodeView = networkView.getNodeView(node);
-		
-		//cast floats and doubles to int
-		float x = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION).floatValue()/zoomFactor;// / distanceScale;
-		float y = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION).floatValue()/zoomFactor;// / distanceScale;			
-		
-		double width  = nodeView.getVisualProperty(BasicVisualLexicon.NODE_WIDTH)/zoomFactor;
-		double height = nodeView.getVisualProperty(BasicVisualLexicon.NODE_HEIGHT)/zoomFactor;
-		shape = new Rectangle2D.Double((x+midWidth), (y+midHeight), width, height);
-		
-		
+	 * Utility method to create a shape for a node (ellipse, triangle, or rectangle) in world coordinates.
+	 * The node location is its top-left corner.*/
+	public static Shape getShape(View<CyNode> nodeView){
+		double x = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+		double y = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+		double width  = nodeView.getVisualProperty(BasicVisualLexicon.NODE_WIDTH);
+		double height = nodeView.getVisualProperty(BasicVisualLexicon.NODE_HEIGHT);
+
 		if(NodeShapeVisualProperty.TRIANGLE.equals(nodeView.getVisualProperty(BasicVisualLexicon.NODE_SHAPE))){
-			double yPosition = y+midHeight+height;
-			double xPosition = x+midWidth;
 			Path2D path = new Path2D.Double();
-			path.moveTo(xPosition, yPosition);
-			double xShifted  = xPosition + width;			
-			path.lineTo(xShifted, yPosition);			
-			xPosition = (xPosition + xShifted) / 2;//find x-coord for half base
-			double top = yPosition - height;
-			path.lineTo(xPosition, top);
+			path.moveTo(x, y + height);
+			path.lineTo(x + width, y + height);
+			path.lineTo(x + width / 2, y);
 			path.closePath();
-			shape = path;
+			return path;
 		}else if(NodeShapeVisualProperty.ELLIPSE.equals(nodeView.getVisualProperty(BasicVisualLexicon.NODE_SHAPE))){
-			shape = new Ellipse2D.Double((x+midWidth), (y+midHeight), width, height);
+			return new Ellipse2D.Double(x, y, width, height);
 		}else{
-			shape = new Rectangle2D.Double((x+midWidth), (y+midHeight), width, height);
+			return new Rectangle2D.Double(x, y, width, height);
+		}
+	}
+
+
+	/**
+	 * What a frame shows: the scene, the quality it is drawn with, the camera and the size.
+	 */
+	private static final class FrameKey {
+		final SceneSnapshot scene;
+		final RenderQuality quality;
+		final double scale;
+		final double translateX;
+		final double translateY;
+		final int width;
+		final int height;
+
+		FrameKey(SceneSnapshot scene, RenderQuality quality, Camera camera, int width, int height) {
+			this.scene = scene;
+			this.quality = quality;
+			this.scale = camera.getScale();
+			this.translateX = camera.getTranslateX();
+			this.translateY = camera.getTranslateY();
+			this.width = width;
+			this.height = height;
+		}
+
+		/** Everything but the translation is the same. */
+		boolean sameDetail(FrameKey other) {
+			return scene == other.scene && quality == other.quality && scale == other.scale
+					&& width == other.width && height == other.height;
+		}
+
+		/** Everything but the scene is the same. */
+		boolean sameViewport(FrameKey other) {
+			return quality == other.quality && scale == other.scale && translateX == other.translateX
+					&& translateY == other.translateY && width == other.width && height == other.height;
+		}
+
+		boolean sameView(FrameKey other) {
+			return scene == other.scene && sameViewport(other);
 		}
-				
-				
-		return shape;
 	}
 }
@@ -0,0 +1,157 @@
+package com.boofisher.app.cySimpleRenderer.internal.rendering;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNetworkView;
+import com.boofisher.app.cySimpleRenderer.internal.data.GraphicsData;
+
+/**
+ * Draws the birds-eye view from a cached, downsampled image of the whole network
+ * with the part visible in the main view outlined on top.
+ *
+ * The image is painted from the {@link SceneSnapshot} shared with the main view and
+ * only rebuilt when the view model has changed, and then at most every
+ * {@link #REBUILD_INTERVAL} milliseconds. In between the stale image is shown and a
+ * timer repaints once the interval has passed. When only a few elements changed,
+ * such as a selection, just their regions are drawn again right away. Camera changes
+ * in the main view only move the viewport rectangle, the image itself is just copied,
+ * from video memory where possible.
+ */
+public class RenderOverview implements GraphicsProcedure {
+
+	public static final int REBUILD_INTERVAL = 250;
+
+	private static final int MARGIN = 5;
+	private static final Color VIEWPORT_COLOR = new Color(255, 0, 0, 160);
+
+	private final ScenePainter painter = new ScenePainter();
+
+	private BufferedImage overview;
+	private final AcceleratedLayer overviewLayer = new AcceleratedLayer();
+	private AffineTransform worldToOverview;
+	private SceneSnapshot overviewScene;
+	private long overviewVersion = -1;
+	private long lastRebuild = 0;
+
+	private Timer rebuildTimer;
+	private ImagePool imagePool;
+
+
+	@Override
+	public void initialize(GraphicsData graphicsData) {
+		final JComponent container = graphicsData.getContainer();
+		imagePool = graphicsData.getImagePool();
+
+		rebuildTimer = new Timer(REBUILD_INTERVAL, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				container.repaint();
+			}
+		});
+		rebuildTimer.setRepeats(false);
+	}
+
+
+	@Override
+	public void execute(GraphicsData graphicsData) {
+		JComponent container = graphicsData.getContainer();
+		Graphics2D g = (Graphics2D) graphicsData.getMyGraphics();
+		int width = container.getWidth();
+		int height = container.getHeight();
+
+		if(width <= 0 || height <= 0 || !(graphicsData.getNetworkView() instanceof CySRNetworkView)) {
+			return;
+		}
+		CySRNetworkView networkView = (CySRNetworkView) graphicsData.getNetworkView();
+
+		long version = networkView.getChangeTracker().getVersion();
+		boolean resized = overview == null || overview.getWidth() != width || overview.getHeight() != height;
+
+		if(resized) {
+			rebuild(container, networkView, width, height, version);
+		} else if(version != overviewVersion && !repaintChanges(networkView, version)) {
+			long wait = lastRebuild + REBUILD_INTERVAL - System.currentTimeMillis();
+			if(wait <= 0) {
+				rebuild(container, networkView, width, height, version);
+			} else if(!rebuildTimer.isRunning()) {
+				rebuildTimer.setInitialDelay((int) wait);
+				rebuildTimer.start();
+			}
+		}
+
+		overviewLayer.draw(g, overview, 0, 0, container);
+		drawViewport(g, graphicsData.getMainViewBounds());
+	}
+
+
+	@Override
+	public void dispose() {
+		rebuildTimer.stop();
+		imagePool.release(overview);
+		overview = null;
+		overviewScene = null;
+		overviewLayer.flush();
+	}
+
+
+	private void rebuild(JComponent container, CySRNetworkView networkView, int width, int height, long version) {
+		if(overview == null || overview.getWidth() != width || overview.getHeight() != height) {
+			overview = imagePool.resize(overview, container.getGraphicsConfiguration(), width, height);
+		}
+
+		SceneSnapshot scene = networkView.getSceneSnapshot();
+		worldToOverview = ScenePainter.fitTransform(scene.getBounds(), width, height, MARGIN);
+
+		painter.paint(overview, scene, worldToOverview);
+		overviewLayer.invalidate();
+
+		overviewScene = scene;
+		overviewVersion = version;
+		lastRebuild = System.currentTimeMillis();
+	}
+
+	/**
+	 * Redraw only the changed regions if the current scene was derived from the one
+	 * in the image and the network bounds, and so the transform, stayed the same.
+	 */
+	private boolean repaintChanges(CySRNetworkView networkView, long version) {
+		// Asking the tracker first avoids building a whole new snapshot on every paint while a layout runs
+		if(networkView.getChangeTracker().getChangedSince(overviewVersion, version) == null) {
+			return false;
+		}
+
+		SceneSnapshot scene = networkView.getSceneSnapshot();
+		if(scene.getBaseId() != overviewScene.getId() || !scene.getBounds().equals(overviewScene.getBounds())) {
+			return false;
+		}
+
+		painter.paintRegions(overview, scene, worldToOverview, scene.getChangedRegions());
+		overviewLayer.invalidate();
+
+		overviewScene = scene;
+		overviewVersion = version;
+		return true;
+	}
+
+	private void drawViewport(Graphics2D g, Rectangle2D mainViewBounds) {
+		if(mainViewBounds == null || mainViewBounds.isEmpty()) {
+			return;
+		}
+
+		Rectangle2D viewport = worldToOverview.createTransformedShape(mainViewBounds).getBounds2D();
+
+		g.setColor(VIEWPORT_COLOR);
+		g.setStroke(new BasicStroke(2));
+		g.draw(viewport);
+	}
+}
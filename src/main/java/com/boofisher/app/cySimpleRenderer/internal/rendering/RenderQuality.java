@@ -0,0 +1,56 @@
+package com.boofisher.app.cySimpleRenderer.internal.rendering;
+
+/**
+ * How much detail the network is drawn with, from best to cheapest.
+ *
+ * @see QualityController
+ */
+public enum RenderQuality {
+
+	/** Everything, antialiased */
+	FULL(true, 1, false),
+
+	/** Everything, without antialiasing */
+	NO_ANTIALIAS(false, 1, false),
+
+	/** Only every fourth edge */
+	SAMPLED_EDGES(false, 4, false),
+
+	/** Every sixteenth edge and every node drawn as a plain rectangle */
+	COARSE(false, 16, true);
+
+
+	private final boolean antialias;
+	private final int edgeStride;
+	private final boolean simpleShapes;
+
+	private RenderQuality(boolean antialias, int edgeStride, boolean simpleShapes) {
+		this.antialias = antialias;
+		this.edgeStride = edgeStride;
+		this.simpleShapes = simpleShapes;
+	}
+
+	public boolean isAntialias() {
+		return antialias;
+	}
+
+	/** Only edges whose index is a multiple of this are drawn. */
+	public int getEdgeStride() {
+		return edgeStride;
+	}
+
+	public boolean isSimpleShapes() {
+		return simpleShapes;
+	}
+
+	/** The next cheaper quality, or this one if it is already the cheapest. */
+	public RenderQuality lower() {
+		RenderQuality[] values = values();
+		return values[Math.min(ordinal() + 1, values.length - 1)];
+	}
+
+	/** The next better quality, or this one if it is already the best. */
+	public RenderQuality higher() {
+		return values()[Math.max(ordinal() - 1, 0)];
+	}
+}
@@ -0,0 +1,371 @@
+package com.boofisher.app.cySimpleRenderer.internal.rendering;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Draws a {@link SceneSnapshot} onto any {@link Graphics2D}.
+ *
+ * Geometry stays in world space and is mapped to the device through a single
+ * {@link AffineTransform}. Candidates are looked up in the scene's {@link SpatialGridIndex}
+ * and anything whose bounds fall outside the device clip is skipped before it reaches
+ * Java2D, so painting a small tile of a huge network only costs as much as the elements
+ * that actually land on it.
+ *
+ * Painting can also be spread over several calls with {@link #start} and {@link #resume},
+ * so a huge scene does not have to be drawn in one go.
+ *
+ * When painting onto an int backed {@link BufferedImage} through a transform that only
+ * scales and translates, nodes of at most {@link #FAST_NODE_SIZE} pixels and hairline
+ * edges skip Java2D and are written straight into the pixel array, which is what most
+ * of a large network looks like when zoomed out. Bigger elements still go through Java2D.
+ * Note that touching the pixel array stops Java2D from caching the image in video memory.
+ *
+ * A painter keeps a few reusable shapes, so use one painter per thread.
+ */
+public class ScenePainter {
+
+	private final Rectangle2D.Double rectangle = new Rectangle2D.Double();
+	private final Ellipse2D.Double ellipse = new Ellipse2D.Double();
+	private final Path2D.Double triangle = new Path2D.Double();
+	private final Line2D.Double line = new Line2D.Double();
+	private final Rectangle2D.Double edgeBounds = new Rectangle2D.Double();
+
+	private boolean antialias = true;
+	private int edgeStride = 1;
+	private boolean simpleShapes = false;
+	private SpatialGridIndex.Query query;
+
+	// State of the painting in progress, worldGraphics is null when there is none
+	private Graphics2D worldGraphics;
+	private IntRaster raster;
+	private SceneSnapshot scene;
+	private Rectangle2D worldClip;
+	private int edgeCursor;
+	private int nodeCursor;
+
+	// Room around a repainted region for antialiasing, in device pixels
+	private static final int REGION_PADDING = 2;
+
+	/** Nodes no bigger than this many device pixels either way may be drawn as plain pixel fills */
+	public static final double FAST_NODE_SIZE = 4;
+
+	// Edges no wider than this many device pixels may be drawn as one pixel lines
+	private static final double HAIRLINE_WIDTH = 1;
+
+	// Elements drawn between two looks at the clock
+	private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+
+	public void setAntialias(boolean antialias) {
+		this.antialias = antialias;
+	}
+
+	/**
+	 * Only draw edges whose index is a multiple of the stride. The choice depends
+	 * on the index alone, so the same edges are drawn in every tile and every frame.
+	 */
+	public void setEdgeStride(int edgeStride) {
+		this.edgeStride = Math.max(1, edgeStride);
+	}
+
+	/** Draw every node as a rectangle, whatever its shape. */
+	public void setSimpleShapes(boolean simpleShapes) {
+		this.simpleShapes = simpleShapes;
+	}
+
+	public void setQuality(RenderQuality quality) {
+		setAntialias(quality.isAntialias());
+		setEdgeStride(quality.getEdgeStride());
+		setSimpleShapes(quality.isSimpleShapes());
+	}
+
+
+	/**
+	 * Paint the background and every element of the scene that intersects the device clip.
+	 *
+	 * @param g The graphics to paint on, its transform is left untouched
+	 * @param scene The scene to paint
+	 * @param worldToDevice Maps world coordinates to the device space of <code>g</code>
+	 * @param deviceClip The region of the device to paint
+	 */
+	public void paint(Graphics2D g, SceneSnapshot scene, AffineTransform worldToDevice, Rectangle deviceClip) {
+		start(g, scene, worldToDevice, deviceClip);
+		resume(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Paint onto an image, using the pixel array directly for small elements where possible.
+	 */
+	public void paint(BufferedImage image, SceneSnapshot scene, AffineTransform worldToDevice, Rectangle deviceClip) {
+		start(image, scene, worldToDevice, deviceClip);
+		resume(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Like {@link #start(Graphics2D, SceneSnapshot, AffineTransform, Rectangle)} but onto
+	 * an image, using the pixel array directly for small elements where possible.
+	 */
+	public void start(BufferedImage image, SceneSnapshot scene, AffineTransform worldToDevice, Rectangle deviceClip) {
+		Graphics2D g = image.createGraphics();
+		try {
+			start(g, scene, worldToDevice, deviceClip);
+		} finally {
+			// the painting keeps its own copy
+			g.dispose();
+		}
+
+		if(worldGraphics != null) {
+			raster = IntRaster.create(image, worldToDevice, deviceClip);
+		}
+	}
+
+	/**
+	 * Paint the background and get ready to paint the elements with {@link #resume}.
+	 * Any painting still in progress is abandoned. The arguments mean the same as for
+	 * {@link #paint(Graphics2D, SceneSnapshot, AffineTransform, Rectangle)} and
+	 * <code>g</code> must stay valid until painting is finished.
+	 */
+	public void start(Graphics2D g, SceneSnapshot scene, AffineTransform worldToDevice, Rectangle deviceClip) {
+		cancel();
+
+		g.setColor(scene.getBackground());
+		g.fill(deviceClip);
+
+		Rectangle2D worldClip = toWorld(worldToDevice, deviceClip);
+		if(worldClip == null) {
+			return;
+		}
+
+		SpatialGridIndex index = scene.getSpatialIndex();
+		if(query == null || query.getIndex() != index) {
+			query = index.newQuery();
+		}
+		query.run(worldClip);
+
+		this.scene = scene;
+		this.worldClip = worldClip;
+		this.edgeCursor = 0;
+		this.nodeCursor = 0;
+
+		worldGraphics = (Graphics2D) g.create();
+		worldGraphics.clip(deviceClip);
+		worldGraphics.transform(worldToDevice);
+		worldGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				antialias ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+	}
+
+	/**
+	 * Continue the painting begun by {@link #start}, edges first and then nodes,
+	 * until everything is drawn or {@link System#nanoTime()} passes the deadline.
+	 *
+	 * @return true if painting is finished
+	 */
+	public boolean resume(long deadline) {
+		if(worldGraphics == null) {
+			return true;
+		}
+
+		if(paintEdges(worldGraphics, scene, worldClip, deadline) && paintNodes(worldGraphics, scene, worldClip, deadline)) {
+			cancel();
+			return true;
+		}
+		return false;
+	}
+
+	public boolean isPainting() {
+		return worldGraphics != null;
+	}
+
+	/** Drop the painting in progress, if any. */
+	public void cancel() {
+		if(worldGraphics != null) {
+			worldGraphics.dispose();
+			worldGraphics = null;
+			raster = null;
+			scene = null;
+		}
+	}
+
+	// Only looks at the clock every few elements, and never before some progress was made
+	private static boolean pastDeadline(int count, long deadline) {
+		return deadline != Long.MAX_VALUE && count % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline;
+	}
+
+
+	private boolean paintEdges(Graphics2D g, SceneSnapshot scene, Rectangle2D worldClip, long deadline) {
+		int currentPaint = -1;
+		int currentRgb = 0;
+		boolean currentOpaque = false;
+		float currentWidth = -1;
+		boolean hairline = false;
+		int count = 0;
+
+		for(; edgeCursor < query.getEdgeCount(); edgeCursor++) {
+			if(pastDeadline(++count, deadline)) {
+				return false;
+			}
+
+			int i = query.getEdge(edgeCursor);
+			if(i % edgeStride != 0) {
+				continue;
+			}
+			scene.getEdgeBounds(i, edgeBounds);
+			if(!edgeBounds.intersects(worldClip)) {
+				continue;
+			}
+
+			if(scene.getEdgePaint(i) != currentPaint) {
+				currentPaint = scene.getEdgePaint(i);
+				Color color = scene.getColor(currentPaint);
+				g.setColor(color);
+				currentRgb = color.getRGB();
+				currentOpaque = color.getAlpha() == 255;
+			}
+			if(scene.getEdgeWidth(i) != currentWidth) {
+				currentWidth = scene.getEdgeWidth(i);
+				g.setStroke(new BasicStroke(currentWidth));
+				hairline = raster != null
+						&& currentWidth * Math.max(raster.getScaleX(), raster.getScaleY()) <= HAIRLINE_WIDTH;
+			}
+
+			int source = scene.getEdgeSource(i);
+			int target = scene.getEdgeTarget(i);
+
+			if(hairline && currentOpaque && raster.drawLine(scene.getNodeCenterX(source), scene.getNodeCenterY(source),
+					scene.getNodeCenterX(target), scene.getNodeCenterY(target), currentRgb, antialias)) {
+				continue;
+			}
+
+			line.setLine(scene.getNodeCenterX(source), scene.getNodeCenterY(source),
+					     scene.getNodeCenterX(target), scene.getNodeCenterY(target));
+			g.draw(line);
+		}
+		return true;
+	}
+
+	private boolean paintNodes(Graphics2D g, SceneSnapshot scene, Rectangle2D worldClip, long deadline) {
+		int currentPaint = -1;
+		int currentRgb = 0;
+		boolean currentOpaque = false;
+		int count = 0;
+
+		for(; nodeCursor < query.getNodeCount(); nodeCursor++) {
+			if(pastDeadline(++count, deadline)) {
+				return false;
+			}
+
+			int i = query.getNode(nodeCursor);
+
+			double x = scene.getNodeX(i);
+			double y = scene.getNodeY(i);
+			double width = scene.getNodeWidth(i);
+			double height = scene.getNodeHeight(i);
+
+			if(!worldClip.intersects(x, y, width, height)) {
+				continue;
+			}
+
+			if(scene.getNodePaint(i) != currentPaint) {
+				currentPaint = scene.getNodePaint(i);
+				Color color = scene.getColor(currentPaint);
+				g.setColor(color);
+				currentRgb = color.getRGB();
+				currentOpaque = color.getAlpha() == 255;
+			}
+
+			if(raster != null && currentOpaque && width * raster.getScaleX() <= FAST_NODE_SIZE
+					&& height * raster.getScaleY() <= FAST_NODE_SIZE) {
+				raster.fillRect(x, y, width, height, currentRgb);
+				continue;
+			}
+
+			switch(simpleShapes ? SceneSnapshot.SHAPE_RECTANGLE : scene.getNodeShape(i)) {
+				case SceneSnapshot.SHAPE_ELLIPSE:
+					ellipse.setFrame(x, y, width, height);
+					g.fill(ellipse);
+					break;
+				case SceneSnapshot.SHAPE_TRIANGLE:
+					triangle.reset();
+					triangle.moveTo(x, y + height);
+					triangle.lineTo(x + width, y + height);
+					triangle.lineTo(x + width / 2, y);
+					triangle.closePath();
+					g.fill(triangle);
+					break;
+				default:
+					rectangle.setFrame(x, y, width, height);
+					g.fill(rectangle);
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Maps a device rectangle back into world space.
+	 *
+	 * @return The world space bounding box of the device rectangle,
+	 * or <code>null</code> if the transform cannot be inverted.
+	 */
+	public static Rectangle2D toWorld(AffineTransform worldToDevice, Rectangle2D deviceRect) {
+		try {
+			return worldToDevice.createInverse().createTransformedShape(deviceRect).getBounds2D();
+		} catch (NoninvertibleTransformException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * A transform that scales and centers the given world bounds into a device area
+	 * of the given size, leaving a margin of <code>margin</code> pixels on every side.
+	 */
+	public static AffineTransform fitTransform(Rectangle2D worldBounds, int width, int height, int margin) {
+		double usableWidth = Math.max(1, width - 2 * margin);
+		double usableHeight = Math.max(1, height - 2 * margin);
+		double worldWidth = Math.max(worldBounds.getWidth(), 1);
+		double worldHeight = Math.max(worldBounds.getHeight(), 1);
+
+		double scale = Math.min(usableWidth / worldWidth, usableHeight / worldHeight);
+
+		AffineTransform transform = new AffineTransform();
+		transform.translate(width / 2.0, height / 2.0);
+		transform.scale(scale, scale);
+		transform.translate(-worldBounds.getCenterX(), -worldBounds.getCenterY());
+		return transform;
+	}
+
+	/**
+	 * Paint just the given world regions of the image, each grown by a little to cover
+	 * antialiasing, for when only a few elements changed since it was last painted.
+	 */
+	public void paintRegions(BufferedImage image, SceneSnapshot scene, AffineTransform worldToDevice,
+			                 List<Rectangle2D> worldRegions) {
+		Rectangle imageBounds = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+		for(Rectangle2D region : worldRegions) {
+			Rectangle device = worldToDevice.createTransformedShape(region).getBounds();
+			device.grow(REGION_PADDING, REGION_PADDING);
+			device = device.intersection(imageBounds);
+
+			if(!device.isEmpty()) {
+				paint(image, scene, worldToDevice, device);
+			}
+		}
+	}
+
+	/** Shorthand for a paint that covers the whole image. */
+	public void paint(BufferedImage image, SceneSnapshot scene, AffineTransform worldToDevice) {
+		paint(image, scene, worldToDevice, new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+	}
+}
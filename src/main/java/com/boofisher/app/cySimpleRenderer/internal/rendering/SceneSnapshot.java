@@ -0,0 +1,937 @@
+package com.boofisher.app.cySimpleRenderer.internal.rendering;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+import org.cytoscape.view.presentation.property.NodeShapeVisualProperty;
+
+import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNodeView;
+import com.boofisher.app.cySimpleRenderer.internal.tools.NetworkToolkit;
+import com.boofisher.app.cySimpleRenderer.internal.tools.PairIdentifier;
+
+/**
+ * A flat, primitive copy of everything needed to draw a network: node rectangles,
+ * shapes and paints plus edge endpoints, widths and paints, all in world (view model)
+ * coordinates.
+ *
+ * Building a snapshot walks the view model once. After that the snapshot never touches
+ * a {@link View} again, so it can be read from any number of threads at the same time.
+ * It serves as the display list of the network: the main view, the birds-eye view,
+ * image export and printing all replay it through a {@link ScenePainter}.
+ *
+ * Nodes are placed the same way {@link RenderNetwork} places them, the location is the
+ * top-left corner of the node, and edges join node centers. As on screen, only one edge
+ * is kept for each pair of nodes.
+ *
+ * When only a few elements changed, {@link #update} derives a new snapshot from an
+ * old one by reading just those elements again. The derived snapshot knows which
+ * world regions differ from its base, so a renderer showing the base only has to
+ * redraw those regions.
+ *
+ * Nodes moved in bulk, such as by the frames of a layout animation, are derived the
+ * same way from just their locations. The SUIDs of a move are resolved to nodes once
+ * and reused while the same array keeps being moved. A move of more than
+ * {@link #MAX_LISTED_MOVES} nodes is not listed as regions, it changes most of the
+ * picture anyway.
+ *
+ * Attributes that can change are stored in chunks of {@link #CHUNK_SIZE} elements. A
+ * derived snapshot shares every chunk with its base except the ones it changed, so
+ * deriving costs in proportion to the change and not to the size of the network. The
+ * edges of moved nodes are found through a node to edge index shared by all derived
+ * snapshots, and colors no element uses any more are dropped from the palette once
+ * they make up half of it.
+ * Nothing is ever written to a chunk once a snapshot is published, so any thread may
+ * hold on to a snapshot and read it without locking while newer ones are derived.
+ */
+public class SceneSnapshot {
+
+	public static final byte SHAPE_RECTANGLE = 0;
+	public static final byte SHAPE_ELLIPSE   = 1;
+	public static final byte SHAPE_TRIANGLE  = 2;
+
+	private static final Color DEFAULT_COLOR = Color.GRAY;
+
+	private static final int CHUNK_SHIFT = 12;
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	public static final int MAX_LISTED_MOVES = 1024;
+
+	// The palette is compacted when an update takes it past this size and twice the colors in use
+	private static final int MIN_PALETTE_LIMIT = 256;
+
+	private static final AtomicLong nextId = new AtomicLong();
+
+	private final int nodeCount;
+	private final long[] nodeSuid;
+	private final float[][] nodeX;
+	private final float[][] nodeY;
+	private final float[][] nodeWidth;
+	private final float[][] nodeHeight;
+	private final byte[][] nodeShape;
+	private final boolean[][] nodeVisible;
+	private final int[][] nodePaint;
+
+	private final int edgeCount;
+	private final long[] edgeSuid;
+	private final int[] edgeSource;
+	private final int[] edgeTarget;
+	private final float[][] edgeWidth;
+	private final int[][] edgePaint;
+
+	private final Color[] palette;
+	private final int paletteLimit;
+	private final Color background;
+	private final Rectangle2D bounds;
+
+	private volatile SpatialGridIndex spatialIndex;
+
+	// Finds elements by SUID, built on first use and shared with derived snapshots
+	private volatile SuidLookup suidLookup;
+
+	// The edges of every node, built on first use and shared with derived snapshots
+	private volatile Incidence incidence;
+
+	// The nodes of the last bulk move, shared with derived snapshots
+	private final MoveTarget lastMove;
+
+	private final long id = nextId.incrementAndGet();
+	private final long baseId;
+	private final List<Rectangle2D> changedRegions;
+
+
+	private SceneSnapshot(Builder builder) {
+		nodeCount  = builder.nodeCount;
+		nodeSuid   = builder.nodeSuid;
+		nodeX      = builder.nodeX;
+		nodeY      = builder.nodeY;
+		nodeWidth  = builder.nodeWidth;
+		nodeHeight = builder.nodeHeight;
+		nodeShape  = builder.nodeShape;
+		nodeVisible = builder.nodeVisible;
+		nodePaint  = builder.nodePaint;
+
+		edgeCount  = builder.edgeCount;
+		edgeSuid   = builder.edgeSuid;
+		edgeSource = builder.edgeSource;
+		edgeTarget = builder.edgeTarget;
+		edgeWidth  = builder.edgeWidth;
+		edgePaint  = builder.edgePaint;
+
+		palette    = builder.palette.toArray(new Color[builder.palette.size()]);
+		paletteLimit = Math.max(MIN_PALETTE_LIMIT, 2 * palette.length);
+		background = builder.background;
+		bounds     = computeBounds();
+
+		baseId = -1;
+		changedRegions = Collections.emptyList();
+		lastMove = null;
+	}
+
+	/**
+	 * Copy the base snapshot, reading the given nodes and edges from the view again and
+	 * the locations of the nodes that were moved in bulk.
+	 */
+	private SceneSnapshot(SceneSnapshot base, CyNetworkView networkView, Set<Long> changed, List<long[]> movedNodes) {
+		nodeCount   = base.nodeCount;
+		nodeSuid    = base.nodeSuid;
+		nodeX       = base.nodeX.clone();
+		nodeY       = base.nodeY.clone();
+		nodeWidth   = base.nodeWidth.clone();
+		nodeHeight  = base.nodeHeight.clone();
+		nodeShape   = base.nodeShape.clone();
+		nodeVisible = base.nodeVisible.clone();
+		nodePaint   = base.nodePaint.clone();
+		boolean[] copiedNodeChunks = new boolean[nodeX.length];
+
+		edgeCount  = base.edgeCount;
+		edgeSuid   = base.edgeSuid;
+		edgeSource = base.edgeSource;
+		edgeTarget = base.edgeTarget;
+		edgeWidth  = base.edgeWidth.clone();
+		edgePaint  = base.edgePaint.clone();
+		boolean[] copiedEdgeChunks = new boolean[edgeWidth.length];
+
+		background = base.background;
+		suidLookup = base.getSuidLookup();
+		incidence = base.incidence;
+
+		List<Color> colors = new ArrayList<Color>(Arrays.asList(base.palette));
+		Map<Color, Integer> colorIndices = new HashMap<Color, Integer>();
+		for(int i = 0; i < colors.size(); i++) {
+			colorIndices.put(colors.get(i), i);
+		}
+
+		List<Rectangle2D> regions = new ArrayList<Rectangle2D>();
+		Set<Integer> moved = new HashSet<Integer>();
+		boolean geometryChanged = false;
+
+		int moveCount = 0;
+		for(long[] suids : movedNodes) {
+			moveCount += suids.length;
+		}
+		boolean listed = moveCount <= MAX_LISTED_MOVES;
+
+		MoveTarget move = base.lastMove;
+		for(long[] suids : movedNodes) {
+			if(move == null || move.suids != suids) {
+				move = new MoveTarget(suids, suidLookup, networkView);
+			}
+			for(int k = 0; k < suids.length; k++) {
+				int node = move.nodes[k];
+				if(node < 0) {
+					continue;
+				}
+
+				CySRNodeView nodeView = move.views[k];
+				float x, y;
+				if(nodeView != null) {
+					CySRNodeView.Location location = nodeView.getLocation();
+					x = (float) location.getX();
+					y = (float) location.getY();
+				} else {
+					View<CyNode> view = NetworkToolkit.getNodeView(networkView, suids[k]);
+					if(view == null) {
+						continue;
+					}
+					x = view.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION).floatValue();
+					y = view.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION).floatValue();
+				}
+				int c = node >>> CHUNK_SHIFT, i = node & CHUNK_MASK;
+				if(x == nodeX[c][i] && y == nodeY[c][i]) {
+					continue;
+				}
+				if(listed) {
+					addNodeBounds(regions, node);
+				}
+				if(!copiedNodeChunks[c]) {
+					copiedNodeChunks[c] = true;
+					copyNodeChunk(c);
+				}
+
+				nodeX[c][i] = x;
+				nodeY[c][i] = y;
+				geometryChanged = true;
+
+				if(listed) {
+					addNodeBounds(regions, node);
+					moved.add(node);
+				}
+			}
+		}
+		lastMove = move;
+
+		for(Long suid : changed) {
+			int node = suidLookup.findNode(suid);
+			View<CyNode> nodeView = node < 0 ? null : NetworkToolkit.getNodeView(networkView, suid);
+
+			if(nodeView != null) {
+				addNodeBounds(regions, node);
+
+				int c = node >>> CHUNK_SHIFT, i = node & CHUNK_MASK;
+				if(!copiedNodeChunks[c]) {
+					copiedNodeChunks[c] = true;
+					copyNodeChunk(c);
+				}
+
+				nodeX[c][i]       = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION).floatValue();
+				nodeY[c][i]       = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION).floatValue();
+				nodeWidth[c][i]   = nodeView.getVisualProperty(BasicVisualLexicon.NODE_WIDTH).floatValue();
+				nodeHeight[c][i]  = nodeView.getVisualProperty(BasicVisualLexicon.NODE_HEIGHT).floatValue();
+				nodeShape[c][i]   = Builder.shapeOf(nodeView);
+				nodeVisible[c][i] = Boolean.TRUE.equals(nodeView.getVisualProperty(BasicVisualLexicon.NODE_VISIBLE));
+				nodePaint[c][i]   = paintIndex(viewColor(nodeView, null), colors, colorIndices);
+
+				addNodeBounds(regions, node);
+
+				if(getNodeX(node) != base.getNodeX(node) || getNodeY(node) != base.getNodeY(node)
+						|| getNodeWidth(node) != base.getNodeWidth(node) || getNodeHeight(node) != base.getNodeHeight(node)
+						|| isNodeVisible(node) != base.isNodeVisible(node)) {
+					moved.add(node);
+					geometryChanged = true;
+				}
+				continue;
+			}
+
+			int edge = suidLookup.findEdge(suid);
+			View<CyEdge> edgeView = edge < 0 ? null : NetworkToolkit.getEdgeView(networkView, suid);
+
+			if(edgeView != null) {
+				regions.add(edgeBounds(base, edge));
+
+				int c = edge >>> CHUNK_SHIFT, i = edge & CHUNK_MASK;
+				if(!copiedEdgeChunks[c]) {
+					copiedEdgeChunks[c] = true;
+					edgeWidth[c] = edgeWidth[c].clone();
+					edgePaint[c] = edgePaint[c].clone();
+				}
+
+				edgeWidth[c][i] = edgeView.getVisualProperty(BasicVisualLexicon.EDGE_WIDTH).floatValue();
+				edgePaint[c][i] = paintIndex(viewColor(null, edgeView), colors, colorIndices);
+
+				regions.add(edgeBounds(this, edge));
+				geometryChanged |= getEdgeWidth(edge) != base.getEdgeWidth(edge);
+			}
+		}
+
+		// Edges follow their nodes, an edge between two moved nodes is added for the first of them only
+		if(listed && !moved.isEmpty()) {
+			incidence = base.getIncidence();
+			for(int node : moved) {
+				for(int k = incidence.offsets[node]; k < incidence.offsets[node + 1]; k++) {
+					int edge = incidence.edges[k];
+					int other = edgeSource[edge] == node ? edgeTarget[edge] : edgeSource[edge];
+					if(other < node && moved.contains(other)) {
+						continue;
+					}
+					regions.add(edgeBounds(base, edge));
+					regions.add(edgeBounds(this, edge));
+				}
+			}
+		}
+
+		if(colors.size() > base.paletteLimit) {
+			compactPalette(colors, copiedNodeChunks, copiedEdgeChunks);
+			paletteLimit = Math.max(MIN_PALETTE_LIMIT, 2 * colors.size());
+		} else {
+			paletteLimit = base.paletteLimit;
+		}
+		palette = colors.toArray(new Color[colors.size()]);
+		if(!listed) {
+			bounds = computeBounds();
+		} else {
+			bounds = moved.isEmpty() ? base.bounds : updateBounds(base, moved);
+		}
+		baseId = listed ? base.id : -1;
+		changedRegions = listed ? Collections.unmodifiableList(regions) : Collections.<Rectangle2D>emptyList();
+
+		// Nothing moved, so the index of the base still files every element correctly
+		if(!geometryChanged) {
+			spatialIndex = base.spatialIndex;
+		}
+	}
+
+
+	/**
+	 * Walk the view model of the given network view once and copy it into a snapshot.
+	 */
+	public static SceneSnapshot create(CyNetworkView networkView) {
+		return new Builder(networkView).build();
+	}
+
+	/**
+	 * A new snapshot equal to this one except for the nodes and edges with the given
+	 * SUIDs, which are read from the view again. Only valid if nothing else changed
+	 * since this snapshot was taken, in particular no views were added or removed.
+	 * SUIDs that are not part of this snapshot are ignored.
+	 */
+	public SceneSnapshot update(CyNetworkView networkView, Set<Long> changed) {
+		return new SceneSnapshot(this, networkView, changed, Collections.<long[]>emptyList());
+	}
+
+	/**
+	 * Like {@link #update(CyNetworkView, Set)}, and also reads the locations of the nodes
+	 * of the given bulk moves again.
+	 *
+	 * @param movedNodes The SUIDs of the nodes of each bulk move, the arrays are kept
+	 * and must not be changed
+	 */
+	public SceneSnapshot update(CyNetworkView networkView, Set<Long> changed, List<long[]> movedNodes) {
+		return new SceneSnapshot(this, networkView, changed, movedNodes);
+	}
+
+
+	/** Unique among all snapshots. */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * The id of the snapshot this one was derived from by {@link #update}, or -1 if
+	 * it was built from scratch or too many nodes moved to list the changed regions.
+	 */
+	public long getBaseId() {
+		return baseId;
+	}
+
+	/**
+	 * The world regions that look different from the base snapshot: the old
+	 * and new bounds of every changed element and of the edges of moved nodes.
+	 * Empty for a snapshot built from scratch.
+	 */
+	public List<Rectangle2D> getChangedRegions() {
+		return changedRegions;
+	}
+
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public long getNodeSuid(int node) {
+		return nodeSuid[node];
+	}
+
+	public float getNodeX(int node) {
+		return nodeX[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+	}
+
+	public float getNodeY(int node) {
+		return nodeY[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+	}
+
+	public float getNodeWidth(int node) {
+		return nodeWidth[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+	}
+
+	public float getNodeHeight(int node) {
+		return nodeHeight[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+	}
+
+	public float getNodeCenterX(int node) {
+		return getNodeX(node) + getNodeWidth(node) / 2;
+	}
+
+	public float getNodeCenterY(int node) {
+		return getNodeY(node) + getNodeHeight(node) / 2;
+	}
+
+	public byte getNodeShape(int node) {
+		return nodeShape[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+	}
+
+	/**
+	 * A new world space shape for the given node, for hit testing. Painting
+	 * should reuse its own shapes instead.
+	 */
+	public Shape createNodeShape(int node) {
+		float x = getNodeX(node), y = getNodeY(node), width = getNodeWidth(node), height = getNodeHeight(node);
+
+		switch(getNodeShape(node)) {
+			case SHAPE_ELLIPSE:
+				return new Ellipse2D.Float(x, y, width, height);
+			case SHAPE_TRIANGLE:
+				Path2D.Float triangle = new Path2D.Float();
+				triangle.moveTo(x, y + height);
+				triangle.lineTo(x + width, y + height);
+				triangle.lineTo(x + width / 2, y);
+				triangle.closePath();
+				return triangle;
+			default:
+				return new Rectangle2D.Float(x, y, width, height);
+		}
+	}
+
+	public boolean isNodeVisible(int node) {
+		return nodeVisible[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+	}
+
+	public int getNodePaint(int node) {
+		return nodePaint[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public long getEdgeSuid(int edge) {
+		return edgeSuid[edge];
+	}
+
+	/** Index of the source node of the given edge. */
+	public int getEdgeSource(int edge) {
+		return edgeSource[edge];
+	}
+
+	/** Index of the target node of the given edge. */
+	public int getEdgeTarget(int edge) {
+		return edgeTarget[edge];
+	}
+
+	public float getEdgeWidth(int edge) {
+		return edgeWidth[edge >>> CHUNK_SHIFT][edge & CHUNK_MASK];
+	}
+
+	public int getEdgePaint(int edge) {
+		return edgePaint[edge >>> CHUNK_SHIFT][edge & CHUNK_MASK];
+	}
+
+	/** The color that the given paint index refers to. */
+	public Color getColor(int paint) {
+		return palette[paint];
+	}
+
+	public int getPaletteSize() {
+		return palette.length;
+	}
+
+	public Color getBackground() {
+		return background;
+	}
+
+	/**
+	 * The world space rectangle that encloses every visible node,
+	 * or an empty rectangle at the origin if there is nothing to draw.
+	 */
+	public Rectangle2D getBounds() {
+		return (Rectangle2D) bounds.clone();
+	}
+
+	/**
+	 * The spatial index of this snapshot, built on first use and shared afterwards.
+	 * A snapshot derived by {@link #update} without any element moving shares the
+	 * index of its base.
+	 */
+	public SpatialGridIndex getSpatialIndex() {
+		SpatialGridIndex index = spatialIndex;
+		if(index == null) {
+			synchronized (this) {
+				index = spatialIndex;
+				if(index == null) {
+					spatialIndex = index = new SpatialGridIndex(this);
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the world space bounding box of the given edge, widened by its stroke.
+	 */
+	public void getEdgeBounds(int edge, Rectangle2D result) {
+		float x1 = getNodeCenterX(edgeSource[edge]);
+		float y1 = getNodeCenterY(edgeSource[edge]);
+		float x2 = getNodeCenterX(edgeTarget[edge]);
+		float y2 = getNodeCenterY(edgeTarget[edge]);
+		float halfWidth = getEdgeWidth(edge) / 2;
+
+		result.setFrameFromDiagonal(Math.min(x1, x2) - halfWidth, Math.min(y1, y2) - halfWidth,
+				                    Math.max(x1, x2) + halfWidth, Math.max(y1, y2) + halfWidth);
+	}
+
+
+	private SuidLookup getSuidLookup() {
+		SuidLookup lookup = suidLookup;
+		if(lookup == null) {
+			synchronized (this) {
+				lookup = suidLookup;
+				if(lookup == null) {
+					suidLookup = lookup = new SuidLookup(nodeSuid, nodeCount, edgeSuid, edgeCount);
+				}
+			}
+		}
+		return lookup;
+	}
+
+	private void copyNodeChunk(int c) {
+		nodeX[c]       = nodeX[c].clone();
+		nodeY[c]       = nodeY[c].clone();
+		nodeWidth[c]   = nodeWidth[c].clone();
+		nodeHeight[c]  = nodeHeight[c].clone();
+		nodeShape[c]   = nodeShape[c].clone();
+		nodeVisible[c] = nodeVisible[c].clone();
+		nodePaint[c]   = nodePaint[c].clone();
+	}
+
+	private Incidence getIncidence() {
+		Incidence result = incidence;
+		if(result == null) {
+			synchronized (this) {
+				result = incidence;
+				if(result == null) {
+					incidence = result = new Incidence(edgeSource, edgeTarget, edgeCount, nodeCount);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The bounds after the given nodes moved. As long as none of them was on the border
+	 * of the old bounds those can only grow, otherwise they are computed again.
+	 */
+	private Rectangle2D updateBounds(SceneSnapshot base, Set<Integer> moved) {
+		Rectangle2D old = base.bounds;
+		if(old.isEmpty()) {
+			return computeBounds();
+		}
+
+		Rectangle2D result = (Rectangle2D) old.clone();
+		for(int node : moved) {
+			if(base.isNodeVisible(node)) {
+				float x = base.getNodeX(node), y = base.getNodeY(node);
+				if(x <= old.getMinX() || y <= old.getMinY()
+						|| x + base.getNodeWidth(node) >= old.getMaxX() || y + base.getNodeHeight(node) >= old.getMaxY()) {
+					return computeBounds();
+				}
+			}
+			if(isNodeVisible(node)) {
+				result.add(new Rectangle2D.Float(getNodeX(node), getNodeY(node), getNodeWidth(node), getNodeHeight(node)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drop the colors no element uses any more and renumber the paints of every element.
+	 * Every paint chunk is copied, which is fine since this only happens once the palette
+	 * has doubled.
+	 */
+	private void compactPalette(List<Color> colors, boolean[] copiedNodeChunks, boolean[] copiedEdgeChunks) {
+		boolean[] used = new boolean[colors.size()];
+		for(int node = 0; node < nodeCount; node++) {
+			used[getNodePaint(node)] = true;
+		}
+		for(int edge = 0; edge < edgeCount; edge++) {
+			used[getEdgePaint(edge)] = true;
+		}
+
+		int[] remap = new int[colors.size()];
+		List<Color> live = new ArrayList<Color>();
+		for(int i = 0; i < used.length; i++) {
+			if(used[i]) {
+				remap[i] = live.size();
+				live.add(colors.get(i));
+			}
+		}
+		if(live.size() == colors.size()) {
+			return;
+		}
+
+		remapChunks(nodePaint, nodeCount, copiedNodeChunks, remap);
+		remapChunks(edgePaint, edgeCount, copiedEdgeChunks, remap);
+		colors.clear();
+		colors.addAll(live);
+	}
+
+	private static void remapChunks(int[][] chunks, int count, boolean[] copied, int[] remap) {
+		for(int c = 0; c < chunks.length; c++) {
+			if(!copied[c]) {
+				copied[c] = true;
+				chunks[c] = chunks[c].clone();
+			}
+			int end = Math.min(CHUNK_SIZE, count - (c << CHUNK_SHIFT));
+			for(int i = 0; i < end; i++) {
+				chunks[c][i] = remap[chunks[c][i]];
+			}
+		}
+	}
+
+	private void addNodeBounds(List<Rectangle2D> regions, int node) {
+		if(isNodeVisible(node)) {
+			regions.add(new Rectangle2D.Float(getNodeX(node), getNodeY(node), getNodeWidth(node), getNodeHeight(node)));
+		}
+	}
+
+	private static Rectangle2D edgeBounds(SceneSnapshot scene, int edge) {
+		Rectangle2D result = new Rectangle2D.Float();
+		scene.getEdgeBounds(edge, result);
+		return result;
+	}
+
+	private static int paintIndex(Color color, List<Color> palette, Map<Color, Integer> paletteIndices) {
+		Integer index = paletteIndices.get(color);
+		if(index == null) {
+			index = palette.size();
+			palette.add(color);
+			paletteIndices.put(color, index);
+		}
+		return index;
+	}
+
+	private Rectangle2D computeBounds() {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+		for(int i = 0; i < nodeCount; i++) {
+			if(!isNodeVisible(i)) {
+				continue;
+			}
+			minX = Math.min(minX, getNodeX(i));
+			minY = Math.min(minY, getNodeY(i));
+			maxX = Math.max(maxX, getNodeX(i) + getNodeWidth(i));
+			maxY = Math.max(maxY, getNodeY(i) + getNodeHeight(i));
+		}
+
+		if(minX > maxX) {
+			return new Rectangle2D.Double();
+		}
+		return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+	}
+
+
+	/**
+	 * The base color of a node or edge view, selection included but not transient
+	 * highlighting such as hover. Pass exactly one of the two views.
+	 */
+	public static Color viewColor(View<CyNode> nodeView, View<CyEdge> edgeView) {
+		Paint visualPropertyPaint = null;
+		Boolean selected = null;
+
+		if(nodeView != null) {
+			visualPropertyPaint = nodeView.getVisualProperty(BasicVisualLexicon.NODE_FILL_COLOR);
+			selected = nodeView.getVisualProperty(BasicVisualLexicon.NODE_SELECTED);
+		} else if(edgeView != null) {
+			visualPropertyPaint = edgeView.getVisualProperty(BasicVisualLexicon.NODE_FILL_COLOR);
+			selected = edgeView.getVisualProperty(BasicVisualLexicon.NODE_SELECTED);
+		}
+
+		if(Boolean.TRUE.equals(selected)) {
+			return Color.BLUE;
+		}
+		return (visualPropertyPaint instanceof Color) ? (Color) visualPropertyPaint : DEFAULT_COLOR;
+	}
+
+
+	private static class Builder {
+
+		private final CyNetworkView networkView;
+
+		private final List<Color> palette = new ArrayList<Color>();
+		private final Map<Color, Integer> paletteIndices = new HashMap<Color, Integer>();
+
+		private int nodeCount;
+		private long[] nodeSuid;
+		private float[][] nodeX, nodeY, nodeWidth, nodeHeight;
+		private byte[][] nodeShape;
+		private boolean[][] nodeVisible;
+		private int[][] nodePaint;
+
+		private int edgeCount;
+		private long[] edgeSuid;
+		private int[] edgeSource, edgeTarget;
+		private float[][] edgeWidth;
+		private int[][] edgePaint;
+
+		private Color background;
+
+
+		Builder(CyNetworkView networkView) {
+			this.networkView = networkView;
+		}
+
+		SceneSnapshot build() {
+			Paint backgroundPaint = networkView.getVisualProperty(BasicVisualLexicon.NETWORK_BACKGROUND_PAINT);
+			background = (backgroundPaint instanceof Color) ? (Color) backgroundPaint : Color.WHITE;
+
+			Map<Long, Integer> nodeIndices = copyNodes();
+			copyEdges(nodeIndices);
+
+			return new SceneSnapshot(this);
+		}
+
+		private Map<Long, Integer> copyNodes() {
+			int capacity = networkView.getNodeViews().size();
+
+			nodeSuid    = new long[capacity];
+			int chunks  = chunkCount(capacity);
+			nodeX       = new float[chunks][CHUNK_SIZE];
+			nodeY       = new float[chunks][CHUNK_SIZE];
+			nodeWidth   = new float[chunks][CHUNK_SIZE];
+			nodeHeight  = new float[chunks][CHUNK_SIZE];
+			nodeShape   = new byte[chunks][CHUNK_SIZE];
+			nodeVisible = new boolean[chunks][CHUNK_SIZE];
+			nodePaint   = new int[chunks][CHUNK_SIZE];
+
+			Map<Long, Integer> nodeIndices = new HashMap<Long, Integer>(capacity * 2);
+
+			for (View<CyNode> nodeView : networkView.getNodeViews()) {
+				if(nodeView == null || nodeCount == capacity) {
+					continue;
+				}
+
+				int node = nodeCount++;
+				int c = node >>> CHUNK_SHIFT, i = node & CHUNK_MASK;
+				nodeSuid[node]    = nodeView.getModel().getSUID();
+				nodeX[c][i]       = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION).floatValue();
+				nodeY[c][i]       = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION).floatValue();
+				nodeWidth[c][i]   = nodeView.getVisualProperty(BasicVisualLexicon.NODE_WIDTH).floatValue();
+				nodeHeight[c][i]  = nodeView.getVisualProperty(BasicVisualLexicon.NODE_HEIGHT).floatValue();
+				nodeShape[c][i]   = shapeOf(nodeView);
+				nodeVisible[c][i] = Boolean.TRUE.equals(nodeView.getVisualProperty(BasicVisualLexicon.NODE_VISIBLE));
+				nodePaint[c][i]   = paintIndex(viewColor(nodeView, null));
+
+				nodeIndices.put(nodeSuid[node], node);
+			}
+
+			return nodeIndices;
+		}
+
+		private void copyEdges(Map<Long, Integer> nodeIndices) {
+			int capacity = networkView.getEdgeViews().size();
+
+			edgeSuid   = new long[capacity];
+			edgeSource = new int[capacity];
+			edgeTarget = new int[capacity];
+			edgeWidth  = new float[chunkCount(capacity)][CHUNK_SIZE];
+			edgePaint  = new int[chunkCount(capacity)][CHUNK_SIZE];
+
+			// A set containing all pairs of nodes that have had an edge drawn between them
+			Set<PairIdentifier> drawnPairs = new HashSet<PairIdentifier>();
+
+			for (View<CyEdge> edgeView : networkView.getEdgeViews()) {
+				if(edgeView == null || edgeCount == capacity) {
+					continue;
+				}
+
+				CyNode source = edgeView.getModel().getSource();
+				CyNode target = edgeView.getModel().getTarget();
+				Integer sourceIndex = nodeIndices.get(source.getSUID());
+				Integer targetIndex = nodeIndices.get(target.getSUID());
+
+				if(sourceIndex == null || targetIndex == null) {
+					continue;
+				}
+				if(!drawnPairs.add(NetworkToolkit.obtainPairIdentifier(source, target, nodeCount))) {
+					continue;
+				}
+
+				int edge = edgeCount++;
+				int c = edge >>> CHUNK_SHIFT, i = edge & CHUNK_MASK;
+				edgeSuid[edge]   = edgeView.getModel().getSUID();
+				edgeSource[edge] = sourceIndex;
+				edgeTarget[edge] = targetIndex;
+				edgeWidth[c][i]  = edgeView.getVisualProperty(BasicVisualLexicon.EDGE_WIDTH).floatValue();
+				edgePaint[c][i]  = paintIndex(viewColor(null, edgeView));
+			}
+		}
+
+		private static int chunkCount(int capacity) {
+			return (capacity + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+		}
+
+		private int paintIndex(Color color) {
+			return SceneSnapshot.paintIndex(color, palette, paletteIndices);
+		}
+
+		private static byte shapeOf(View<CyNode> nodeView) {
+			Object shape = nodeView.getVisualProperty(BasicVisualLexicon.NODE_SHAPE);
+
+			if(NodeShapeVisualProperty.TRIANGLE.equals(shape)) {
+				return SHAPE_TRIANGLE;
+			} else if(NodeShapeVisualProperty.ELLIPSE.equals(shape)) {
+				return SHAPE_ELLIPSE;
+			}
+			return SHAPE_RECTANGLE;
+		}
+	}
+
+
+	/**
+	 * Maps SUIDs to element indices with two sorted arrays per element type,
+	 * which is far smaller than a map of boxed values.
+	 */
+	private static class SuidLookup {
+
+		private final long[] sortedNodeSuids;
+		private final int[] nodeIndices;
+		private final long[] sortedEdgeSuids;
+		private final int[] edgeIndices;
+
+		SuidLookup(long[] nodeSuid, int nodeCount, long[] edgeSuid, int edgeCount) {
+			sortedNodeSuids = Arrays.copyOf(nodeSuid, nodeCount);
+			nodeIndices = sortIndices(nodeSuid, sortedNodeSuids);
+			sortedEdgeSuids = Arrays.copyOf(edgeSuid, edgeCount);
+			edgeIndices = sortIndices(edgeSuid, sortedEdgeSuids);
+		}
+
+		// Sorts the SUIDs in place and returns the original index of each sorted entry
+		private static int[] sortIndices(long[] suids, long[] sorted) {
+			Arrays.sort(sorted);
+			int[] indices = new int[sorted.length];
+			for(int i = 0; i < sorted.length; i++) {
+				indices[Arrays.binarySearch(sorted, suids[i])] = i;
+			}
+			return indices;
+		}
+
+		int findNode(long suid) {
+			int position = Arrays.binarySearch(sortedNodeSuids, suid);
+			return position < 0 ? -1 : nodeIndices[position];
+		}
+
+		int findEdge(long suid) {
+			int position = Arrays.binarySearch(sortedEdgeSuids, suid);
+			return position < 0 ? -1 : edgeIndices[position];
+		}
+	}
+
+
+	/**
+	 * The nodes and views of the SUIDs of a bulk move, -1 and null for SUIDs that are not
+	 * part of the snapshot. Only valid while no views are added or removed, which makes
+	 * the next snapshot start from scratch.
+	 */
+	private static class MoveTarget {
+
+		final long[] suids;
+		final int[] nodes;
+		final CySRNodeView[] views;
+
+		MoveTarget(long[] suids, SuidLookup lookup, CyNetworkView networkView) {
+			this.suids = suids;
+			nodes = new int[suids.length];
+			views = new CySRNodeView[suids.length];
+			for(int k = 0; k < suids.length; k++) {
+				nodes[k] = lookup.findNode(suids[k]);
+				if(nodes[k] >= 0) {
+					View<CyNode> nodeView = NetworkToolkit.getNodeView(networkView, suids[k]);
+					if(nodeView instanceof CySRNodeView) {
+						views[k] = (CySRNodeView) nodeView;
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * The edges of every node in compressed row form, the edges of node n are
+	 * <code>edges[offsets[n]]</code> up to but excluding <code>edges[offsets[n + 1]]</code>.
+	 */
+	private static class Incidence {
+
+		final int[] offsets;
+		final int[] edges;
+
+		Incidence(int[] edgeSource, int[] edgeTarget, int edgeCount, int nodeCount) {
+			offsets = new int[nodeCount + 1];
+			for(int edge = 0; edge < edgeCount; edge++) {
+				offsets[edgeSource[edge] + 1]++;
+				if(edgeTarget[edge] != edgeSource[edge]) {
+					offsets[edgeTarget[edge] + 1]++;
+				}
+			}
+			for(int node = 0; node < nodeCount; node++) {
+				offsets[node + 1] += offsets[node];
+			}
+
+			edges = new int[offsets[nodeCount]];
+			int[] next = Arrays.copyOf(offsets, nodeCount);
+			for(int edge = 0; edge < edgeCount; edge++) {
+				edges[next[edgeSource[edge]]++] = edge;
+				if(edgeTarget[edge] != edgeSource[edge]) {
+					edges[next[edgeTarget[edge]]++] = edge;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package com.boofisher.app.cySimpleRenderer.internal.rendering;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the world space of a {@link SceneSnapshot}, used to find the
+ * nodes and edges that may overlap a rectangle without looking at every element.
+ *
+ * Each element is filed under every cell its bounding box touches. Elements that
+ * would touch more than {@link #MAX_CELLS_PER_ELEMENT} cells, typically long edges,
+ * are kept in a separate list that every query returns, so one edge across the
+ * whole network does not get copied into every cell.
+ *
+ * The index is immutable once built and can be shared by any number of threads,
+ * each thread running its own {@link Query}.
+ */
+public class SpatialGridIndex {
+
+	private static final int MAX_CELLS_PER_ELEMENT = 64;
+	private static final int MAX_GRID_SIZE = 1024;
+
+	private final SceneSnapshot scene;
+
+	private final double originX;
+	private final double originY;
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+
+	// Cell contents in compressed row form, cell c holds items[start[c]] to items[start[c + 1] - 1]
+	private final int[] nodeCellStart;
+	private final int[] nodeCellItems;
+	private final int[] edgeCellStart;
+	private final int[] edgeCellItems;
+
+	private final int[] largeEdges;
+
+
+	public SpatialGridIndex(SceneSnapshot scene) {
+		this.scene = scene;
+
+		Rectangle2D bounds = scene.getBounds();
+		int elementCount = Math.max(1, scene.getNodeCount() + scene.getEdgeCount());
+
+		// Aim for roughly one element per cell
+		double area = Math.max(bounds.getWidth(), 1) * Math.max(bounds.getHeight(), 1);
+		double size = Math.sqrt(area / elementCount);
+		size = Math.max(size, Math.max(bounds.getWidth(), bounds.getHeight()) / MAX_GRID_SIZE);
+
+		this.cellSize = Math.max(size, 1);
+		this.originX = bounds.getX();
+		this.originY = bounds.getY();
+		this.columns = Math.max(1, (int) Math.ceil(bounds.getWidth() / cellSize));
+		this.rows = Math.max(1, (int) Math.ceil(bounds.getHeight() / cellSize));
+
+		Rectangle2D.Double elementBounds = new Rectangle2D.Double();
+
+		// Nodes: count, then fill
+		int[] nodeCounts = new int[columns * rows + 1];
+		for(int i = 0; i < scene.getNodeCount(); i++) {
+			if(scene.isNodeVisible(i)) {
+				nodeBounds(i, elementBounds);
+				addToCells(elementBounds, i, nodeCounts, null, null);
+			}
+		}
+		nodeCellStart = prefixSum(nodeCounts);
+		nodeCellItems = new int[nodeCellStart[nodeCellStart.length - 1]];
+		int[] nodeFill = Arrays.copyOf(nodeCellStart, nodeCellStart.length);
+		for(int i = 0; i < scene.getNodeCount(); i++) {
+			if(scene.isNodeVisible(i)) {
+				nodeBounds(i, elementBounds);
+				addToCells(elementBounds, i, null, nodeFill, nodeCellItems);
+			}
+		}
+
+		// Edges: the same, except that edges spanning too many cells are set aside
+		int[] edgeCounts = new int[columns * rows + 1];
+		int largeEdgeCount = 0;
+		for(int i = 0; i < scene.getEdgeCount(); i++) {
+			scene.getEdgeBounds(i, elementBounds);
+			if(!addToCells(elementBounds, i, edgeCounts, null, null)) {
+				largeEdgeCount++;
+			}
+		}
+		edgeCellStart = prefixSum(edgeCounts);
+		edgeCellItems = new int[edgeCellStart[edgeCellStart.length - 1]];
+		largeEdges = new int[largeEdgeCount];
+		int[] edgeFill = Arrays.copyOf(edgeCellStart, edgeCellStart.length);
+		for(int i = 0, large = 0; i < scene.getEdgeCount(); i++) {
+			scene.getEdgeBounds(i, elementBounds);
+			if(!addToCells(elementBounds, i, null, edgeFill, edgeCellItems)) {
+				largeEdges[large++] = i;
+			}
+		}
+	}
+
+
+	public SceneSnapshot getScene() {
+		return scene;
+	}
+
+	/** A new, reusable query against this index. A query must only be used by one thread at a time. */
+	public Query newQuery() {
+		return new Query();
+	}
+
+	/**
+	 * Whether any node or edge actually overlaps the given world space rectangle.
+	 * This allocates a query, threads that ask repeatedly should keep their own.
+	 */
+	public boolean intersectsAny(Rectangle2D world) {
+		return newQuery().intersectsAny(world);
+	}
+
+
+	private void nodeBounds(int node, Rectangle2D result) {
+		result.setRect(scene.getNodeX(node), scene.getNodeY(node), scene.getNodeWidth(node), scene.getNodeHeight(node));
+	}
+
+	private int column(double x) {
+		return clamp((int) Math.floor((x - originX) / cellSize), columns);
+	}
+
+	private int row(double y) {
+		return clamp((int) Math.floor((y - originY) / cellSize), rows);
+	}
+
+	private static int clamp(int value, int size) {
+		return value < 0 ? 0 : (value >= size ? size - 1 : value);
+	}
+
+	/**
+	 * Either counts (counts != null) or files (fill != null) an element under every cell it touches.
+	 * @return false if the element touches too many cells and was not added
+	 */
+	private boolean addToCells(Rectangle2D bounds, int element, int[] counts, int[] fill, int[] items) {
+		int c0 = column(bounds.getMinX()), c1 = column(bounds.getMaxX());
+		int r0 = row(bounds.getMinY()), r1 = row(bounds.getMaxY());
+
+		if((c1 - c0 + 1) * (r1 - r0 + 1) > MAX_CELLS_PER_ELEMENT) {
+			return false;
+		}
+
+		for(int r = r0; r <= r1; r++) {
+			for(int c = c0; c <= c1; c++) {
+				int cell = r * columns + c;
+				if(counts != null) {
+					counts[cell]++;
+				} else {
+					items[fill[cell]++] = element;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static int[] prefixSum(int[] counts) {
+		int[] start = new int[counts.length];
+		int sum = 0;
+		for(int i = 0; i < counts.length; i++) {
+			start[i] = sum;
+			sum += counts[i];
+		}
+		return start;
+	}
+
+
+	/**
+	 * Collects the elements whose cells overlap a rectangle. Results are candidates,
+	 * in ascending index order, and may include elements whose exact bounds miss the
+	 * rectangle. The result arrays are reused by the next run.
+	 */
+	public class Query {
+
+		private final int[] nodeStamps = new int[scene.getNodeCount()];
+		private final int[] edgeStamps = new int[scene.getEdgeCount()];
+		private int stamp = 0;
+
+		private int[] nodes = new int[16];
+		private int[] edges = new int[16];
+		private int nodeCount;
+		private int edgeCount;
+
+		private final Rectangle2D.Double elementBounds = new Rectangle2D.Double();
+
+
+		public SpatialGridIndex getIndex() {
+			return SpatialGridIndex.this;
+		}
+
+		public void run(Rectangle2D world) {
+			nextStamp();
+			nodeCount = 0;
+			edgeCount = 0;
+
+			int c0 = column(world.getMinX()), c1 = column(world.getMaxX());
+			int r0 = row(world.getMinY()), r1 = row(world.getMaxY());
+
+			for(int r = r0; r <= r1; r++) {
+				for(int c = c0; c <= c1; c++) {
+					int cell = r * columns + c;
+
+					for(int i = nodeCellStart[cell]; i < nodeCellStart[cell + 1]; i++) {
+						int node = nodeCellItems[i];
+						if(nodeStamps[node] != stamp) {
+							nodeStamps[node] = stamp;
+							nodes = append(nodes, nodeCount++, node);
+						}
+					}
+					for(int i = edgeCellStart[cell]; i < edgeCellStart[cell + 1]; i++) {
+						int edge = edgeCellItems[i];
+						if(edgeStamps[edge] != stamp) {
+							edgeStamps[edge] = stamp;
+							edges = append(edges, edgeCount++, edge);
+						}
+					}
+				}
+			}
+			for(int edge : largeEdges) {
+				edges = append(edges, edgeCount++, edge);
+			}
+
+			Arrays.sort(nodes, 0, nodeCount);
+			Arrays.sort(edges, 0, edgeCount);
+		}
+
+		/**
+		 * Whether any element's exact bounds overlap the rectangle. Stops at the first hit.
+		 */
+		public boolean intersectsAny(Rectangle2D world) {
+			run(world);
+			for(int i = 0; i < nodeCount; i++) {
+				nodeBounds(nodes[i], elementBounds);
+				if(elementBounds.intersects(world)) {
+					return true;
+				}
+			}
+			for(int i = 0; i < edgeCount; i++) {
+				scene.getEdgeBounds(edges[i], elementBounds);
+				if(elementBounds.intersects(world)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public int getNodeCount() {
+			return nodeCount;
+		}
+
+		public int getNode(int i) {
+			return nodes[i];
+		}
+
+		public int getEdgeCount() {
+			return edgeCount;
+		}
+
+		public int getEdge(int i) {
+			return edges[i];
+		}
+
+		private void nextStamp() {
+			stamp++;
+			if(stamp == 0) {
+				// Wrapped around, old stamps could collide with new ones
+				Arrays.fill(nodeStamps, 0);
+				Arrays.fill(edgeStamps, 0);
+				stamp = 1;
+			}
+		}
+
+		private int[] append(int[] array, int index, int value) {
+			if(index == array.length) {
+				array = Arrays.copyOf(array, array.length * 2);
+			}
+			array[index] = value;
+			return array;
+		}
+	}
+}
@@ -1,8 +1,10 @@
 package com.boofisher.app.cySimpleRenderer.internal.tools;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Set;
 
+import com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.CySRNetworkView;
 import com.boofisher.app.cySimpleRenderer.internal.geometric.Vector3;
 import com.boofisher.app.cySimpleRenderer.internal.tools.NetworkToolkit;
 import com.boofisher.app.cySimpleRenderer.internal.tools.PairIdentifier;
@@ -23,6 +25,70 @@ public class NetworkToolkit {
 	final static Logger logger = Logger.getLogger(CyUserLog.NAME);
 	private static final String SELECTED_COLUMN_NAME = "selected";
 	
+	/**
+	 * Find the view of the node with the given SUID. For a {@link CySRNetworkView} this
+	 * is a lookup in its SUID index, without going through the network model or boxing.
+	 * 
+	 * @return The node view, or null if there is no such node
+	 */
+	public static View<CyNode> getNodeView(CyNetworkView networkView, long suid) {
+		if (networkView instanceof CySRNetworkView) {
+			return ((CySRNetworkView) networkView).getNodeView(suid);
+		}
+		
+		CyNode node = networkView.getModel().getNode(suid);
+		return node == null ? null : networkView.getNodeView(node);
+	}
+	
+	/**
+	 * Find the view of the edge with the given SUID, see {@link #getNodeView(CyNetworkView, long)}.
+	 * 
+	 * @return The edge view, or null if there is no such edge
+	 */
+	public static View<CyEdge> getEdgeView(CyNetworkView networkView, long suid) {
+		if (networkView instanceof CySRNetworkView) {
+			return ((CySRNetworkView) networkView).getEdgeView(suid);
+		}
+		
+		CyEdge edge = networkView.getModel().getEdge(suid);
+		return edge == null ? null : networkView.getEdgeView(edge);
+	}
+	
+	/**
+	 * The SUIDs of the nodes that were added to the network after its view was created and
+	 * whose location nothing has set since. Only a {@link CySRNetworkView} keeps track of them, for
+	 * other views there are none.
+	 */
+	public static long[] getUnplacedNodes(CyNetworkView networkView) {
+		if (networkView instanceof CySRNetworkView) {
+			return ((CySRNetworkView) networkView).getUnplacedNodes();
+		}
+		return new long[0];
+	}
+	
+	/**
+	 * Move the nodes with the given SUIDs. A {@link CySRNetworkView} takes all of them
+	 * in one bulk update, other views get the visual properties set node by node.
+	 * 
+	 * @param xyz The x, y and z location of each node, three values per SUID
+	 */
+	public static void setNodePositions(CyNetworkView networkView, long[] suids, double[] xyz) {
+		if (networkView instanceof CySRNetworkView) {
+			((CySRNetworkView) networkView).setNodePositions(suids, xyz);
+			return;
+		}
+		
+		for (int i = 0; i < suids.length; i++) {
+			View<CyNode> nodeView = getNodeView(networkView, suids[i]);
+			
+			if (nodeView != null) {
+				nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, xyz[i * 3]);
+				nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, xyz[i * 3 + 1]);
+				nodeView.setVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION, xyz[i * 3 + 2]);
+			}
+		}
+	}
+	
 	/**
 	 * Find the average position of a given set of nodes.
 	 * 
@@ -38,7 +104,7 @@ public class NetworkToolkit {
 		View<CyNode> nodeView;
 		
 		for (Long index : nodeSUIDS) {
-			nodeView = networkView.getNodeView(networkView.getModel().getNode(index));
+			nodeView = getNodeView(networkView, index);
 
 			if (nodeView != null) {
 				x += nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
@@ -199,54 +265,30 @@ public class NetworkToolkit {
 	 * @param displacement The displacement vector
 	 */
 	public static void displaceNodes(Set<Integer> nodeIndices, CyNetworkView networkView, double distanceScale, Vector3 displacement) {
+		long[] suids = new long[nodeIndices.size()];
+		double[] positions = new double[suids.length * 3];
+		int count = 0;
+		
 		View<CyNode> nodeView;
 		
 		for (Integer index : nodeIndices) {
-			nodeView = networkView.getNodeView(networkView.getModel().getNode(index));
-			
-			if (nodeView != null) {
-				nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, 
-						nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION)
-								+ displacement.x() * distanceScale);
-				
-				nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, 
-						nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION)
-								+ displacement.y() * distanceScale);
-				
-				nodeView.setVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION, 
-						nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION)
-								+ displacement.z() * distanceScale);
-			}
-		}
-	}
-	
-	/**
-	 * Moves all of the given nodes by the given displacement vector.
-	 * 
-	 * @param nodeViews The node view objects to move
-	 * @param distanceScale The distance scaling used to convert between Cytoscape and renderer coordinates
-	 * @param displacement The displacement vector
-	 */
-	public static void displaceNodes(Collection<View<CyNode>> nodeViews, double distanceScale, Vector3 displacement) {
-		for (View<CyNode> nodeView : nodeViews) {
+			nodeView = getNodeView(networkView, index);
 			
 			if (nodeView != null) {
-				nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, 
-						nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION)
-								+ displacement.x() * distanceScale);
-				
-				nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, 
-						nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION)
-								+ displacement.y() * distanceScale);
-				
-				nodeView.setVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION, 
-						nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION)
-								+ displacement.z() * distanceScale);
+				suids[count] = index;
+				positions[count * 3] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION)
+						+ displacement.x() * distanceScale;
+				positions[count * 3 + 1] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION)
+						+ displacement.y() * distanceScale;
+				positions[count * 3 + 2] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION)
+						+ displacement.z() * distanceScale;
+				count++;
 			}
 		}
+		
+		setNodePositions(networkView, Arrays.copyOf(suids, count), positions);
 	}
 	
-	
 	// Updates data in CyTable as well as View<CyNode>
 	public static void deselectNodes(Set<CyNode> nodes, CyNetworkView networkView) {
 		CyNetwork network = networkView.getModel();
@@ -274,7 +316,7 @@ public class NetworkToolkit {
 		CyRow row = table.getRow(network.getNode(suid).getSUID());
 		
 		row.set(SELECTED_COLUMN_NAME, selected);			
-		networkView.getNodeView(network.getNode(suid)).setVisualProperty(
+		getNodeView(networkView, suid).setVisualProperty(
 				BasicVisualLexicon.NODE_SELECTED, selected);		
 	}
 
@@ -316,7 +358,7 @@ public class NetworkToolkit {
 		
 		row.set(SELECTED_COLUMN_NAME, selected);
 		
-		networkView.getEdgeView(network.getEdge(suid)).setVisualProperty(
+		getEdgeView(networkView, suid).setVisualProperty(
 				BasicVisualLexicon.EDGE_SELECTED, selected);
 	}
 	
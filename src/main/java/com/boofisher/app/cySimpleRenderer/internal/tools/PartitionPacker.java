@@ -0,0 +1,205 @@
+package com.boofisher.app.cySimpleRenderer.internal.tools;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Packs the bounding boxes of graph partitions next to each other, without overlap
+ * and with little space in between.
+ *
+ * The bounds of all partitions are found in one pass over their nodes. If all nodes
+ * lie in one plane the boxes are packed on shelves: sorted by decreasing height, each
+ * shelf is filled left to right up to a width that makes the result about square, then
+ * the next shelf starts above the tallest box of the one below. Otherwise the same is
+ * done in layers: sorted by decreasing height, shelves fill the floor of a layer along
+ * x and then z, and the next layer starts above the tallest box of the one below.
+ *
+ * Sorting is O(c log c) for c partitions and moving the nodes O(n). The average position
+ * of all nodes is the same before and after packing.
+ */
+public class PartitionPacker {
+
+	// Space between neighboring boxes
+	public static final double DEFAULT_GAP = 50;
+
+	// Boxes thinner than this along z count as flat
+	private static final double FLAT = 1e-6;
+
+	private final double[] positions;
+	private final List<int[]> partitions;
+	private final double gap;
+
+	// Per partition: min x, y, z, then max x, y, z
+	private double[] bounds;
+
+	// Per partition: where the min corner of its box goes
+	private double[] corners;
+
+
+	/**
+	 * @param positions The x, y and z location of every node, changed in place by {@link #pack()}
+	 * @param partitions The partitions to pack, as indices into the positions
+	 * @param gap The space to leave between partitions
+	 */
+	public PartitionPacker(double[] positions, List<int[]> partitions, double gap) {
+		this.positions = positions;
+		this.partitions = partitions;
+		this.gap = gap;
+	}
+
+
+	/**
+	 * Move the nodes of each partition so the partitions are packed.
+	 */
+	public void pack() {
+		int count = partitions.size();
+		if (count == 0) {
+			return;
+		}
+
+		findBounds();
+
+		boolean flat = true;
+		for (int p = 0; p < count && flat; p++) {
+			flat = bounds[p * 6 + 5] - bounds[p * 6 + 2] < FLAT && Math.abs(bounds[p * 6 + 2] - bounds[2]) < FLAT;
+		}
+
+		corners = new double[count * 3];
+		if (flat) {
+			packShelves();
+		} else {
+			packLayers();
+		}
+
+		// Move each partition, and then everything back to where the nodes were on average
+		double[] displacements = new double[count * 3];
+		double[] moved = new double[3];
+		int nodeCount = 0;
+		for (int p = 0; p < count; p++) {
+			int size = partitions.get(p).length;
+			for (int d = 0; d < 3; d++) {
+				displacements[p * 3 + d] = corners[p * 3 + d] - bounds[p * 6 + d];
+				moved[d] += displacements[p * 3 + d] * size;
+			}
+			nodeCount += size;
+		}
+
+		for (int p = 0; p < count; p++) {
+			double dx = displacements[p * 3] - moved[0] / nodeCount;
+			double dy = displacements[p * 3 + 1] - moved[1] / nodeCount;
+			double dz = flat ? 0 : displacements[p * 3 + 2] - moved[2] / nodeCount;
+			for (int node : partitions.get(p)) {
+				positions[node * 3] += dx;
+				positions[node * 3 + 1] += dy;
+				positions[node * 3 + 2] += dz;
+			}
+		}
+	}
+
+
+	// The bounds of every partition, in one pass over their nodes
+	private void findBounds() {
+		int count = partitions.size();
+		bounds = new double[count * 6];
+
+		for (int p = 0; p < count; p++) {
+			double minX = Double.POSITIVE_INFINITY, minY = minX, minZ = minX;
+			double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+
+			for (int node : partitions.get(p)) {
+				double x = positions[node * 3], y = positions[node * 3 + 1], z = positions[node * 3 + 2];
+				minX = Math.min(minX, x);
+				minY = Math.min(minY, y);
+				minZ = Math.min(minZ, z);
+				maxX = Math.max(maxX, x);
+				maxY = Math.max(maxY, y);
+				maxZ = Math.max(maxZ, z);
+			}
+
+			bounds[p * 6] = minX;
+			bounds[p * 6 + 1] = minY;
+			bounds[p * 6 + 2] = minZ;
+			bounds[p * 6 + 3] = maxX;
+			bounds[p * 6 + 4] = maxY;
+			bounds[p * 6 + 5] = maxZ;
+		}
+	}
+
+	// The size of the box of a partition along an axis, with the gap added
+	private double size(int p, int axis) {
+		return bounds[p * 6 + 3 + axis] - bounds[p * 6 + axis] + gap;
+	}
+
+	// The partitions sorted by decreasing height
+	private Integer[] byHeight() {
+		Integer[] order = new Integer[partitions.size()];
+		for (int p = 0; p < order.length; p++) {
+			order[p] = p;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(size(b, 1), size(a, 1));
+			}
+		});
+		return order;
+	}
+
+	private void packShelves() {
+		double area = 0, widest = 0;
+		for (int p = 0; p < partitions.size(); p++) {
+			area += size(p, 0) * size(p, 1);
+			widest = Math.max(widest, size(p, 0));
+		}
+		double width = Math.max(widest, Math.sqrt(area));
+
+		double x = 0, y = 0, shelfHeight = 0;
+		for (int p : byHeight()) {
+			if (x > 0 && x + size(p, 0) > width) {
+				x = 0;
+				y += shelfHeight;
+				shelfHeight = 0;
+			}
+			corners[p * 3] = x;
+			corners[p * 3 + 1] = y;
+			corners[p * 3 + 2] = bounds[p * 6 + 2];
+			x += size(p, 0);
+			shelfHeight = Math.max(shelfHeight, size(p, 1));
+		}
+	}
+
+	private void packLayers() {
+		double volume = 0, widest = 0, deepest = 0;
+		for (int p = 0; p < partitions.size(); p++) {
+			volume += size(p, 0) * size(p, 1) * size(p, 2);
+			widest = Math.max(widest, size(p, 0));
+			deepest = Math.max(deepest, size(p, 2));
+		}
+		double side = Math.cbrt(volume);
+		double width = Math.max(widest, side);
+		double depth = Math.max(deepest, side);
+
+		double x = 0, y = 0, z = 0, rowDepth = 0, layerHeight = 0;
+		for (int p : byHeight()) {
+			if (x > 0 && x + size(p, 0) > width) {
+				x = 0;
+				z += rowDepth;
+				rowDepth = 0;
+
+				// The floor of the layer is full, start the next one on top
+				if (z + size(p, 2) > depth) {
+					z = 0;
+					y += layerHeight;
+					layerHeight = 0;
+				}
+			}
+			corners[p * 3] = x;
+			corners[p * 3 + 1] = y;
+			corners[p * 3 + 2] = z;
+			x += size(p, 0);
+			rowDepth = Math.max(rowDepth, size(p, 2));
+			layerHeight = Math.max(layerHeight, size(p, 1));
+		}
+	}
+}
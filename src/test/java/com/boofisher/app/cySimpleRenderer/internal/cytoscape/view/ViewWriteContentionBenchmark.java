@@ -0,0 +1,166 @@
+package com.boofisher.app.cySimpleRenderer.internal.cytoscape.view;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures visual property writes to {@link CySRView} from 1 to 32 threads at once, and
+ * compares them with the copy-on-write map the views used before, where every write
+ * published a new copy of the whole map with a compare-and-set.
+ *
+ * Two cases are run for each number of writers. In the shared case all writers set
+ * different properties of the same views, the worst case for contention. In the private
+ * case each writer has views of its own, which shows the cost of a write without
+ * contention. Changes are not reported to a tracker, so only the map update is measured.
+ *
+ * This is not a unit test, run it with
+ * <pre>java -cp target/classes:target/test-classes:&lt;cytoscape api jars&gt; \
+ *     com.boofisher.app.cySimpleRenderer.internal.cytoscape.view.ViewWriteContentionBenchmark</pre>
+ * It prints millions of writes per second.
+ */
+public class ViewWriteContentionBenchmark {
+
+	private static final int[] WRITER_COUNTS = { 1, 2, 4, 8, 16, 32 };
+
+	// Properties already set on every view before measuring, like a styled node has
+	private static final int PROPERTY_COUNT = 24;
+
+	// Views the writers cycle through, so the maps do not all stay in the cache
+	private static final int VIEW_COUNT = 256;
+
+	private static final long WARMUP_MILLIS = 500;
+	private static final long MEASURE_MILLIS = 1000;
+
+
+	public static void main(String[] args) throws InterruptedException {
+		System.out.println("writers  case     copy-on-write  per-property  (million writes per second)");
+		for(int writers : WRITER_COUNTS) {
+			for(boolean shared : new boolean[] { true, false }) {
+				double copying = run(new CopyOnWriteFactory(), writers, shared);
+				double perProperty = run(new ViewFactory(), writers, shared);
+				System.out.println(String.format("%7d  %-7s  %13.2f  %12.2f",
+						writers, shared ? "shared" : "private", copying, perProperty));
+			}
+		}
+	}
+
+	private static double run(TargetFactory factory, final int writers, boolean shared) throws InterruptedException {
+		final Target[][] targets = new Target[writers][];
+		for(int w = 0; w < writers; w++) {
+			if(w == 0 || !shared) {
+				targets[w] = new Target[VIEW_COUNT];
+				for(int v = 0; v < VIEW_COUNT; v++) {
+					targets[w][v] = factory.create();
+					for(int p = 0; p < PROPERTY_COUNT; p++) {
+						targets[w][v].put(propertyId(p), 0.0);
+					}
+				}
+			} else {
+				targets[w] = targets[0];
+			}
+		}
+
+		final AtomicLongArray counts = new AtomicLongArray(writers);
+		final CountDownLatch started = new CountDownLatch(writers);
+		final long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1000000L;
+		final long end = warmupEnd + MEASURE_MILLIS * 1000000L;
+
+		Thread[] threads = new Thread[writers];
+		for(int w = 0; w < writers; w++) {
+			final int writer = w;
+			threads[w] = new Thread() {
+				@Override
+				public void run() {
+					String id = propertyId(writer % PROPERTY_COUNT);
+					Target[] views = targets[writer];
+					started.countDown();
+
+					long count = 0;
+					int v = 0;
+					long now;
+					while((now = System.nanoTime()) < end) {
+						for(int i = 0; i < 64; i++) {
+							views[v].put(id, (double) i);
+							v = (v + 1) % VIEW_COUNT;
+						}
+						if(now >= warmupEnd) {
+							count += 64;
+						}
+					}
+					counts.set(writer, count);
+				}
+			};
+			threads[w].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		long total = 0;
+		for(int w = 0; w < writers; w++) {
+			total += counts.get(w);
+		}
+		return total / (MEASURE_MILLIS * 1000.0);
+	}
+
+	private static String propertyId(int p) {
+		return "PROPERTY_" + p;
+	}
+
+
+	private interface Target {
+		void put(String propertyId, Object value);
+	}
+
+	private interface TargetFactory {
+		Target create();
+	}
+
+	// The views as they are now
+	private static class ViewFactory implements TargetFactory {
+		@Override
+		public Target create() {
+			final CySRView<Object> view = new CySRView<Object>(null, new ViewChangeTracker()) {
+				@Override
+				public Object getModel() {
+					return null;
+				}
+
+				@Override
+				protected void notifyChanged() {
+				}
+			};
+			return new Target() {
+				@Override
+				public void put(String propertyId, Object value) {
+					view.setVisualProperty(propertyId, value);
+				}
+			};
+		}
+	}
+
+	// The map the views used before, copied and swapped in on every write
+	private static class CopyOnWriteFactory implements TargetFactory {
+		@Override
+		public Target create() {
+			final AtomicReference<Map<String, VisualPropertyValue<?>>> valueHolders =
+					new AtomicReference<Map<String, VisualPropertyValue<?>>>(new HashMap<String, VisualPropertyValue<?>>());
+			return new Target() {
+				@Override
+				public void put(String propertyId, Object value) {
+					VisualPropertyValue<Object> valueHolder = new VisualPropertyValue<Object>(value);
+					Map<String, VisualPropertyValue<?>> current;
+					Map<String, VisualPropertyValue<?>> updated;
+					do {
+						current = valueHolders.get();
+						updated = new HashMap<String, VisualPropertyValue<?>>(current);
+						updated.put(propertyId, valueHolder);
+					} while(!valueHolders.compareAndSet(current, updated));
+				}
+			};
+		}
+	}
+}